@@ -9,21 +9,50 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.*;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.*;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.stream.Stream;
 
 /**
  * Spring Boot 缓存应用学习示例
  * 学习目标：
  * 1. 理解Spring Cache抽象层
  * 2. 掌握缓存注解的使用（@Cacheable、@CachePut、@CacheEvict）
- * 3. 学习缓存配置和管理
+ * 3. 学习缓存配置和管理（Caffeine 有界缓存、过期/刷新策略、命中率统计）
  * 4. 了解缓存策略和最佳实践
  *
  * 运行方式：
@@ -62,21 +91,58 @@ public class CacheApplication {
 
     /**
      * 配置缓存管理器
-     * 这里使用简单的ConcurrentMapCacheManager
-     * 生产环境建议使用Redis、Caffeine等
+     * 每个缓存单独一个有界的 Caffeine 实例，容量/权重、过期、刷新策略来自 application.yml（cache-app.caches）
+     * 开启 recordStats，命中率、加载耗时、淘汰数通过 /api/cache/stats 查看
      */
     // 作用：告诉 Spring 容器，将这个方法的返回值（CacheManager 对象）注册为一个 Bean，其他组件可以通过依赖注入使用它。
     @Bean
-    public CacheManager cacheManager() {
-        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(
-            "users",      // 用户缓存
-            "products",   // 产品缓存
-            "statistics"  // 统计缓存
-        );
-        log.info("缓存管理器初始化完成");
+    public CacheManager cacheManager(CacheSpecProperties properties, CacheRefreshRegistry refreshRegistry) {
+        List<org.springframework.cache.Cache> caches = new ArrayList<>();
+        properties.getCaches().forEach((name, spec) -> caches.add(buildCache(name, spec, refreshRegistry)));
+
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
+        log.info("缓存管理器初始化完成：{}", properties.getCaches().keySet());
         return cacheManager;
     }
 
+    /**
+     * 按配置构建单个 Caffeine 缓存
+     */
+    private static CaffeineCache buildCache(String name, CacheSpecProperties.CacheSpec spec,
+                                            CacheRefreshRegistry refreshRegistry) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+        if (spec.getMaximumWeight() != null) {
+            // 按权重限制：集合类型按元素个数计重，其余对象计 1
+            builder.maximumWeight(spec.getMaximumWeight())
+                .weigher((Object key, Object value) -> value instanceof Collection<?> c ? Math.max(1, c.size())
+                    : value instanceof Map<?, ?> m ? Math.max(1, m.size()) : 1);
+        } else {
+            builder.maximumSize(spec.getMaximumSize());
+        }
+        if (spec.getExpireAfterWrite() != null) {
+            builder.expireAfterWrite(spec.getExpireAfterWrite());
+        }
+        if (spec.getRefreshAfterWrite() == null) {
+            return new CaffeineCache(name, builder.build());
+        }
+
+        // refreshAfterWrite 需要 LoadingCache：
+        // load 返回 null 表示未命中，交给 @Cacheable 方法加载；reload 交给注册的刷新函数异步执行
+        builder.refreshAfterWrite(spec.getRefreshAfterWrite());
+        return new CaffeineCache(name, builder.build(new CacheLoader<Object, Object>() {
+            @Override
+            public Object load(Object key) {
+                return null;
+            }
+
+            @Override
+            public Object reload(Object key, Object oldValue) {
+                return refreshRegistry.refresh(name, key, oldValue);
+            }
+        }));
+    }
+
     /**
      * 初始化测试数据
      */
@@ -132,6 +198,49 @@ public class CacheApplication {
     }
 }
 
+/**
+ * 缓存规格配置
+ * 配置前缀：cache-app
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache-app")
+class CacheSpecProperties {
+    private Map<String, CacheSpec> caches = new LinkedHashMap<>();
+
+    @Data
+    public static class CacheSpec {
+        private long maximumSize = 1000;        // 最大条目数
+        private Long maximumWeight;             // 最大权重（配置后忽略 maximumSize）
+        private Duration expireAfterWrite;      // 写入后过期
+        private Duration refreshAfterWrite;     // 写入后多久异步刷新（需要注册刷新函数）
+    }
+}
+
+/**
+ * 缓存刷新函数注册表
+ * refreshAfterWrite 到期后，Caffeine 在后台调用这里注册的函数重新加载；没有注册则保留旧值
+ */
+@Component
+class CacheRefreshRegistry {
+
+    private final Map<String, Function<Object, Object>> refreshers = new ConcurrentHashMap<>();
+
+    public void register(String cacheName, Function<Object, Object> refresher) {
+        refreshers.put(cacheName, refresher);
+    }
+
+    public Object refresh(String cacheName, Object key, Object oldValue) {
+        Function<Object, Object> refresher = refreshers.get(cacheName);
+        if (refresher == null) {
+            return oldValue;
+        }
+        Object value = refresher.apply(key);
+        // 返回 null 会删除条目，与 Spring 缓存 null 的语义保持一致
+        return value != null ? value : NullValue.INSTANCE;
+    }
+}
+
 /**
  * 用户实体
  */
@@ -180,7 +289,7 @@ class UserService {
      * condition: 缓存条件
      * unless: 排除条件
      */
-    @Cacheable(value = "users", key = "#id")
+    @Cacheable(value = "users", key = "#id", sync = true)  // sync：同一个key只加载一次，并记录加载耗时
     public User getUserById(Long id) {
         log.info("从数据库查询用户：{}", id);
         // 模拟数据库查询延迟
@@ -286,11 +395,43 @@ class UserService {
 class ProductService {
 
     private final Map<Long, Product> productDatabase = new ConcurrentHashMap<>();
+    private final CacheRefreshRegistry refreshRegistry;
+    private final StockWriteBehindBuffer stockBuffer;
+    private final CacheManager cacheManager;
+    // 已写回存储的最大库存批次号
+    private volatile long lastAppliedStockSeq;
+
+    public ProductService(CacheRefreshRegistry refreshRegistry,
+                          StockWriteBehindBuffer stockBuffer,
+                          CacheManager cacheManager) {
+        this.refreshRegistry = refreshRegistry;
+        this.stockBuffer = stockBuffer;
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * 注册 products 缓存的后台刷新函数（refreshAfterWrite），并启动库存写回缓冲
+     */
+    @PostConstruct
+    public void registerRefresher() {
+        refreshRegistry.register("products", id -> withPendingStock(productDatabase.get((Long) id)));
+        stockBuffer.start(new StockDeltaSink() {
+            @Override
+            public long lastAppliedSeq() {
+                return lastAppliedStockSeq;
+            }
+
+            @Override
+            public void apply(long seq, Map<Long, Integer> deltas) {
+                applyStockDeltas(seq, deltas);
+            }
+        });
+    }
 
     /**
      * 查询产品（缓存）
      */
-    @Cacheable(value = "products", key = "#id")
+    @Cacheable(value = "products", key = "#id", sync = true)
     public Product getProductById(Long id) {
         log.info("从数据库查询产品：{}", id);
         try {
@@ -298,21 +439,81 @@ class ProductService {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-        return productDatabase.get(id);
+        return withPendingStock(productDatabase.get(id));
     }
 
     /**
      * 更新产品库存（更新缓存）
+     *
+     * 写回（write-behind）模式下：
+     * 1. 先把增量追加到本地日志，保证崩溃后可恢复
+     * 2. 按产品合并增量，由后台按时间间隔或数量阈值批量写入存储
+     * 3. 在缓存条目上原子地应用增量，不再每次都替换/淘汰缓存
+     *
+     * 记录增量和修改缓存条目放在同一个 compute 里：与 sync=true 的加载（同一个 key 的 compute）互斥，
+     * 加载要么在之前、读不到这次增量（由这里加上），要么在之后、读到已合并的增量（这里不会再加一次）；
+     * 后台刷新期间条目被替换，Caffeine 会丢弃那次刷新结果
      */
-    @CachePut(value = "products", key = "#id")
     public Product updateStock(Long id, Integer quantity) {
         log.info("更新产品库存：{}, 数量：{}", id, quantity);
         Product product = productDatabase.get(id);
-        if (product != null) {
+        if (product == null) {
+            return null;
+        }
+
+        if (!stockBuffer.isEnabled()) {
+            // 写穿：直接改存储并更新缓存（等同于 @CachePut）
             product.setStock(product.getStock() + quantity);
             product.setUpdatedAt(LocalDateTime.now());
+            productsCache().put(id, product);
+            return product;
         }
-        return product;
+
+        Object cached = productsCache().getNativeCache().asMap().compute(id, (key, value) -> {
+            stockBuffer.add(id, quantity);
+            return value instanceof Product p ? copyWithStock(p, p.getStock() + quantity) : value;
+        });
+        return cached instanceof Product p ? p : withPendingStock(product);
+    }
+
+    /**
+     * 批量写入存储（由写回缓冲的后台线程调用），已应用过的批次跳过
+     * 真实数据库里增量和批次号要在同一个事务里更新（例如单独一张表记录 last_applied_seq）
+     */
+    private synchronized void applyStockDeltas(long seq, Map<Long, Integer> deltas) {
+        if (seq <= lastAppliedStockSeq) {
+            log.info("库存批次已写回过，跳过：{}", seq);
+            return;
+        }
+        deltas.forEach((id, delta) -> {
+            Product product = productDatabase.get(id);
+            if (product == null) {
+                log.warn("库存写回时产品不存在，丢弃增量：{}, 数量：{}", id, delta);
+                return;
+            }
+            product.setStock(product.getStock() + delta);
+            product.setUpdatedAt(LocalDateTime.now());
+        });
+        lastAppliedStockSeq = seq;
+        log.info("库存写回完成：批次{}，{}个产品", seq, deltas.size());
+    }
+
+    /**
+     * 存储中的数据 + 尚未写回的增量（返回副本，不暴露存储中的对象）
+     */
+    private Product withPendingStock(Product product) {
+        if (product == null || !stockBuffer.isEnabled()) {
+            return product;
+        }
+        return copyWithStock(product, stockBuffer.currentStock(product.getId(), product::getStock));
+    }
+
+    private static Product copyWithStock(Product product, int stock) {
+        return new Product(product.getId(), product.getName(), product.getPrice(), stock, LocalDateTime.now());
+    }
+
+    private CaffeineCache productsCache() {
+        return (CaffeineCache) Objects.requireNonNull(cacheManager.getCache("products"));
     }
 
     /**
@@ -339,6 +540,326 @@ class ProductService {
     }
 }
 
+/**
+ * 库存写回配置
+ * 配置前缀：cache-app.stock-write-behind
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache-app.stock-write-behind")
+class StockWriteBehindProperties {
+    private boolean enabled = false;                        // 是否开启写回模式
+    private Duration flushInterval = Duration.ofSeconds(1); // 最长多久写回一次
+    private int flushBatchSize = 1000;                      // 待写回的产品数达到多少立即写回
+    private Duration syncInterval = Duration.ofMillis(20);  // 增量日志最长多久 fsync 一次
+    private String logDir = "data/stock-wal";               // 增量日志目录
+}
+
+/**
+ * 库存增量的存储端
+ *
+ * apply 必须把增量和批次号在同一个事务里写入，并跳过 seq <= lastAppliedSeq 的批次：
+ * 写入存储后、删除日志前崩溃时，重启会再次提交同一批次，靠批次号去重才不会重复应用
+ */
+interface StockDeltaSink {
+
+    /**
+     * 已应用的最大批次号
+     */
+    long lastAppliedSeq();
+
+    /**
+     * 应用一批增量并记录批次号，已应用过的批次直接跳过
+     */
+    void apply(long seq, Map<Long, Integer> deltas);
+}
+
+/**
+ * 库存增量写回缓冲
+ *
+ * 1. add：增量先追加到本地日志，再按产品合并到内存；日志由后台每隔 syncInterval 统一 force 一次（组提交）
+ * 2. flush：合并后的增量连同日志一起轮转成一个批次（批次号 + .flushing 文件），按批次号顺序写入存储，成功后删除该文件
+ * 3. 写入失败的批次原样保留，下次用同一个批次号重试；启动时每个 .flushing 文件恢复成原来的批次，当前日志恢复到内存
+ * 4. 存储端按批次号去重（见 StockDeltaSink），同一批次重复提交只生效一次
+ *
+ * 写入存储之前，批次里的增量一直计入 currentStock，缓存未命中或后台刷新时读到的库存不会少算正在写回的部分
+ *
+ * 持久性窗口：add 返回时记录已写入操作系统页缓存，进程崩溃不会丢；
+ * 机器掉电或系统崩溃时，最近一个 syncInterval 内还没 force 的增量可能丢失
+ */
+@Slf4j
+@Component
+class StockWriteBehindBuffer {
+
+    private static final String LOG_FILE = "stock-delta.log";
+    private static final String FLUSHING_SUFFIX = ".flushing";
+
+    private final StockWriteBehindProperties properties;
+    private final Map<Long, Integer> pendingDeltas = new ConcurrentHashMap<>();
+    // 已轮转、尚未写入存储的批次，按批次号排列
+    private final Deque<StockBatch> unapplied = new ConcurrentLinkedDeque<>();
+    // 轮转时独占：add 写日志和合并增量、currentStock 读增量时共享
+    private final ReentrantReadWriteLock rotateLock = new ReentrantReadWriteLock();
+    // 写入存储时独占：currentStock 读存储和未写回批次时共享，不会既读到新库存又加上同一批增量
+    private final ReentrantReadWriteLock applyLock = new ReentrantReadWriteLock();
+    private final AtomicLong flushSeq = new AtomicLong();
+    private ScheduledExecutorService flusher;
+    private StockDeltaSink sink;
+    private Path logDir;
+    private FileChannel logChannel;
+    // 上次 force 之后是否有新写入的日志
+    private final AtomicBoolean logDirty = new AtomicBoolean();
+
+    public StockWriteBehindBuffer(StockWriteBehindProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 回放日志并启动后台写回
+     *
+     * @param sink 批量写入存储的一端
+     */
+    public synchronized void start(StockDeltaSink sink) {
+        if (!isEnabled()) {
+            return;
+        }
+        this.sink = sink;
+        try {
+            logDir = Paths.get(properties.getLogDir()).toAbsolutePath();
+            Files.createDirectories(logDir);
+            recover();
+            logChannel = openLog();
+        } catch (IOException e) {
+            throw new IllegalStateException("无法初始化库存增量日志: " + logDir, e);
+        }
+
+        long intervalMs = properties.getFlushInterval().toMillis();
+        long syncMs = properties.getSyncInterval().toMillis();
+        // 两个线程：写回存储较慢时不耽误日志 fsync
+        flusher = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "stock-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::syncLog, syncMs, syncMs, TimeUnit.MILLISECONDS);
+        log.info("库存写回模式已启动：间隔{}ms，批量{}，fsync间隔{}ms，日志目录{}",
+            intervalMs, properties.getFlushBatchSize(), syncMs, logDir);
+    }
+
+    /**
+     * 记录一个库存增量
+     */
+    public void add(Long productId, int delta) {
+        rotateLock.readLock().lock();
+        try {
+            ByteBuffer line = ByteBuffer.wrap((productId + "," + delta + "\n").getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) {
+                logChannel.write(line);
+            }
+            logDirty.set(true);
+            pendingDeltas.merge(productId, delta, Integer::sum);
+        } catch (IOException e) {
+            throw new IllegalStateException("库存增量日志写入失败", e);
+        } finally {
+            rotateLock.readLock().unlock();
+        }
+        if (pendingDeltas.size() >= properties.getFlushBatchSize()) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    /**
+     * 把上次 force 之后追加的日志一起落盘，多次 add 共用一次 fsync
+     */
+    private void syncLog() {
+        if (!logDirty.get()) {
+            return;
+        }
+        rotateLock.readLock().lock();
+        try {
+            // 先清标记再 force：force 期间新写入的记录会重新置位，留给下一轮
+            if (logDirty.getAndSet(false)) {
+                logChannel.force(false);
+            }
+        } catch (IOException e) {
+            logDirty.set(true);
+            log.error("库存增量日志落盘失败，稍后重试", e);
+        } finally {
+            rotateLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 当前库存 = 存储中的库存 + 尚未写入存储的增量（包括正在写回的批次）
+     *
+     * @param storedStock 读取存储中的库存，在和写回互斥的区间内调用
+     */
+    public int currentStock(Long productId, IntSupplier storedStock) {
+        applyLock.readLock().lock();
+        try {
+            int stock = storedStock.getAsInt();
+            rotateLock.readLock().lock();
+            try {
+                stock += pendingDeltas.getOrDefault(productId, 0);
+                for (StockBatch batch : unapplied) {
+                    stock += batch.deltas().getOrDefault(productId, 0);
+                }
+                return stock;
+            } finally {
+                rotateLock.readLock().unlock();
+            }
+        } finally {
+            applyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 批量写回：轮转日志 → 按批次号顺序写入存储 → 删除已写回批次的日志
+     */
+    public synchronized void flush() {
+        if (sink == null) {
+            return;
+        }
+        if (!pendingDeltas.isEmpty()) {
+            rotate();
+        }
+
+        StockBatch batch;
+        while ((batch = unapplied.peekFirst()) != null) {
+            applyLock.writeLock().lock();
+            try {
+                sink.apply(batch.seq(), batch.deltas());
+                unapplied.pollFirst();
+            } catch (Exception e) {
+                // 写入失败：批次和 .flushing 文件都保留，下次用同一批次号重试，已生效的部分会被存储端跳过
+                log.error("库存写回失败，批次{}（{}个产品）将在下次重试", batch.seq(), batch.deltas().size(), e);
+                return;
+            } finally {
+                applyLock.writeLock().unlock();
+            }
+
+            try {
+                Files.deleteIfExists(flushingFile(batch.seq()));
+            } catch (IOException e) {
+                // 留下的文件重启时会再提交一次，存储端按批次号跳过
+                log.error("删除已写回的库存增量日志失败：批次{}", batch.seq(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flush();
+        logChannel.close();
+    }
+
+    /**
+     * 当前日志改名为 .flushing 文件，内存中的增量成为同一批次
+     */
+    private void rotate() {
+        long seq = flushSeq.incrementAndGet();
+        rotateLock.writeLock().lock();
+        try {
+            try {
+                // 轮转出的批次在写入存储前只有这个文件，先把还没 force 的记录落盘
+                logChannel.force(false);
+                logDirty.set(false);
+                logChannel.close();
+                Files.move(logDir.resolve(LOG_FILE), flushingFile(seq));
+            } catch (IOException e) {
+                log.error("库存增量日志轮转失败，稍后重试", e);
+                return;
+            }
+            unapplied.addLast(new StockBatch(seq, new HashMap<>(pendingDeltas)));
+            pendingDeltas.clear();
+        } finally {
+            reopenLogQuietly();
+            rotateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 每个 .flushing 文件恢复成原批次号的批次，当前日志恢复到内存
+     */
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(logDir)) {
+            paths.filter(path -> path.getFileName().toString().endsWith(FLUSHING_SUFFIX))
+                .sorted()
+                .forEach(files::add);
+        }
+        long maxSeq = sink.lastAppliedSeq();
+        int records = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long seq = Long.parseLong(name.substring(0, name.length() - FLUSHING_SUFFIX.length()));
+            Map<Long, Integer> deltas = new HashMap<>();
+            records += readDeltas(file, deltas);
+            unapplied.addLast(new StockBatch(seq, deltas));
+            maxSeq = Math.max(maxSeq, seq);
+        }
+        // 新批次号要大于存储端已应用的批次号，否则会被当成重复批次跳过
+        flushSeq.set(maxSeq);
+
+        Path current = logDir.resolve(LOG_FILE);
+        if (Files.exists(current)) {
+            records += readDeltas(current, pendingDeltas);
+        }
+        if (records > 0) {
+            log.info("库存增量日志回放完成：{}条记录，{}个批次待写回，{}个产品待合并",
+                records, unapplied.size(), pendingDeltas.size());
+        }
+    }
+
+    private static int readDeltas(Path file, Map<Long, Integer> deltas) throws IOException {
+        int records = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] parts = line.split(",");
+            if (parts.length != 2) {
+                continue;  // 崩溃时写了一半的记录
+            }
+            try {
+                deltas.merge(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Integer::sum);
+                records++;
+            } catch (NumberFormatException ignored) {
+                // 同上，忽略不完整的记录
+            }
+        }
+        return records;
+    }
+
+    private Path flushingFile(long seq) {
+        return logDir.resolve(String.format("%020d", seq) + FLUSHING_SUFFIX);
+    }
+
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(logDir.resolve(LOG_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void reopenLogQuietly() {
+        try {
+            if (!logChannel.isOpen()) {
+                logChannel = openLog();
+            }
+        } catch (IOException e) {
+            log.error("库存增量日志重新打开失败", e);
+        }
+    }
+
+    private record StockBatch(long seq, Map<Long, Integer> deltas) {
+    }
+}
+
 /**
  * 统计服务 - 演示缓存统计
  */
@@ -349,7 +870,7 @@ class StatisticsService {
     /**
      * 获取用户统计（短期缓存）
      */
-    @Cacheable(value = "statistics", key = "'user-count'")
+    @Cacheable(value = "statistics", key = "'user-count'", sync = true)
     public Map<String, Object> getUserStatistics() {
         log.info("计算用户统计...");
         // 模拟复杂计算
@@ -487,7 +1008,7 @@ class CacheController {
     }
 
     /**
-     * 查看缓存状态
+     * 查看缓存状态：大小、命中率、加载耗时、淘汰数
      */
     @GetMapping("/cache/stats")
     public Map<String, Object> getCacheStats() {
@@ -501,16 +1022,20 @@ class CacheController {
         Map<String, Object> cacheDetails = new HashMap<>();
         for (String cacheName : cacheNames) {
             org.springframework.cache.Cache cache = cacheManager.getCache(cacheName);
-            if (cache != null) {
-                // ConcurrentMapCache可以获取native cache
-                Object nativeCache = cache.getNativeCache();
-                if (nativeCache instanceof ConcurrentHashMap) {
-                    ConcurrentHashMap<?, ?> map = (ConcurrentHashMap<?, ?>) nativeCache;
-                    Map<String, Object> detail = new HashMap<>();
-                    detail.put("size", map.size());
-                    detail.put("keys", map.keySet());
-                    cacheDetails.put(cacheName, detail);
-                }
+            if (cache instanceof CaffeineCache caffeineCache) {
+                com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = caffeineCache.getNativeCache();
+                CacheStats cacheStats = nativeCache.stats();
+                Map<String, Object> detail = new LinkedHashMap<>();
+                detail.put("size", nativeCache.estimatedSize());
+                detail.put("hitCount", cacheStats.hitCount());
+                detail.put("missCount", cacheStats.missCount());
+                detail.put("hitRate", cacheStats.hitRate());
+                detail.put("loadSuccessCount", cacheStats.loadSuccessCount());
+                detail.put("loadFailureCount", cacheStats.loadFailureCount());
+                detail.put("averageLoadPenaltyMs", cacheStats.averageLoadPenalty() / 1_000_000.0);
+                detail.put("evictionCount", cacheStats.evictionCount());
+                detail.put("evictionWeight", cacheStats.evictionWeight());
+                cacheDetails.put(cacheName, detail);
             }
         }
         stats.put("cacheDetails", cacheDetails);
@@ -550,7 +1075,7 @@ class CacheController {
             3. 删除用户（清除缓存）
                DELETE http://localhost:8080/api/users/1
 
-            4. 查看缓存状态
+            4. 查看缓存状态（命中率、加载耗时、淘汰数）
                GET http://localhost:8080/api/cache/stats
 
             5. 清空所有缓存
@@ -569,7 +1094,7 @@ class CacheController {
 
             缓存策略：
             - Write-Through：写穿（更新时同时更新缓存）
-            - Write-Behind：写后（异步更新缓存）
+            - Write-Behind：写后（先改缓存，异步批量写存储，见 cache-app.stock-write-behind）
             - Cache-Aside：旁路（查询时加载缓存）
 
             注意事项：
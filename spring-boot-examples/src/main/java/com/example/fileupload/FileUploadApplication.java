@@ -19,15 +19,25 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -45,6 +55,7 @@ import java.util.stream.Stream;
  * - Path/Files：Java NIO文件操作API
  * - Resource：Spring资源抽象
  * - Content-Disposition：HTTP头控制文件下载
+ * - FileChannel + 池化缓冲区：大文件流式上传，边写边算哈希
  *
  * 应用场景：
  * - 用户头像上传
@@ -72,6 +83,8 @@ public class FileUploadApplication {
         System.out.println("\n📝 测试示例：");
         System.out.println("# 上传文件");
         System.out.println("curl -X POST -F \"file=@test.txt\" http://localhost:8080/api/files/upload");
+        System.out.println("\n# 流式上传大文件（请求体直接写入存储目录）");
+        System.out.println("curl -T big.pdf \"http://localhost:8080/api/files/upload-stream?filename=big.pdf\"");
         System.out.println("\n# 查看所有文件");
         System.out.println("curl http://localhost:8080/api/files");
         System.out.println("\n按 Ctrl+C 停止应用\n");
@@ -95,6 +108,19 @@ class FileStorageService {
     // 最大文件大小：10MB
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
 
+    // 流式上传最大文件大小：4GB
+    private static final long MAX_STREAM_FILE_SIZE = 4L * 1024 * 1024 * 1024;
+
+    // 流式上传缓冲区：每个 1MB，最多 16 个上传同时进行
+    private static final int STREAM_BUFFER_SIZE = 1024 * 1024;
+    private static final int STREAM_BUFFER_COUNT = 16;
+    private static final long BUFFER_WAIT_SECONDS = 30;
+
+    // 写入中的文件后缀，写完改名，文件列表里不会出现写了一半的文件
+    static final String PART_SUFFIX = ".part";
+
+    private final UploadBufferPool bufferPool = new UploadBufferPool(STREAM_BUFFER_COUNT, STREAM_BUFFER_SIZE);
+
     public FileStorageService() {
         // 设置文件存储目录
         this.fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
@@ -108,6 +134,10 @@ class FileStorageService {
         }
     }
 
+    Path getFileStorageLocation() {
+        return fileStorageLocation;
+    }
+
     /**
      * 存储文件
      */
@@ -141,7 +171,8 @@ class FileStorageService {
                     file.getContentType(),
                     file.getSize(),
                     LocalDateTime.now(),
-                    generateDownloadUrl(uniqueFilename));
+                    generateDownloadUrl(uniqueFilename),
+                    null);
 
         } catch (IOException ex) {
             log.error("❌ 文件保存失败: {}", originalFilename, ex);
@@ -149,6 +180,118 @@ class FileStorageService {
         }
     }
 
+    /**
+     * 流式存储文件（请求体就是文件内容）
+     *
+     * MultipartFile 路径：容器先把整个请求写到临时文件，storeFile 再读临时文件拷贝到存储目录，同样的数据落盘两次
+     * 这里直接从请求流读进池化的 byte[]，攒满一块用 FileChannel 写入存储目录，同时更新 SHA-256，数据只落盘一次
+     * 用堆数组而不是直接缓冲区：请求流只能读进 byte[]，MessageDigest 处理直接缓冲区时也要先拷回堆里，
+     * 直接缓冲区只会多出两次拷贝；堆数组写文件时由 JDK 拷进它缓存的临时直接缓冲区，只有这一次拷贝
+     * 不用 FileChannel.transferFrom：来源不是文件通道时它内部也是逐块拷贝，而且拿不到数据算哈希
+     *
+     * 先写到 .part 文件，完整写完、长度和哈希校验通过后在同一目录内改名，失败时删除
+     *
+     * @param originalFilename 原始文件名
+     * @param contentLength    请求头里的长度，未知时传 -1
+     * @param body             文件内容，由调用方关闭
+     * @param expectedSha256   客户端给出的 SHA-256（十六进制），不校验时传 null
+     */
+    public FileInfo storeStream(String originalFilename, long contentLength, InputStream body,
+                                String expectedSha256) {
+        String filename = StringUtils.cleanPath(originalFilename == null ? "" : originalFilename);
+        validateStream(filename, contentLength);
+
+        String uniqueFilename = UUID.randomUUID().toString() + "." + getFileExtension(filename);
+        Path targetLocation = this.fileStorageLocation.resolve(uniqueFilename);
+        Path partLocation = this.fileStorageLocation.resolve(uniqueFilename + PART_SUFFIX);
+        MessageDigest digest = sha256();
+        byte[] buffer = bufferPool.acquire(BUFFER_WAIT_SECONDS);
+        long begin = System.nanoTime();
+        long size = 0;
+        try {
+            try (FileChannel out = FileChannel.open(partLocation,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                int filled = 0;
+                int n;
+                while ((n = body.read(buffer, filled, buffer.length - filled)) != -1) {
+                    filled += n;
+                    if (filled == buffer.length) {
+                        size = drain(buffer, filled, digest, out, size);
+                        filled = 0;
+                    }
+                }
+                size = drain(buffer, filled, digest, out, size);
+            }
+
+            // 分块传输（没有 Content-Length）时只能读完才知道是不是空文件
+            if (size == 0) {
+                throw new RuntimeException("文件不能为空");
+            }
+            if (contentLength >= 0 && size != contentLength) {
+                throw new RuntimeException("文件不完整：收到" + size + "字节，应为" + contentLength + "字节");
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+                throw new RuntimeException("文件校验失败：SHA-256 不一致");
+            }
+            Files.move(partLocation, targetLocation, StandardCopyOption.ATOMIC_MOVE);
+
+            long nanos = Math.max(System.nanoTime() - begin, 1);
+            log.info("✅ 流式上传成功: {} -> {}, {} 字节, {} MB/s", filename, uniqueFilename, size,
+                    String.format("%.1f", size * 1e9 / nanos / (1024 * 1024)));
+            return new FileInfo(
+                    uniqueFilename,
+                    filename,
+                    getContentType(filename),
+                    size,
+                    LocalDateTime.now(),
+                    generateDownloadUrl(uniqueFilename),
+                    sha256);
+        } catch (IOException ex) {
+            deletePartial(partLocation);
+            log.error("❌ 文件保存失败: {}", filename, ex);
+            throw new RuntimeException("文件保存失败: " + filename, ex);
+        } catch (RuntimeException ex) {
+            deletePartial(partLocation);
+            throw ex;
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 缓冲区里的数据计入哈希并写入文件，返回累计字节数
+     */
+    private static long drain(byte[] buffer, int length, MessageDigest digest, FileChannel out, long written)
+            throws IOException {
+        long size = written + length;
+        if (size > MAX_STREAM_FILE_SIZE) {
+            throw new RuntimeException("文件大小超过限制（最大4GB）");
+        }
+        digest.update(buffer, 0, length);
+        ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+        return size;
+    }
+
+    private void deletePartial(Path partLocation) {
+        try {
+            Files.deleteIfExists(partLocation);
+        } catch (IOException ex) {
+            log.warn("删除未完成的文件失败: {}", partLocation, ex);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("不支持 SHA-256", ex);
+        }
+    }
+
     /**
      * 加载文件为Resource
      */
@@ -174,6 +317,7 @@ class FileStorageService {
         try (Stream<Path> paths = Files.walk(this.fileStorageLocation, 1)) {
             return paths
                     .filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().endsWith(PART_SUFFIX))
                     .map(path -> {
                         String filename = path.getFileName().toString();
                         try {
@@ -184,7 +328,8 @@ class FileStorageService {
                                     getContentType(filename),
                                     size,
                                     LocalDateTime.now(),
-                                    generateDownloadUrl(filename));
+                                    generateDownloadUrl(filename),
+                                    null);
                         } catch (IOException e) {
                             return null;
                         }
@@ -231,6 +376,25 @@ class FileStorageService {
         }
     }
 
+    /**
+     * 验证流式上传的文件
+     */
+    private void validateStream(String filename, long contentLength) {
+        if (filename.isEmpty() || filename.contains("..")) {
+            throw new RuntimeException("文件名包含非法字符: " + filename);
+        }
+        if (contentLength == 0) {
+            throw new RuntimeException("文件不能为空");
+        }
+        if (contentLength > MAX_STREAM_FILE_SIZE) {
+            throw new RuntimeException("文件大小超过限制（最大4GB）");
+        }
+        String extension = getFileExtension(filename);
+        if (!ALLOWED_EXTENSIONS.contains(extension.toLowerCase())) {
+            throw new RuntimeException("不支持的文件类型: " + extension);
+        }
+    }
+
     /**
      * 获取文件扩展名
      */
@@ -280,6 +444,42 @@ class FileInfo {
     private Long size;
     private LocalDateTime uploadTime;
     private String downloadUrl;
+    private String sha256;         // 流式上传时计算，其它情况为 null
+}
+
+/**
+ * 上传缓冲区池
+ *
+ * 启动时分配固定数量的 1MB 数组，上传时借用，用完归还：大数组不用每次上传都重新分配（直接进老年代）
+ * 借不到说明同时上传的太多，等待超时后拒绝，缓冲区占用不会超过 count * size
+ */
+class UploadBufferPool {
+
+    private final BlockingQueue<byte[]> buffers;
+
+    UploadBufferPool(int count, int size) {
+        this.buffers = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            buffers.add(new byte[size]);
+        }
+    }
+
+    byte[] acquire(long timeoutSeconds) {
+        try {
+            byte[] buffer = buffers.poll(timeoutSeconds, TimeUnit.SECONDS);
+            if (buffer == null) {
+                throw new RuntimeException("上传任务过多，请稍后重试");
+            }
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待上传缓冲区被中断", e);
+        }
+    }
+
+    void release(byte[] buffer) {
+        buffers.offer(buffer);
+    }
 }
 
 /**
@@ -294,6 +494,122 @@ class ApiResponse {
     private Object data;
 }
 
+/**
+ * 上传吞吐对比结果（单个文件大小）
+ *
+ * @param sizeMb                文件大小（MB）
+ * @param multipartMillis       multipart 路径耗时：写临时文件 + 拷贝到存储目录
+ * @param multipartMbPerSecond  multipart 路径吞吐
+ * @param streamMillis          流式路径耗时：直接写存储目录 + SHA-256
+ * @param streamMbPerSecond     流式路径吞吐
+ */
+record UploadBenchmarkReport(int sizeMb, long multipartMillis, double multipartMbPerSecond,
+                             long streamMillis, double streamMbPerSecond) {
+}
+
+/**
+ * 上传吞吐对比：同样大小的内容分别走 multipart 路径和流式路径，写完即删除
+ *
+ * 数据来自内存里循环的随机块，不经过网络，测的只是落盘这一段；
+ * multipart 路径按容器的做法先写临时文件，再像 storeFile 一样读出来拷贝到存储目录，不含 multipart 解析本身的开销
+ */
+@Slf4j
+@Service
+class UploadBenchmark {
+
+    static final int MAX_SIZE_MB = 4096;
+    private static final int MB = 1024 * 1024;
+
+    private final FileStorageService fileStorageService;
+
+    public UploadBenchmark(FileStorageService fileStorageService) {
+        this.fileStorageService = fileStorageService;
+    }
+
+    public List<UploadBenchmarkReport> run(List<Integer> sizesMb) throws IOException {
+        for (int sizeMb : sizesMb) {
+            if (sizeMb < 1 || sizeMb > MAX_SIZE_MB) {
+                throw new IllegalArgumentException("文件大小需要在1到" + MAX_SIZE_MB + "MB之间");
+            }
+        }
+        List<UploadBenchmarkReport> reports = new ArrayList<>();
+        for (int sizeMb : sizesMb) {
+            long bytes = (long) sizeMb * MB;
+            long multipartNanos = timeMultipart(bytes);
+            long streamNanos = timeStream(bytes);
+            UploadBenchmarkReport report = new UploadBenchmarkReport(sizeMb,
+                    TimeUnit.NANOSECONDS.toMillis(multipartNanos), sizeMb * 1e9 / multipartNanos,
+                    TimeUnit.NANOSECONDS.toMillis(streamNanos), sizeMb * 1e9 / streamNanos);
+            log.info("上传吞吐对比：{}", report);
+            reports.add(report);
+        }
+        return reports;
+    }
+
+    private long timeMultipart(long bytes) throws IOException {
+        Path temp = Files.createTempFile("upload-benchmark-", ".tmp");
+        Path target = fileStorageService.getFileStorageLocation().resolve(UUID.randomUUID() + ".txt");
+        try {
+            long begin = System.nanoTime();
+            Files.copy(new RepeatingInputStream(bytes), temp, StandardCopyOption.REPLACE_EXISTING);
+            try (InputStream in = Files.newInputStream(temp)) {
+                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return System.nanoTime() - begin;
+        } finally {
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private long timeStream(long bytes) {
+        long begin = System.nanoTime();
+        FileInfo info = fileStorageService.storeStream("upload-benchmark.txt", bytes,
+                new RepeatingInputStream(bytes), null);
+        long elapsed = System.nanoTime() - begin;
+        fileStorageService.deleteFile(info.getFilename());
+        return elapsed;
+    }
+
+    /**
+     * 循环输出同一个 64KB 随机块，共 size 字节
+     */
+    private static class RepeatingInputStream extends InputStream {
+
+        private final byte[] block = new byte[64 * 1024];
+        private long remaining;
+        private int offset;
+
+        RepeatingInputStream(long size) {
+            ThreadLocalRandom.current().nextBytes(block);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining == 0) {
+                return -1;
+            }
+            int n = (int) Math.min(Math.min(len, block.length - offset), remaining);
+            System.arraycopy(block, offset, b, off, n);
+            offset = (offset + n) % block.length;
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+}
+
 /**
  * 文件管理控制器
  */
@@ -303,9 +619,11 @@ class ApiResponse {
 class FileController {
 
     private final FileStorageService fileStorageService;
+    private final UploadBenchmark uploadBenchmark;
 
-    public FileController(FileStorageService fileStorageService) {
+    public FileController(FileStorageService fileStorageService, UploadBenchmark uploadBenchmark) {
         this.fileStorageService = fileStorageService;
+        this.uploadBenchmark = uploadBenchmark;
     }
 
     /**
@@ -358,6 +676,46 @@ class FileController {
         }
     }
 
+    /**
+     * 2.1 流式上传（请求体就是文件内容，不走 multipart，支持到 4GB）
+     * PUT /api/files/upload-stream?filename=big.pdf
+     * curl -T big.pdf "http://localhost:8080/api/files/upload-stream?filename=big.pdf"
+     * 可选请求头 X-Content-SHA256：服务端计算的哈希不一致时拒绝并删除
+     */
+    @PutMapping("/upload-stream")
+    public ResponseEntity<ApiResponse> uploadStream(@RequestParam String filename,
+                                                    @RequestHeader(value = "X-Content-SHA256", required = false)
+                                                    String sha256,
+                                                    HttpServletRequest request) {
+        try (InputStream body = request.getInputStream()) {
+            FileInfo fileInfo = fileStorageService.storeStream(filename, request.getContentLengthLong(), body,
+                    sha256);
+
+            return ResponseEntity.ok(new ApiResponse(
+                    200,
+                    "文件上传成功",
+                    fileInfo));
+        } catch (Exception ex) {
+            log.error("文件上传失败", ex);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(new ApiResponse(400, "文件上传失败: " + ex.getMessage(), null));
+        }
+    }
+
+    /**
+     * 2.2 上传吞吐对比（multipart 路径 vs 流式路径）
+     * POST /api/files/upload-benchmark?sizesMb=1,16,256,2048
+     */
+    @PostMapping("/upload-benchmark")
+    public ResponseEntity<ApiResponse> uploadBenchmark(
+            @RequestParam(defaultValue = "1,16,256") List<Integer> sizesMb) throws IOException {
+        return ResponseEntity.ok(new ApiResponse(
+                200,
+                "上传吞吐对比完成",
+                uploadBenchmark.run(sizesMb)));
+    }
+
     /**
      * 3. 下载文件
      * GET /api/files/download/{filename}
@@ -426,12 +784,14 @@ class FileController {
         Map<String, Object> guide = new HashMap<>();
 
         guide.put("文件上传限制", Map.of(
-                "最大文件大小", "10MB",
+                "最大文件大小", "10MB（流式上传4GB）",
                 "支持的文件类型", "txt, pdf, doc, docx, xls, xlsx, jpg, jpeg, png, gif, svg"));
 
         guide.put("API接口", Map.of(
                 "单文件上传", "POST /api/files/upload",
                 "多文件上传", "POST /api/files/upload-multiple",
+                "流式上传", "PUT /api/files/upload-stream?filename={filename}",
+                "上传吞吐对比", "POST /api/files/upload-benchmark?sizesMb=1,16,256,2048",
                 "文件下载", "GET /api/files/download/{filename}",
                 "文件列表", "GET /api/files",
                 "删除文件", "DELETE /api/files/{filename}"));
@@ -440,6 +800,7 @@ class FileController {
                 "上传文件", "curl -X POST -F \"file=@yourfile.txt\" http://localhost:8080/api/files/upload",
                 "上传多个文件",
                 "curl -X POST -F \"files=@file1.txt\" -F \"files=@file2.txt\" http://localhost:8080/api/files/upload-multiple",
+                "流式上传", "curl -T big.pdf \"http://localhost:8080/api/files/upload-stream?filename=big.pdf\"",
                 "下载文件", "curl -O http://localhost:8080/api/files/download/filename.txt",
                 "查看所有文件", "curl http://localhost:8080/api/files",
                 "删除文件", "curl -X DELETE http://localhost:8080/api/files/filename.txt"));
@@ -0,0 +1,37 @@
+package com.example.jpa.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.jpa.utils.BinaryCacheCodec;
+import com.example.jpa.utils.CacheCodec;
+import com.example.jpa.utils.JsonCacheCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Redis 缓存值编解码器配置
+ * multi-cache.codec:
+ * - binary（默认）：紧凑二进制，超过 multi-cache.codec-compress-threshold 字节的值会压缩
+ * - json：Jackson JSON，便于在 redis-cli 中直接查看
+ *
+ * 两种格式可以混读：binary 模式能解码 JSON 写入的旧数据，切换时无需清空 Redis
+ */
+@Configuration
+public class CacheCodecConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "multi-cache.codec", havingValue = "binary", matchIfMissing = true)
+    CacheCodec binaryCacheCodec(@Qualifier("objectMapper") ObjectMapper objectMapper,
+            @Value("${multi-cache.codec-compress-threshold:1024}") int compressThreshold) {
+        return new BinaryCacheCodec(new JsonCacheCodec(objectMapper), compressThreshold);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "multi-cache.codec", havingValue = "json")
+    CacheCodec jsonCacheCodec(@Qualifier("objectMapper") ObjectMapper objectMapper) {
+        return new JsonCacheCodec(objectMapper);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.jpa.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import com.example.jpa.utils.CacheInvalidationTransport;
+import com.example.jpa.utils.InProcessInvalidationTransport;
+import com.example.jpa.utils.RedisInvalidationTransport;
+
+/**
+ * 本地缓存失效广播通道配置
+ * multi-cache.invalidation.transport:
+ * - redis（默认）：Redis pub/sub，多节点共享
+ * - in-process：只在本进程内广播，单机调试使用
+ */
+@Configuration
+public class CacheInvalidationConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "multi-cache.invalidation.transport", havingValue = "redis", matchIfMissing = true)
+    RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory factory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        return container;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "multi-cache.invalidation.transport", havingValue = "redis", matchIfMissing = true)
+    CacheInvalidationTransport redisInvalidationTransport(StringRedisTemplate stringRedisTemplate,
+            RedisMessageListenerContainer cacheInvalidationListenerContainer,
+            @Value("${multi-cache.invalidation.channel:multi-cache:invalidation}") String channel) {
+        return new RedisInvalidationTransport(stringRedisTemplate, cacheInvalidationListenerContainer, channel);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "multi-cache.invalidation.transport", havingValue = "in-process")
+    CacheInvalidationTransport inProcessInvalidationTransport() {
+        return new InProcessInvalidationTransport();
+    }
+}
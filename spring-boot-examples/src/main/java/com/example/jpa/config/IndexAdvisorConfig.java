@@ -0,0 +1,86 @@
+package com.example.jpa.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.example.jpa.utils.IndexAdvisor;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * 索引顾问配置（index-advisor.enabled=true 时生效）
+ * 把容器里的数据源包装成统计 SQL 耗时的代理，报告通过 GET /product/index-advice 拉取
+ *
+ * 每条语句多一层动态代理，生产环境按需开启
+ */
+@Configuration
+@ConditionalOnProperty(name = "index-advisor.enabled", havingValue = "true")
+public class IndexAdvisorConfig {
+
+    @Bean
+    static IndexAdvisor indexAdvisor(@Value("${index-advisor.slow-threshold-ms:20}") long slowThresholdMillis,
+            @Value("${index-advisor.max-statements:500}") int maxStatements) {
+        return new IndexAdvisor(slowThresholdMillis, maxStatements);
+    }
+
+    /**
+     * 数据源初始化完成后再包装，连接池等配置不受影响
+     * 包装后仍是 DelegatingDataSource 且带 close()：容器关闭时照常关闭连接池，
+     * Boot 的连接池元数据/指标也能沿 DelegatingDataSource 解包找到原来的 HikariDataSource
+     */
+    @Bean
+    static BeanPostProcessor indexAdvisorDataSourceWrapper(ObjectProvider<IndexAdvisor> indexAdvisor) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof AdvisedDataSource)
+                        ? new AdvisedDataSource(dataSource, indexAdvisor.getObject().wrap(dataSource))
+                        : bean;
+            }
+        };
+    }
+
+    /**
+     * 统计 SQL 的数据源：连接从代理获取，关闭转给原数据源
+     */
+    static final class AdvisedDataSource extends DelegatingDataSource implements Closeable {
+
+        private final DataSource original;
+
+        AdvisedDataSource(DataSource original, DataSource advised) {
+            super(advised);
+            this.original = original;
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            return iface.isInstance(this) ? iface.cast(this) : original.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return iface.isInstance(this) || original.isWrapperFor(iface);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (original instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("关闭数据源失败", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.jpa.config;
+
+import jakarta.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.jpa.entity.Product;
+
+import java.util.List;
+
+/**
+ * product 主键序列对齐
+ *
+ * Product 主键从 IDENTITY 改成了序列（product_seq），已有数据库里的行是自增列生成的ID，
+ * 新建的序列从 1 开始，直接插入会主键冲突。启动时把序列推到 max(id) 之后：
+ * pooled 优化器取到序列值 hi 时使用 (hi - allocationSize, hi] 区间，
+ * 所以序列下一个值至少要是 max(id) + allocationSize
+ *
+ * 依赖 entityManagerFactory，保证 ddl-auto 已经建好表和序列
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class ProductIdSequenceInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductIdSequenceInitializer.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void alignSequence() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM product", Long.class);
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'PRODUCT_SEQ'",
+                Long.class);
+        if (current.isEmpty()) {
+            logger.warn("未找到序列 product_seq，跳过主键序列对齐");
+            return;
+        }
+        long nextValue = current.get(0);
+        long required = maxId + Product.ID_ALLOCATION_SIZE;
+        if (nextValue >= required) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER SEQUENCE product_seq RESTART WITH " + required);
+        logger.info("product_seq 已对齐：max(id)={}, 下一个序列值 {} -> {}", maxId, nextValue, required);
+    }
+}
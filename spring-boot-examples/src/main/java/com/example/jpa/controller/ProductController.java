@@ -2,10 +2,20 @@ package com.example.jpa.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,6 +23,7 @@ import com.example.jpa.common.ErrorCodeEnum;
 import com.example.jpa.entity.Product;
 import com.example.jpa.exception.BusinessException;
 import com.example.jpa.service.ProductService;
+import com.example.jpa.utils.IndexAdvisor;
 
 @RestController
 @RequestMapping("/product")
@@ -23,6 +34,9 @@ public class ProductController {
     @Autowired
     private ProductService productService;
 
+    @Autowired(required = false)
+    private IndexAdvisor indexAdvisor;
+
     @Operation(summary = "根据ID查询产品", description = "先走Redis缓存→数据库")
     @GetMapping("/{id}")
     public Product getProduct(@PathVariable @Valid @Min(400L) Long id) {
@@ -32,4 +46,46 @@ public class ProductController {
         }
         return p;
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "流式导出全部产品", description = "format: csv / json，边查边写，不受单次查询条数限制")
+    @GetMapping("/export")
+    public void exportProducts(@RequestParam(defaultValue = "csv") String format, HttpServletResponse response)
+            throws IOException {
+        ProductService.ExportFormat exportFormat;
+        try {
+            exportFormat = ProductService.ExportFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCodeEnum.BAD_REQUEST);
+        }
+
+        boolean json = exportFormat == ProductService.ExportFormat.JSON;
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(json ? "application/json" : "text/csv");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=products." + (json ? "json" : "csv"));
+        productService.exportProducts(exportFormat, response.getWriter());
+    }
+
+    @Operation(summary = "根据ID批量查询产品", description = "本地缓存→Redis MGET→数据库批量查询，不存在的ID会被跳过")
+    @GetMapping("/batch")
+    public List<Product> getProducts(@RequestParam @NotEmpty @Size(max = 200) List<Long> ids) {
+        return productService.findAllByIds(ids);
+    }
+
+    @Operation(summary = "按名称搜索产品", description = "内存倒排索引，支持子串和前缀匹配，结果按匹配位置和名称长度排序")
+    @GetMapping("/search")
+    public List<Product> searchProducts(@RequestParam @NotBlank String q,
+            @RequestParam(defaultValue = "false") boolean prefix,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(200) int limit) {
+        return productService.searchByName(q, prefix, limit);
+    }
+
+    @Operation(summary = "索引建议", description = "对慢查询执行 EXPLAIN，报告全表扫描和建议的索引（需开启 index-advisor.enabled）")
+    @GetMapping("/index-advice")
+    public List<IndexAdvisor.IndexAdvice> getIndexAdvice() {
+        if (indexAdvisor == null) {
+            throw new BusinessException(ErrorCodeEnum.NOT_FOUND);
+        }
+        return indexAdvisor.report();
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.jpa.entity;
 
 import jakarta.persistence.*;
+
+import com.example.jpa.service.ProductNameIndexListener;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -12,19 +14,33 @@ import java.time.LocalDateTime;
  *
  * JPA注解说明：
  * - @Entity：标记为JPA实体类
- * - @Table：指定表名（可选，默认为类名）
+ * - @Table：指定表名（可选，默认为类名）和索引
+ *   price / stock 索引支撑范围查询和排序；name 索引只对前缀匹配（LIKE 'x%'）有效
  * - @Id：主键字段
- * - @GeneratedValue：主键生成策略
+ * - @GeneratedValue：主键生成策略（序列 + pooled 优化器，支持批量插入）
  * - @Column：列属性配置
  */
 @Entity
-@Table(name = "product")
+@Table(name = "product", indexes = {
+        @Index(name = "idx_product_price", columnList = "price"),
+        @Index(name = "idx_product_stock", columnList = "stock"),
+        @Index(name = "idx_product_name", columnList = "name")
+})
+@EntityListeners(ProductNameIndexListener.class)
 @Getter
 @Setter
 public class Product {
 
+    /** 序列每次分配的ID数量，与序列的 INCREMENT BY 一致 */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    /**
+     * 序列主键（pooled）：一次从序列取 50 个ID，批量插入时不用每条都回查主键，可以走 JDBC 批处理
+     * IDENTITY 主键会让 Hibernate 对每条 INSERT 立即执行以拿回ID，批处理完全失效
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = Product.ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false, length = 100)
@@ -32,9 +32,16 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     /**
      * 根据名称模糊查询
      * 自动生成SQL: SELECT * FROM product WHERE name LIKE %?%
+     * 前置通配符无法使用索引，总是全表扫描
      */
     List<Product> findByNameContaining(String name);
 
+    /**
+     * 根据名称前缀查询（可以走 idx_product_name 索引）
+     * 自动生成SQL: SELECT * FROM product WHERE name LIKE ?%
+     */
+    List<Product> findByNameStartingWith(String prefix);
+
     /**
      * 按价格范围查询
      * 自动生成SQL: SELECT * FROM product WHERE price BETWEEN ? AND ?
@@ -61,4 +68,10 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findOutOfStockProducts();
 
     ProductProject findProjectedById(Long id);
+
+    /**
+     * 只查询ID（用于构建布隆过滤器）
+     */
+    @Query("SELECT p.id FROM Product p")
+    List<Long> findAllIds();
 }
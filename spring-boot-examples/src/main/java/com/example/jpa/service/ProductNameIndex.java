@@ -0,0 +1,157 @@
+package com.example.jpa.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.jpa.utils.NgramIndex;
+import com.example.jpa.utils.SqlHelper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 产品名称内存倒排索引（二元切分），替代 name LIKE '%x%' 的全表扫描
+ *
+ * 1. 应用启动完成后从数据库流式加载全部 (id, name)，加载完成前 search 返回 null，调用方回退到数据库
+ * 2. 之后由 ProductNameIndexListener 监听实体的新增/修改/删除，事务提交后才写入索引，回滚的修改不会进入索引
+ * 3. 加载期间提交的变更记录下来，加载完成后重放，避免加载读到的旧数据覆盖新数据
+ *
+ * 注意：JPQL 批量更新、原生SQL 修改不触发实体事件，需要调用 reload 重建
+ */
+@Slf4j
+@Component
+public class ProductNameIndex {
+
+    /** 二元切分：中文名称两个字即可命中索引 */
+    private static final int GRAM_SIZE = 2;
+
+    /** 加载时每批从数据库拉取的行数 */
+    private static final int LOAD_FETCH_SIZE = 1000;
+
+    @Autowired
+    private SqlHelper sqlHelper;
+
+    private volatile NgramIndex index;
+
+    /** 加载期间提交的变更（ID -> 新名称，null 表示删除），加载完成后重放到新索引 */
+    private final Map<Long, String> changedDuringLoad = new HashMap<>();
+    private boolean loading;
+
+    /**
+     * 应用启动完成后加载索引；也可在原生SQL批量修改后手动调用重建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void reload() {
+        synchronized (this) {
+            if (loading) {
+                return;
+            }
+            loading = true;
+        }
+        NgramIndex loaded = new NgramIndex(GRAM_SIZE);
+        long rows = 0;
+        try (Stream<Object[]> stream = sqlHelper.streamQuery("SELECT id, name FROM product ORDER BY id", null,
+                LOAD_FETCH_SIZE)) {
+            for (Object[] row : (Iterable<Object[]>) stream::iterator) {
+                loaded.put(((Number) row[0]).longValue(), (String) row[1]);
+                rows++;
+            }
+            synchronized (this) {
+                // 加载期间提交的变更可能晚于读到的行，以事件为准
+                changedDuringLoad.forEach((id, name) -> applyTo(loaded, id, name));
+                index = loaded;
+            }
+            log.info("【产品名称索引加载完成】产品数量: {}", rows);
+        } catch (Exception e) {
+            log.error("【产品名称索引加载失败】", e);
+        } finally {
+            synchronized (this) {
+                loading = false;
+                changedDuringLoad.clear();
+            }
+        }
+    }
+
+    /**
+     * 按名称搜索
+     *
+     * @return 按相关度排序的ID；索引尚未加载完成时返回 null
+     */
+    public List<Long> search(String query, boolean prefixOnly, int limit) {
+        NgramIndex current = index;
+        return current == null ? null : current.search(query, prefixOnly, limit);
+    }
+
+    // ==================== 实体事件 ====================
+    public void onSaved(Long id, String name) {
+        enqueue(id, name);
+    }
+
+    public void onRemoved(Long id) {
+        enqueue(id, null);
+    }
+
+    /**
+     * 事务内的变更攒到提交后一次性应用（一个事务只注册一个同步器，批量写入时不会堆积大量回调）
+     *
+     * @param name 新名称，null 表示删除
+     */
+    @SuppressWarnings("unchecked")
+    private void enqueue(Long id, String name) {
+        if (id == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(Collections.singletonMap(id, name));
+            return;
+        }
+        Map<Long, String> pending = (Map<Long, String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<Long, String> created = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ProductNameIndex.this);
+                    if (status == STATUS_COMMITTED) {
+                        apply(created);
+                    }
+                }
+            });
+            pending = created;
+        }
+        pending.put(id, name);
+    }
+
+    private synchronized void apply(Map<Long, String> changes) {
+        NgramIndex current = index;
+        changes.forEach((id, name) -> {
+            if (loading) {
+                changedDuringLoad.put(id, name);
+            }
+            if (current != null) {
+                applyTo(current, id, name);
+            }
+        });
+    }
+
+    private static void applyTo(NgramIndex target, Long id, String name) {
+        if (name == null) {
+            target.remove(id);
+        } else {
+            target.put(id, name);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.jpa.service;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.jpa.entity.Product;
+
+/**
+ * Product 实体事件监听：把名称变更同步到 ProductNameIndex
+ * Hibernate 通过 Spring 容器获取该监听器；脱离 Spring 使用实体时（如基准测试）注入为空，直接跳过
+ */
+@Component
+public class ProductNameIndexListener {
+
+    @Autowired
+    private ObjectProvider<ProductNameIndex> productNameIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Product product) {
+        ProductNameIndex index = resolve();
+        if (index != null) {
+            index.onSaved(product.getId(), product.getName());
+        }
+    }
+
+    @PostRemove
+    public void onRemoved(Product product) {
+        ProductNameIndex index = resolve();
+        if (index != null) {
+            index.onRemoved(product.getId());
+        }
+    }
+
+    private ProductNameIndex resolve() {
+        return productNameIndex == null ? null : productNameIndex.getIfAvailable();
+    }
+}
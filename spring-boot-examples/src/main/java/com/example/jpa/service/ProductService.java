@@ -2,21 +2,40 @@ package com.example.jpa.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.jpa.entity.Product;
 import com.example.jpa.projection.ProductProject;
 import com.example.jpa.repository.ProductRepository;
-import com.example.jpa.utils.JSONHelper;
+import com.example.jpa.utils.CacheCodec;
+import com.example.jpa.utils.LongBloomFilter;
+import com.example.jpa.utils.MultiCacheUtils;
 import com.example.jpa.utils.RedisUtils;
+import com.example.jpa.utils.SqlHelper;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 产品服务类
@@ -32,16 +51,77 @@ public class ProductService {
     @Autowired
     private RedisUtils redisUtils;
 
+    @Autowired
+    private MultiCacheUtils multiCacheUtils;
+
     @Autowired
     @Qualifier("objectMapper")
     ObjectMapper objectMapper;
 
     @Autowired
-    JSONHelper jsonHelper;
+    private CacheCodec cacheCodec;
+
+    @Autowired
+    private SqlHelper sqlHelper;
+
+    @Autowired
+    private ProductNameIndex productNameIndex;
+
+    /** 空值缓存：JSON 的 null，各编解码器都解码为 null，MultiCacheUtils 读到后同样当作"不存在" */
+    private static final String NULL_SENTINEL = "null";
+
+    /** 空值缓存时间（秒），短一些，新建数据能尽快可见 */
+    private static final long NULL_CACHE_SECONDS = 60;
+
+    /** 导出时每批从数据库拉取的行数 */
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    /** 导出时每写多少行刷新一次输出 */
+    private static final int EXPORT_FLUSH_ROWS = 1000;
+
+    /** 布隆过滤器误判率 */
+    private static final double ID_FILTER_FPP = 0.01;
+
+    /** 布隆过滤器最小容量 */
+    private static final long ID_FILTER_MIN_CAPACITY = 1024;
+
+    /** 删除数量超过总量的比例后重建布隆过滤器（布隆过滤器不支持删除） */
+    private static final double ID_FILTER_REBUILD_DELETE_RATIO = 0.2;
+
+    /**
+     * 已存在产品ID的布隆过滤器，null 表示尚未构建完成（此时不拦截）
+     */
+    private volatile LongBloomFilter productIdFilter;
+    private final AtomicBoolean idFilterRebuilding = new AtomicBoolean();
+    private final Set<Long> createdDuringRebuild = ConcurrentHashMap.newKeySet();
+    private final AtomicLong deletedSinceRebuild = new AtomicLong();
+    private volatile long idFilterBaseSize;
 
     public Product createProduct(String name, Double price, Integer stock) {
         Product product = new Product(name, price, stock);
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+
+        // 新ID加入布隆过滤器，并清掉可能存在的空值缓存
+        // 先登记到 createdDuringRebuild，再放入当前过滤器；放入后过滤器被重建切换了就再放一次新的，
+        // 保证不管重建在哪一步完成，新ID都在最终生效的过滤器里
+        Long id = saved.getId();
+        if (idFilterRebuilding.get()) {
+            createdDuringRebuild.add(id);
+        }
+        LongBloomFilter filter = productIdFilter;
+        while (filter != null) {
+            filter.put(id);
+            LongBloomFilter current = productIdFilter;
+            if (current == filter) {
+                break;
+            }
+            filter = current;
+        }
+        multiCacheUtils.delete("product:" + id);
+        if (filter != null && filter.isSaturated()) {
+            rebuildProductIdFilterAsync();
+        }
+        return saved;
     }
 
     public List<Product> findAll() {
@@ -49,21 +129,28 @@ public class ProductService {
     }
 
     /**
-     * 先查 Redis -> 没有再查 DB -> 查到后存入 Redis
+     * 布隆过滤器 -> 先查 Redis -> 没有再查 DB -> 查到后存入 Redis，查不到缓存空值
      */
     public Product findById(@NonNull Long id) {
         String key = "product:" + id;
 
-        // 2. 先从 Redis 获取
-        String productJson = redisUtils.get(key);
-        if (productJson != null) {
+        // 1. 布隆过滤器判定一定不存在，直接返回，不访问 Redis 和数据库
+        LongBloomFilter filter = productIdFilter;
+        if (filter != null && !filter.mightContain(id)) {
+            log.debug("【布隆过滤器拦截】产品 ID: {}", id);
+            return null;
+        }
 
-            return jsonHelper.fromJson(productJson, Product.class, e -> {
-                log.error("【Redis 反序列化失败】key: {}, json: {}", key, productJson, e);
-                // 反序列化失败，删除缓存，避免下次继续失败
+        // 2. 先从 Redis 获取（空值缓存解码为 null）
+        byte[] cached = redisUtils.getBytes(key);
+        if (cached != null) {
+            try {
+                return cacheCodec.decode(cached, Product.class);
+            } catch (IOException e) {
+                log.error("【Redis 反序列化失败】key: {}", key, e);
+                // 反序列化失败，删除缓存，避免下次继续失败，本次回源数据库
                 redisUtils.del(key);
-            });
-
+            }
         }
 
         // 3. Redis 没有，查数据库
@@ -73,20 +160,35 @@ public class ProductService {
         // 4. 查到了，存入 Redis（设置过期时间 30 分钟）
         if (product != null) {
             try {
-                var str = jsonHelper.toJson(product, e -> {
-                    log.error("【Redis 序列化失败】key: {}, product: {}", key, product, e);
-                });
-                if (StringUtils.hasText(str)) {
-                    redisUtils.set(key, str, 30, TimeUnit.MINUTES);
-                }
+                redisUtils.setObject(key, product, 30, TimeUnit.MINUTES);
             } catch (Exception e) {
                 log.error("【Redis 序列化失败】key: {}, product: {}", key, product, e);
             }
+        } else {
+            // 5. 查不到，缓存空值防止穿透
+            redisUtils.set(key, NULL_SENTINEL, NULL_CACHE_SECONDS, TimeUnit.SECONDS);
         }
 
         return product;
     }
 
+    /**
+     * 批量查询：布隆过滤器 → 本地缓存 → Redis MGET → 数据库 findAllById，一次往返完成整页
+     * 返回顺序与 ids 一致，不存在的ID会被跳过
+     */
+    public List<Product> findAllByIds(@NonNull Collection<Long> ids) {
+        LongBloomFilter filter = productIdFilter;
+        List<Long> candidateIds = filter == null ? new ArrayList<>(ids)
+                : ids.stream().filter(filter::mightContain).toList();
+        Map<Long, Product> products = multiCacheUtils.getAll(candidateIds, id -> "product:" + id,
+                TimeUnit.MINUTES.toSeconds(30), Product.class, missingIds -> {
+                    log.info("【从数据库批量查询】产品 ID: {}", missingIds);
+                    return productRepository.findAllById(missingIds).stream()
+                            .collect(Collectors.toMap(Product::getId, Function.identity()));
+                });
+        return new ArrayList<>(products.values());
+    }
+
     @NonNull
     public Product updateProduct(@NonNull Product product) {
         return productRepository.save(product);
@@ -94,6 +196,54 @@ public class ProductService {
 
     public void deleteProduct(@NonNull Long id) {
         productRepository.deleteById(id);
+        multiCacheUtils.delete("product:" + id);
+
+        // 布隆过滤器无法删除元素，删除过多时重建以恢复拦截率
+        if (deletedSinceRebuild.incrementAndGet() > idFilterBaseSize * ID_FILTER_REBUILD_DELETE_RATIO) {
+            rebuildProductIdFilterAsync();
+        }
+    }
+
+    /**
+     * 应用启动完成后构建产品ID布隆过滤器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initProductIdFilter() {
+        rebuildProductIdFilter();
+    }
+
+    private void rebuildProductIdFilterAsync() {
+        if (!idFilterRebuilding.get()) {
+            CompletableFuture.runAsync(this::rebuildProductIdFilter);
+        }
+    }
+
+    /**
+     * 从数据库全量重建布隆过滤器
+     * 重建期间新建的ID记录在 createdDuringRebuild 中，切换后补进新过滤器，避免误拦截
+     */
+    private void rebuildProductIdFilter() {
+        if (!idFilterRebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            createdDuringRebuild.clear();
+            List<Long> ids = productRepository.findAllIds();
+            LongBloomFilter filter = LongBloomFilter.create(
+                    Math.max(ids.size() * 2L, ID_FILTER_MIN_CAPACITY), ID_FILTER_FPP);
+            ids.forEach(filter::put);
+            createdDuringRebuild.forEach(filter::put);
+
+            productIdFilter = filter;
+            idFilterBaseSize = ids.size();
+            deletedSinceRebuild.set(0);
+            createdDuringRebuild.forEach(filter::put);
+            log.info("【布隆过滤器重建完成】产品数量: {}", ids.size());
+        } catch (Exception e) {
+            log.error("【布隆过滤器重建失败】", e);
+        } finally {
+            idFilterRebuilding.set(false);
+        }
     }
 
     public long count() {
@@ -104,6 +254,25 @@ public class ProductService {
         return productRepository.findByNameContaining(name);
     }
 
+    /**
+     * 按名称搜索：内存倒排索引给出排好序的ID，再按ID批量取实体（走多级缓存）
+     * 索引尚未加载完成时回退到数据库 LIKE 查询
+     *
+     * @param prefixOnly true 只匹配前缀
+     */
+    public List<Product> searchByName(@NonNull String query, boolean prefixOnly, int limit) {
+        List<Long> ids = productNameIndex.search(query, prefixOnly, limit);
+        if (ids == null) {
+            List<Product> products = prefixOnly ? findByNamePrefix(query) : findByNameContaining(query);
+            return products.stream().limit(limit).toList();
+        }
+        return ids.isEmpty() ? List.of() : findAllByIds(ids);
+    }
+
+    public List<Product> findByNamePrefix(String prefix) {
+        return productRepository.findByNameStartingWith(prefix);
+    }
+
     public List<Product> findByPriceRange(Double minPrice, Double maxPrice) {
         return productRepository.findByPriceBetween(minPrice, maxPrice);
     }
@@ -116,4 +285,85 @@ public class ProductService {
         return productRepository.findProjectedById(id);
     }
 
+    /**
+     * 流式导出全部产品：数据库游标 → 逐行写出，内存占用与数据量无关
+     * 客户端读得慢时写出会阻塞，游标随之暂停拉取，不会在内存里堆积
+     *
+     * @param format 导出格式
+     * @param writer 输出（通常是 HTTP 响应）
+     */
+    @Transactional(readOnly = true)
+    public void exportProducts(@NonNull ExportFormat format, @NonNull Writer writer) throws IOException {
+        long rows = 0;
+        try (Stream<Product> products = sqlHelper.streamQuery("SELECT * FROM product ORDER BY id", null,
+                Product.class, EXPORT_FETCH_SIZE)) {
+            JsonGenerator json = null;
+            if (format == ExportFormat.JSON) {
+                json = objectMapper.getFactory().createGenerator(writer)
+                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                json.writeStartArray();
+            } else {
+                writer.write("id,name,price,stock,created_at,updated_at\n");
+            }
+
+            for (Product product : (Iterable<Product>) products::iterator) {
+                if (json != null) {
+                    json.writeObject(product);
+                } else {
+                    writeCsvRow(writer, product);
+                }
+                if (++rows % EXPORT_FLUSH_ROWS == 0) {
+                    // 定期推给客户端，避免整份数据堆在输出缓冲区
+                    if (json != null) {
+                        json.flush();
+                    }
+                    writer.flush();
+                }
+            }
+
+            if (json != null) {
+                json.writeEndArray();
+                json.close();
+            }
+            writer.flush();
+        }
+        log.info("【产品导出完成】格式: {}, 行数: {}", format, rows);
+    }
+
+    private void writeCsvRow(Writer writer, Product product) throws IOException {
+        writer.write(String.valueOf(product.getId()));
+        writer.write(',');
+        writer.write(csvEscape(product.getName()));
+        writer.write(',');
+        writer.write(String.valueOf(product.getPrice()));
+        writer.write(',');
+        writer.write(String.valueOf(product.getStock()));
+        writer.write(',');
+        writer.write(product.getCreatedAt() == null ? "" : product.getCreatedAt().toString());
+        writer.write(',');
+        writer.write(product.getUpdatedAt() == null ? "" : product.getUpdatedAt().toString());
+        writer.write('\n');
+    }
+
+    /**
+     * CSV 转义：包含逗号、引号、换行的值用引号包起来，内部引号双写
+     */
+    private static String csvEscape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * 导出格式
+     */
+    public enum ExportFormat {
+        CSV, JSON
+    }
+
 }
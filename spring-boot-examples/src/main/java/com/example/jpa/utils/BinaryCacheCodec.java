@@ -0,0 +1,649 @@
+package com.example.jpa.utils;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotation;
+import com.fasterxml.jackson.annotation.JacksonAnnotationsInside;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 紧凑二进制编解码器
+ *
+ * 帧格式：MAGIC(1) | flags(1) | 结构指纹(4) | [原始长度(varint)] | body
+ * 1. body 按字段名顺序写字段值，不写字段名；开头是可空字段的 null 位图；整数用 zigzag 变长编码
+ * 2. 结构指纹由字段名和类型计算，类结构变化后旧数据解码失败，由调用方当作脏数据重新回源
+ * 3. body 超过压缩阈值时用 Deflater(BEST_SPEED) 压缩，压缩后没有变小则保留原文
+ * 4. 不支持的类型（集合、嵌套对象、没有无参构造等）整体回退到 JSON
+ * 5. 首字节不是 MAGIC 的数据按 JSON 解码，兼容切换前写入的旧缓存和空值缓存
+ * 6. 类、字段或方法上带 Jackson 注解（@JsonIgnore、@JsonProperty、@JsonFormat 等）的类型整体回退到 JSON，
+ *    保证这些注解照常生效
+ * 7. 二进制编码直接反射读写字段，不经过 getter/setter，也不理会 ObjectMapper 上的全局配置
+ *    （命名策略、MixIn、自定义序列化器等），依赖这些行为的类型需要加上 Jackson 注解让它走 JSON
+ * 8. 解码时的任何运行时异常都包装成 IOException 抛出，调用方按脏数据处理
+ */
+public class BinaryCacheCodec implements CacheCodec {
+
+    /** 0xB1 在 UTF-8 中是续字节，不会出现在 JSON 文本开头 */
+    private static final byte MAGIC = (byte) 0xB1;
+
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int FLAG_JSON_BODY = 1 << 1;
+
+    /** 解压长度上限，防止损坏数据申请超大数组 */
+    private static final int MAX_UNCOMPRESSED_BYTES = 64 * 1024 * 1024;
+
+    private final CacheCodec fallback;
+    private final int compressThreshold;
+
+    private final ClassValue<Schema> schemas = new ClassValue<>() {
+        @Override
+        protected Schema computeValue(Class<?> type) {
+            return Schema.of(type);
+        }
+    };
+
+    /**
+     * @param fallback          不支持二进制编码的类型使用的编解码器，同时用于解码旧数据
+     * @param compressThreshold body 达到多少字节开始压缩，0 表示不压缩
+     */
+    public BinaryCacheCodec(CacheCodec fallback, int compressThreshold) {
+        this.fallback = fallback;
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        Schema schema = value == null ? null : schemas.get(value.getClass());
+        if (schema == null) {
+            byte[] json = fallback.encode(value);
+            if (!shouldCompress(json.length)) {
+                // 小的 JSON 直接存原文
+                return json;
+            }
+            Output frame = new Output(json.length + 6);
+            frame.writeByte(MAGIC);
+            frame.writeByte(FLAG_JSON_BODY);
+            frame.writeInt(0);
+            return compressOrKeep(frame, json, 0, json.length);
+        }
+
+        Output out = new Output(128);
+        out.writeByte(MAGIC);
+        out.writeByte(0);
+        out.writeInt(schema.fingerprint);
+        int headerSize = out.size();
+        schema.write(value, out);
+        int bodySize = out.size() - headerSize;
+        if (!shouldCompress(bodySize)) {
+            return out.toByteArray();
+        }
+        Output frame = new Output(bodySize + headerSize);
+        frame.writeBytes(out.buffer(), 0, headerSize);
+        return compressOrKeep(frame, out.buffer(), headerSize, bodySize);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> clazz) throws IOException {
+        if (bytes.length == 0 || bytes[0] != MAGIC) {
+            return fallback.decode(bytes, clazz);
+        }
+        try {
+            Input in = new Input(bytes, 1);
+            int flags = in.readByte();
+            int fingerprint = in.readInt();
+
+            byte[] body = bytes;
+            int offset = in.position();
+            if ((flags & FLAG_COMPRESSED) != 0) {
+                int length = (int) in.readVarLong();
+                body = inflate(bytes, in.position(), bytes.length - in.position(), length);
+                offset = 0;
+            }
+
+            if ((flags & FLAG_JSON_BODY) != 0) {
+                return fallback.decode(offset == 0 && body != bytes ? body
+                        : Arrays.copyOfRange(body, offset, body.length), clazz);
+            }
+            Schema schema = schemas.get(clazz);
+            if (schema == null) {
+                throw new IOException("类型不支持二进制解码: " + clazz.getName());
+            }
+            if (schema.fingerprint != fingerprint) {
+                throw new IOException("缓存数据结构与当前类不一致: " + clazz.getName());
+            }
+            return clazz.cast(schema.read(new Input(body, offset)));
+        } catch (RuntimeException e) {
+            // 越界、非法时间值（DateTimeException）、类型转换失败等都说明数据不可用
+            throw new IOException("缓存数据已损坏", e);
+        }
+    }
+
+    private boolean shouldCompress(int bodySize) {
+        return compressThreshold > 0 && bodySize >= compressThreshold;
+    }
+
+    /**
+     * 压缩 body 追加到帧头后面，压缩后没有变小则追加原文
+     */
+    private static byte[] compressOrKeep(Output frame, byte[] src, int offset, int length) {
+        byte[] compressed = deflate(src, offset, length);
+        if (compressed == null) {
+            frame.writeBytes(src, offset, length);
+            return frame.toByteArray();
+        }
+        frame.buffer()[1] |= FLAG_COMPRESSED;
+        frame.writeVarLong(length);
+        frame.writeBytes(compressed, 0, compressed.length);
+        return frame.toByteArray();
+    }
+
+    /**
+     * 压缩，结果（含长度头）不比原文小时返回 null
+     */
+    private static byte[] deflate(byte[] src, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(src, offset, length);
+            deflater.finish();
+            byte[] out = new byte[length];
+            int size = deflater.deflate(out);
+            if (!deflater.finished() || size + 5 >= length) {
+                return null;
+            }
+            return Arrays.copyOf(out, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] src, int offset, int length, int uncompressedLength) throws IOException {
+        if (uncompressedLength < 0 || uncompressedLength > MAX_UNCOMPRESSED_BYTES) {
+            throw new IOException("缓存数据解压长度非法: " + uncompressedLength);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(src, offset, length);
+            byte[] out = new byte[uncompressedLength];
+            int size = 0;
+            while (size < uncompressedLength) {
+                int n = inflater.inflate(out, size, uncompressedLength - size);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("缓存数据解压不完整");
+                }
+                size += n;
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("缓存数据解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 类结构：参与编码的字段（按字段名排序）及其编码方式
+     */
+    private static final class Schema {
+
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+        private final ValueCodec[] codecs;
+        private final boolean[] nullable;
+        private final int nullableCount;
+        private final int fingerprint;
+
+        private Schema(Constructor<?> constructor, Field[] fields, ValueCodec[] codecs, int fingerprint) {
+            this.constructor = constructor;
+            this.fields = fields;
+            this.codecs = codecs;
+            this.nullable = new boolean[fields.length];
+            int count = 0;
+            for (int i = 0; i < fields.length; i++) {
+                nullable[i] = !fields[i].getType().isPrimitive();
+                if (nullable[i]) {
+                    count++;
+                }
+            }
+            this.nullableCount = count;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * 解析类结构，不支持二进制编码时返回 null
+         */
+        static Schema of(Class<?> type) {
+            if (type.isPrimitive() || type.isArray() || type.isInterface() || type.isEnum() || type.isRecord()
+                    || Modifier.isAbstract(type.getModifiers()) || type.getName().startsWith("java.")) {
+                return null;
+            }
+            List<Field> fieldList = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                if (hasJacksonAnnotation(c)) {
+                    return null;
+                }
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                        fieldList.add(field);
+                    }
+                }
+            }
+            fieldList.sort(Comparator.comparing(Field::getName)
+                    .thenComparing(field -> field.getDeclaringClass().getName()));
+
+            Field[] fields = fieldList.toArray(new Field[0]);
+            ValueCodec[] codecs = new ValueCodec[fields.length];
+            StringBuilder signature = new StringBuilder(type.getName());
+            for (int i = 0; i < fields.length; i++) {
+                codecs[i] = ValueCodec.forType(fields[i].getType());
+                if (codecs[i] == null) {
+                    return null;
+                }
+                signature.append(';').append(fields[i].getName()).append(':').append(fields[i].getType().getName());
+                if (fields[i].getType().isEnum()) {
+                    signature.append(Arrays.toString(fields[i].getType().getEnumConstants()));
+                }
+            }
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                for (Field field : fields) {
+                    field.setAccessible(true);
+                }
+                return new Schema(constructor, fields, codecs, signature.toString().hashCode());
+            } catch (NoSuchMethodException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * 类本身、字段或方法上是否有 Jackson 注解（包括用 @JacksonAnnotationsInside 组合的注解）
+         */
+        private static boolean hasJacksonAnnotation(Class<?> type) {
+            if (isJacksonAnnotated(type)) {
+                return true;
+            }
+            for (Field field : type.getDeclaredFields()) {
+                if (isJacksonAnnotated(field)) {
+                    return true;
+                }
+            }
+            for (Method method : type.getDeclaredMethods()) {
+                if (isJacksonAnnotated(method)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isJacksonAnnotated(AnnotatedElement element) {
+            for (Annotation annotation : element.getDeclaredAnnotations()) {
+                Class<? extends Annotation> annotationType = annotation.annotationType();
+                if (annotationType.isAnnotationPresent(JacksonAnnotation.class)
+                        || annotationType.isAnnotationPresent(JacksonAnnotationsInside.class)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void write(Object target, Output out) {
+            Object[] values = new Object[fields.length];
+            byte[] nullBits = new byte[(nullableCount + 7) >>> 3];
+            int bit = 0;
+            for (int i = 0; i < fields.length; i++) {
+                values[i] = get(fields[i], target);
+                if (nullable[i]) {
+                    if (values[i] == null) {
+                        nullBits[bit >>> 3] |= (byte) (1 << (bit & 7));
+                    }
+                    bit++;
+                }
+            }
+            out.writeBytes(nullBits, 0, nullBits.length);
+            for (int i = 0; i < fields.length; i++) {
+                if (values[i] != null) {
+                    codecs[i].write(out, values[i]);
+                }
+            }
+        }
+
+        Object read(Input in) throws IOException {
+            Object target;
+            try {
+                target = constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IOException("创建缓存对象失败: " + constructor.getDeclaringClass().getName(), e);
+            }
+            byte[] nullBits = in.readBytes((nullableCount + 7) >>> 3);
+            int bit = 0;
+            for (int i = 0; i < fields.length; i++) {
+                boolean isNull = false;
+                if (nullable[i]) {
+                    isNull = (nullBits[bit >>> 3] & (1 << (bit & 7))) != 0;
+                    bit++;
+                }
+                // 为 null 也要显式赋值，覆盖构造方法里的默认值
+                set(fields[i], target, isNull ? null : codecs[i].read(in));
+            }
+            return target;
+        }
+
+        private static Object get(Field field, Object target) {
+            try {
+                return field.get(target);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("读取字段失败: " + field, e);
+            }
+        }
+
+        private static void set(Field field, Object target, Object value) {
+            try {
+                field.set(target, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("写入字段失败: " + field, e);
+            }
+        }
+    }
+
+    /**
+     * 单个字段值的编码方式
+     */
+    private interface ValueCodec {
+
+        void write(Output out, Object value);
+
+        Object read(Input in);
+
+        static ValueCodec of(BiConsumer<Output, Object> writer, Function<Input, Object> reader) {
+            return new ValueCodec() {
+                @Override
+                public void write(Output out, Object value) {
+                    writer.accept(out, value);
+                }
+
+                @Override
+                public Object read(Input in) {
+                    return reader.apply(in);
+                }
+            };
+        }
+
+        /**
+         * 支持的字段类型，不支持返回 null
+         */
+        static ValueCodec forType(Class<?> type) {
+            if (type == boolean.class || type == Boolean.class) {
+                return of((out, v) -> out.writeByte((Boolean) v ? 1 : 0), in -> in.readByte() != 0);
+            }
+            if (type == byte.class || type == Byte.class) {
+                return of((out, v) -> out.writeByte((Byte) v), in -> (byte) in.readByte());
+            }
+            if (type == short.class || type == Short.class) {
+                return of((out, v) -> out.writeZigZag((Short) v), in -> (short) in.readZigZag());
+            }
+            if (type == char.class || type == Character.class) {
+                return of((out, v) -> out.writeVarLong((Character) v), in -> (char) in.readVarLong());
+            }
+            if (type == int.class || type == Integer.class) {
+                return of((out, v) -> out.writeZigZag((Integer) v), in -> (int) in.readZigZag());
+            }
+            if (type == long.class || type == Long.class) {
+                return of((out, v) -> out.writeZigZag((Long) v), Input::readZigZag);
+            }
+            if (type == float.class || type == Float.class) {
+                return of((out, v) -> out.writeInt(Float.floatToIntBits((Float) v)),
+                        in -> Float.intBitsToFloat(in.readInt()));
+            }
+            if (type == double.class || type == Double.class) {
+                return of((out, v) -> out.writeLong(Double.doubleToLongBits((Double) v)),
+                        in -> Double.longBitsToDouble(in.readLong()));
+            }
+            if (type == String.class) {
+                return of((out, v) -> out.writeString((String) v), Input::readString);
+            }
+            if (type == byte[].class) {
+                return of((out, v) -> out.writeLengthPrefixed((byte[]) v), Input::readLengthPrefixed);
+            }
+            if (type == BigInteger.class) {
+                return of((out, v) -> out.writeLengthPrefixed(((BigInteger) v).toByteArray()),
+                        in -> new BigInteger(in.readLengthPrefixed()));
+            }
+            if (type == BigDecimal.class) {
+                return of((out, v) -> {
+                    BigDecimal decimal = (BigDecimal) v;
+                    out.writeZigZag(decimal.scale());
+                    out.writeLengthPrefixed(decimal.unscaledValue().toByteArray());
+                }, in -> {
+                    int scale = (int) in.readZigZag();
+                    return new BigDecimal(new BigInteger(in.readLengthPrefixed()), scale);
+                });
+            }
+            if (type == LocalDate.class) {
+                return of((out, v) -> out.writeZigZag(((LocalDate) v).toEpochDay()),
+                        in -> LocalDate.ofEpochDay(in.readZigZag()));
+            }
+            if (type == LocalTime.class) {
+                return of((out, v) -> out.writeVarLong(((LocalTime) v).toNanoOfDay()),
+                        in -> LocalTime.ofNanoOfDay(in.readVarLong()));
+            }
+            if (type == LocalDateTime.class) {
+                return of((out, v) -> {
+                    LocalDateTime dateTime = (LocalDateTime) v;
+                    out.writeZigZag(dateTime.toLocalDate().toEpochDay());
+                    out.writeVarLong(dateTime.toLocalTime().toNanoOfDay());
+                }, in -> {
+                    LocalDate date = LocalDate.ofEpochDay(in.readZigZag());
+                    return LocalDateTime.of(date, LocalTime.ofNanoOfDay(in.readVarLong()));
+                });
+            }
+            if (type == Instant.class) {
+                return of((out, v) -> {
+                    Instant instant = (Instant) v;
+                    out.writeZigZag(instant.getEpochSecond());
+                    out.writeVarLong(instant.getNano());
+                }, in -> {
+                    long seconds = in.readZigZag();
+                    return Instant.ofEpochSecond(seconds, in.readVarLong());
+                });
+            }
+            if (type == UUID.class) {
+                return of((out, v) -> {
+                    UUID uuid = (UUID) v;
+                    out.writeLong(uuid.getMostSignificantBits());
+                    out.writeLong(uuid.getLeastSignificantBits());
+                }, in -> {
+                    long most = in.readLong();
+                    return new UUID(most, in.readLong());
+                });
+            }
+            if (type.isEnum()) {
+                Object[] constants = type.getEnumConstants();
+                return of((out, v) -> out.writeVarLong(((Enum<?>) v).ordinal()),
+                        in -> constants[(int) in.readVarLong()]);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 可扩容的写缓冲
+     */
+    private static final class Output {
+
+        private byte[] buf;
+        private int size;
+
+        Output(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buf[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            buf[size++] = (byte) (value >>> 24);
+            buf[size++] = (byte) (value >>> 16);
+            buf[size++] = (byte) (value >>> 8);
+            buf[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            writeLengthPrefixed(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeLengthPrefixed(byte[] bytes) {
+            writeVarLong(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buf, size, length);
+            size += length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * 读缓冲，越界时抛出 IndexOutOfBoundsException，由 decode 转为 IOException
+     */
+    private static final class Input {
+
+        private final byte[] buf;
+        private int pos;
+
+        Input(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        int position() {
+            return pos;
+        }
+
+        int readByte() {
+            return buf[pos++];
+        }
+
+        int readInt() {
+            int value = (buf[pos] & 0xFF) << 24 | (buf[pos + 1] & 0xFF) << 16
+                    | (buf[pos + 2] & 0xFF) << 8 | (buf[pos + 3] & 0xFF);
+            pos += 4;
+            return value;
+        }
+
+        long readLong() {
+            return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buf[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("变长整数格式错误");
+        }
+
+        long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            int length = readLength();
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        byte[] readLengthPrefixed() {
+            return readBytes(readLength());
+        }
+
+        byte[] readBytes(int length) {
+            byte[] bytes = Arrays.copyOfRange(buf, pos, checkedEnd(length));
+            pos += length;
+            return bytes;
+        }
+
+        private int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > buf.length - pos) {
+                throw new IndexOutOfBoundsException("长度越界: " + length);
+            }
+            return (int) length;
+        }
+
+        private int checkedEnd(int length) {
+            if (length > buf.length - pos) {
+                throw new IndexOutOfBoundsException("长度越界: " + length);
+            }
+            return pos + length;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.jpa.utils;
+
+import java.io.IOException;
+
+/**
+ * 缓存值编解码器（Redis 边界的序列化方式）
+ * 实现：
+ * - JsonCacheCodec：Jackson JSON，可读性好，体积和 CPU 开销较大
+ * - BinaryCacheCodec：紧凑二进制，按类结构编码，大对象可压缩
+ *
+ * 通过 multi-cache.codec 切换，见 CacheCodecConfig
+ */
+public interface CacheCodec {
+
+    /**
+     * 编码
+     *
+     * @param value 缓存值
+     * @return 写入 Redis 的字节
+     */
+    byte[] encode(Object value) throws IOException;
+
+    /**
+     * 解码
+     *
+     * @param bytes 从 Redis 读出的字节
+     * @param clazz 目标类型
+     * @return 缓存值，空值缓存返回 null
+     */
+    <T> T decode(byte[] bytes, Class<T> clazz) throws IOException;
+}
@@ -0,0 +1,152 @@
+package com.example.jpa.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地缓存失效总线
+ * 作用：某个节点删除缓存后，把 key 广播给所有节点，让其他节点的 Caffeine 本地缓存同步失效
+ *
+ * 1. 批量：失效的 key 先进入队列，按条数或时间间隔合并成一条消息发送
+ * 2. 版本：每条失效带版本号（删除时 Redis 里该 key 递增后的计数），接收方只淘汰版本低于它的本地条目，
+ *    迟到的失效消息不会误删之后重新加载的新数据
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final CacheInvalidationTransport transport;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    private final Queue<Invalidation> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService flusher;
+
+    public CacheInvalidationBus(CacheInvalidationTransport transport,
+            @Qualifier("objectMapper") ObjectMapper objectMapper,
+            @Value("${multi-cache.invalidation.batch-size:100}") int batchSize,
+            @Value("${multi-cache.invalidation.flush-interval-ms:50}") long flushIntervalMillis) {
+        this.transport = transport;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-invalidation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        transport.subscribe(this::onMessage);
+    }
+
+    /**
+     * 注册本地失效回调
+     */
+    public void addListener(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 发布一个 key 的失效（异步批量发送）
+     *
+     * @param key     缓存key
+     * @param version 失效版本号，本地版本低于它的条目会被淘汰
+     */
+    public void publish(String key, long version) {
+        pending.add(new Invalidation(key, version));
+        if (pendingCount.incrementAndGet() >= batchSize) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    /**
+     * 把队列里的失效合并发送，同一个 key 只保留最大版本
+     */
+    public synchronized void flush() {
+        while (pendingCount.get() > 0) {
+            Map<String, Long> batch = new HashMap<>();
+            Invalidation next;
+            while (batch.size() < batchSize && (next = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                batch.merge(next.key(), next.version(), Math::max);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<Invalidation> items = new ArrayList<>(batch.size());
+            batch.forEach((key, version) -> items.add(new Invalidation(key, version)));
+            try {
+                transport.publish(objectMapper.writeValueAsString(new InvalidationMessage(nodeId, items)));
+            } catch (Exception e) {
+                // 广播失败时其他节点依赖本地缓存的过期时间兜底
+                log.error("【缓存失效广播失败】keys: {}", batch.keySet(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+
+    /**
+     * 收到失效消息：忽略本节点发出的消息（本地已经失效过）
+     */
+    private void onMessage(String payload) {
+        try {
+            InvalidationMessage message = objectMapper.readValue(payload, InvalidationMessage.class);
+            if (nodeId.equals(message.nodeId())) {
+                return;
+            }
+            for (Invalidation item : message.items()) {
+                listeners.forEach(listener -> listener.onInvalidate(item.key(), item.version()));
+            }
+        } catch (Exception e) {
+            log.error("【缓存失效消息处理失败】payload: {}", payload, e);
+        }
+    }
+
+    /**
+     * 本地失效回调
+     */
+    @FunctionalInterface
+    public interface InvalidationListener {
+        void onInvalidate(String key, long version);
+    }
+
+    /**
+     * 单个 key 的失效
+     */
+    public record Invalidation(String key, long version) {
+    }
+
+    /**
+     * 广播消息：来源节点 + 一批失效
+     */
+    public record InvalidationMessage(String nodeId, List<Invalidation> items) {
+    }
+}
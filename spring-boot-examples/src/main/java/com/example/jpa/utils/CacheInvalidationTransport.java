@@ -0,0 +1,22 @@
+package com.example.jpa.utils;
+
+import java.util.function.Consumer;
+
+/**
+ * 本地缓存失效消息的传输通道
+ * 实现：
+ * - RedisInvalidationTransport：Redis pub/sub，多节点部署使用
+ * - InProcessInvalidationTransport：进程内广播，单机或测试使用
+ */
+public interface CacheInvalidationTransport {
+
+    /**
+     * 广播一条失效消息（已序列化的批量消息）
+     */
+    void publish(String payload);
+
+    /**
+     * 订阅失效消息
+     */
+    void subscribe(Consumer<String> listener);
+}
@@ -0,0 +1,24 @@
+package com.example.jpa.utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内失效消息通道
+ * 多个 CacheInvalidationBus 共享同一个实例即可模拟多节点
+ */
+public class InProcessInvalidationTransport implements CacheInvalidationTransport {
+
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(String payload) {
+        listeners.forEach(listener -> listener.accept(payload));
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.jpa.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 索引顾问：统计实际执行的 SELECT 耗时，对慢查询执行 H2 EXPLAIN，报告全表扫描和建议的索引
+ *
+ * 通过 wrap 包装数据源，连接和语句都是动态代理：
+ * - 按规范化后的 SQL 累计执行次数、平均/最大耗时
+ * - 保留最慢一次执行的参数，EXPLAIN 时原样绑定，计划与真实执行一致
+ * - EXPLAIN 只在拉取报告时执行，走原始数据源，不影响业务查询
+ *
+ * 建议规则（B-Tree）：等值列在前，第一个范围/排序列在后；前置通配符 LIKE 无法使用索引，只给出提示
+ */
+public class IndexAdvisor {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexAdvisor.class);
+
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+    // 计划中的全表扫描：FROM "PUBLIC"."PRODUCT" "P1_0" /* PUBLIC.PRODUCT.tableScan */
+    private static final Pattern TABLE_SCAN_PATTERN = Pattern
+            .compile("\"(\\w+)\"\\.\"(\\w+)\"(?:\\s+\"(\\w+)\")?\\s*/\\*\\s*[\\w.]+\\.tableScan\\s*\\*/");
+    private static final String OPERATOR = "\\s*(<>|<=|>=|=|<|>|BETWEEN\\b|IN\\b|LIKE\\b|IS\\b)\\s*(?:\\?(\\d+)|'([^']*)')?";
+    private static final Set<String> EQUALITY_OPERATORS = Set.of("=", "IN", "IS");
+
+    private final long slowThresholdNanos;
+    private final int maxStatements;
+    private final Map<String, SqlStats> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * 执行 EXPLAIN 用的原始数据源（未包装，EXPLAIN 本身不会被统计）
+     */
+    private volatile DataSource explainDataSource;
+
+    /**
+     * @param slowThresholdMillis 最大耗时达到该值的 SQL 才会出现在报告中
+     * @param maxStatements       最多统计的不同 SQL 条数，超过后新 SQL 不再统计
+     */
+    public IndexAdvisor(long slowThresholdMillis, int maxStatements) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.maxStatements = maxStatements;
+    }
+
+    // ==================== 数据源包装 ====================
+    public DataSource wrap(DataSource target) {
+        this.explainDataSource = target;
+        return proxy(DataSource.class, target, (method, args, result) -> result instanceof Connection connection
+                ? wrapConnection(connection)
+                : result);
+    }
+
+    private Connection wrapConnection(Connection target) {
+        return proxy(Connection.class, target, (method, args, result) -> {
+            String name = method.getName();
+            if (result instanceof PreparedStatement statement && name.equals("prepareStatement")) {
+                return wrapStatement(PreparedStatement.class, statement, (String) args[0]);
+            }
+            if (result instanceof Statement statement && name.equals("createStatement")) {
+                return wrapStatement(Statement.class, statement, null);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 语句代理：记录 setXxx 绑定的参数，对 execute* 计时
+     *
+     * @param sql 预编译 SQL；普通 Statement 为 null，从 execute 的参数里取
+     */
+    private <S extends Statement> S wrapStatement(Class<S> type, S target, String sql) {
+        Map<Integer, Object> params = new HashMap<>();
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (isIdentityMethod(name)) {
+                return identity(proxy, name, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                params.put(index, name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                params.clear();
+            }
+            String executed = sql != null ? sql
+                    : (args != null && args.length > 0 && args[0] instanceof String s ? s : null);
+            if (!name.startsWith("execute") || executed == null) {
+                return invoke(target, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return invoke(target, method, args);
+            } finally {
+                record(executed, System.nanoTime() - start, params);
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    // ==================== 统计 ====================
+    private void record(String sql, long nanos, Map<Integer, Object> params) {
+        String normalized = WHITESPACE_PATTERN.matcher(sql.trim()).replaceAll(" ");
+        // 只有查询才需要索引建议
+        if (!normalized.regionMatches(true, 0, "select", 0, 6)) {
+            return;
+        }
+        SqlStats stats = statistics.get(normalized);
+        if (stats == null) {
+            if (statistics.size() >= maxStatements) {
+                return;
+            }
+            stats = statistics.computeIfAbsent(normalized, key -> new SqlStats());
+        }
+        stats.record(nanos, params);
+    }
+
+    /**
+     * 清空统计（建完索引后重新观察）
+     */
+    public void reset() {
+        statistics.clear();
+    }
+
+    // ==================== 报告 ====================
+    /**
+     * 对最大耗时超过阈值的 SQL 执行 EXPLAIN，按最大耗时倒序返回
+     */
+    public List<IndexAdvice> report() {
+        DataSource dataSource = explainDataSource;
+        if (dataSource == null) {
+            throw new IllegalStateException("IndexAdvisor 尚未包装数据源");
+        }
+        List<IndexAdvice> report = new ArrayList<>();
+        statistics.forEach((sql, stats) -> {
+            if (stats.maxNanos.get() >= slowThresholdNanos) {
+                report.add(advise(dataSource, sql, stats));
+            }
+        });
+        report.sort(Comparator.comparingDouble(IndexAdvice::maxMillis).reversed());
+        return report;
+    }
+
+    private IndexAdvice advise(DataSource dataSource, String sql, SqlStats stats) {
+        Map<Integer, Object> params = stats.sampleParams;
+        String plan;
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (Map.Entry<Integer, Object> param : params.entrySet()) {
+                statement.setObject(param.getKey(), param.getValue());
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                plan = rs.next() ? WHITESPACE_PATTERN.matcher(rs.getString(1)).replaceAll(" ") : "";
+            }
+        } catch (SQLException e) {
+            logger.warn("EXPLAIN 执行失败：{}", sql, e);
+            return new IndexAdvice(sql, stats.count.sum(), stats.avgMillis(), stats.maxMillis(), null, false,
+                    List.of(), List.of("EXPLAIN 执行失败：" + e.getMessage()));
+        }
+
+        List<String> suggestions = new ArrayList<>();
+        List<String> notes = new ArrayList<>();
+        boolean fullScan = analysePlan(plan, params, suggestions, notes);
+        return new IndexAdvice(sql, stats.count.sum(), stats.avgMillis(), stats.maxMillis(), plan, fullScan,
+                suggestions, notes);
+    }
+
+    /**
+     * 分析 H2 执行计划：找出全表扫描的表，从 WHERE 和 ORDER BY 中收集该表的列，生成建索引语句
+     *
+     * @return 是否存在全表扫描
+     */
+    static boolean analysePlan(String plan, Map<Integer, Object> params, List<String> suggestions,
+            List<String> notes) {
+        Matcher scan = TABLE_SCAN_PATTERN.matcher(plan);
+        boolean fullScan = false;
+        while (scan.find()) {
+            fullScan = true;
+            String table = scan.group(2);
+            String alias = scan.group(3);
+            String columnRef = alias != null
+                    ? "\"" + Pattern.quote(alias) + "\"\\.\"(\\w+)\""
+                    : "(?<![\\w\".])(?:(?:\"\\w+\"\\.)?\"" + Pattern.quote(table) + "\"\\.)?\"(\\w+)\"";
+
+            Set<String> equality = new LinkedHashSet<>();
+            Set<String> range = new LinkedHashSet<>();
+            String rest = plan.substring(scan.end());
+            int orderBy = rest.lastIndexOf(" ORDER BY ");
+            String where = orderBy < 0 ? rest : rest.substring(0, orderBy);
+
+            Matcher condition = Pattern.compile(columnRef + OPERATOR).matcher(where);
+            while (condition.find()) {
+                String column = condition.group(1);
+                String operator = condition.group(2);
+                if (operator.equals("LIKE") && isLeadingWildcard(condition.group(3), condition.group(4), params)) {
+                    notes.add(table + "." + column + " 使用前置通配符 LIKE，B-Tree 索引无效，需要全文/倒排索引");
+                    continue;
+                }
+                (EQUALITY_OPERATORS.contains(operator) ? equality : range).add(column);
+            }
+            if (orderBy >= 0) {
+                Matcher order = Pattern.compile(columnRef).matcher(rest.substring(orderBy));
+                while (order.find()) {
+                    range.add(order.group(1));
+                }
+            }
+            range.removeAll(equality);
+
+            // 复合索引只有最后一列能用作范围，等值列在前
+            List<String> columns = new ArrayList<>(equality);
+            range.stream().findFirst().ifPresent(columns::add);
+            if (columns.isEmpty()) {
+                notes.add(table + " 全表扫描，但没有可建索引的过滤/排序列");
+                continue;
+            }
+            String tableName = table.toLowerCase(Locale.ROOT);
+            String columnList = String.join(", ", columns).toLowerCase(Locale.ROOT);
+            suggestions.add("CREATE INDEX idx_" + tableName + "_" + columnList.replace(", ", "_")
+                    + " ON " + tableName + "(" + columnList + ")");
+        }
+        return fullScan;
+    }
+
+    private static boolean isLeadingWildcard(String paramIndex, String literal, Map<Integer, Object> params) {
+        Object pattern = paramIndex != null ? params.get(Integer.valueOf(paramIndex)) : literal;
+        return pattern instanceof String s && (s.startsWith("%") || s.startsWith("_"));
+    }
+
+    // ==================== 代理工具 ====================
+    @FunctionalInterface
+    private interface ResultWrapper {
+        Object wrap(Method method, Object[] args, Object result) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, T target, ResultWrapper wrapper) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (isIdentityMethod(method.getName())) {
+                return identity(proxy, method.getName(), args);
+            }
+            return wrapper.wrap(method, args, invoke(target, method, args));
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * equals/hashCode 按代理对象自身判断：Hibernate 用 Statement 作 HashMap 的 key 登记资源
+     */
+    private static boolean isIdentityMethod(String name) {
+        return name.equals("equals") || name.equals("hashCode");
+    }
+
+    private static Object identity(Object proxy, String name, Object[] args) {
+        return name.equals("equals") ? proxy == args[0] : System.identityHashCode(proxy);
+    }
+
+    // ==================== 统计对象 ====================
+    private static class SqlStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        // 最慢一次执行的参数，EXPLAIN 时使用
+        volatile Map<Integer, Object> sampleParams = Map.of();
+
+        void record(long nanos, Map<Integer, Object> params) {
+            count.increment();
+            totalNanos.add(nanos);
+            if (maxNanos.accumulateAndGet(nanos, Math::max) == nanos) {
+                sampleParams = new HashMap<>(params);
+            }
+        }
+
+        double avgMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / (double) n / 1_000_000;
+        }
+
+        double maxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+    }
+
+    /**
+     * 单条 SQL 的索引建议
+     *
+     * @param sql         规范化后的 SQL
+     * @param executions  执行次数
+     * @param avgMillis   平均耗时（毫秒）
+     * @param maxMillis   最大耗时（毫秒）
+     * @param plan        H2 执行计划，EXPLAIN 失败时为 null
+     * @param fullScan    是否存在全表扫描
+     * @param suggestions 建议的建索引语句
+     * @param notes       无法通过索引解决的问题说明
+     */
+    public record IndexAdvice(String sql, long executions, double avgMillis, double maxMillis, String plan,
+            boolean fullScan, List<String> suggestions, List<String> notes) {
+    }
+}
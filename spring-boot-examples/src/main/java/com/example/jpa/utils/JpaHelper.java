@@ -2,11 +2,21 @@ package com.example.jpa.utils;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.SingularAttribute;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -19,20 +29,44 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * JPA Specification 通用动态查询工具类
  * 替代原生SQL，类型安全、防注入、支持动态条件、分页、排序、多表关联
+ * 同一查询形状（实体 + 条件字段/操作符 + 排序）只编译一次，生成参数化 JPQL 后缓存复用
  */
 @Component
 public class JpaHelper {
 
     private static final Logger logger = LoggerFactory.getLogger(JpaHelper.class);
     private static final int MAX_RESULT_SIZE = 100000;
+    private static final int STREAM_CLEAR_INTERVAL = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 50;
+
+    private static final int QUERY_SHAPE_CACHE_MAX_SIZE = 500;
+    private static final String ROOT_ALIAS = "e";
+    private static final String PARAM_PREFIX = "p";
 
     @PersistenceContext
     private EntityManager entityManager;
 
+    /**
+     * 查询形状缓存：实体类 + 条件字段/操作符 + 排序 -> 编译好的 JPQL
+     * 同一形状的查询不再重复构建 Criteria 树、拆分级联字段；JPQL 字符串固定，还能命中 Hibernate 的查询计划缓存
+     */
+    private final Cache<QueryShape, CompiledQuery> queryShapeCache = Caffeine.newBuilder()
+            .maximumSize(QUERY_SHAPE_CACHE_MAX_SIZE)
+            .recordStats()
+            .build();
+
+    /**
+     * 是否使用编译查询（关闭时回退到每次构建 Criteria）
+     */
+    private boolean compiledQueryEnabled = true;
+
     // ==================== 分页查询（实体类） ====================
     public <T> Page<T> pageQuery(Class<T> entityClass,
             List<SearchCondition> conditions,
@@ -41,21 +75,8 @@ public class JpaHelper {
             throw new IllegalArgumentException("分页参数不能为空");
         }
         try {
-            Specification<T> spec = buildSpecification(conditions);
-            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-            CriteriaQuery<T> query = cb.createQuery(entityClass);
-            Root<T> root = query.from(entityClass);
-
-            // 应用查询条件
-            if (spec != null) {
-                query.where(toPredicate(spec, root, query, cb));
-            }
-
-            // 应用排序
-            applySort(query, root, cb, pageable.getSort());
-
             // 查询列表
-            List<T> content = entityManager.createQuery(query)
+            List<T> content = selectQuery(entityClass, conditions, pageable.getSort())
                     .setFirstResult((int) pageable.getOffset())
                     .setMaxResults(pageable.getPageSize())
                     .getResultList();
@@ -74,16 +95,7 @@ public class JpaHelper {
     // ==================== 列表查询（不分页） ====================
     public <T> List<T> listQuery(Class<T> entityClass, List<SearchCondition> conditions) {
         try {
-            Specification<T> spec = buildSpecification(conditions);
-            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-            CriteriaQuery<T> query = cb.createQuery(entityClass);
-            Root<T> root = query.from(entityClass);
-
-            if (spec != null) {
-                query.where(toPredicate(spec, root, query, cb));
-            }
-
-            List<T> result = entityManager.createQuery(query)
+            List<T> result = selectQuery(entityClass, conditions, null)
                     .setMaxResults(MAX_RESULT_SIZE)
                     .getResultList();
 
@@ -95,6 +107,33 @@ public class JpaHelper {
         }
     }
 
+    // ==================== 流式查询（大结果集导出） ====================
+    /**
+     * 基于只进游标的流式查询，不受 MAX_RESULT_SIZE 限制
+     * 每消费 STREAM_CLEAR_INTERVAL 行清空一次持久化上下文；必须在事务内调用并关闭 Stream
+     */
+    public <T> Stream<T> streamQuery(Class<T> entityClass, List<SearchCondition> conditions, Sort sort,
+            int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize不能小于1");
+        }
+        try {
+            AtomicLong consumed = new AtomicLong();
+            return selectQuery(entityClass, conditions, sort)
+                    .setHint("org.hibernate.fetchSize", fetchSize)
+                    .setHint("org.hibernate.readOnly", true)
+                    .getResultStream()
+                    .peek(row -> {
+                        if (consumed.incrementAndGet() % STREAM_CLEAR_INTERVAL == 0) {
+                            entityManager.clear();
+                        }
+                    });
+        } catch (Exception e) {
+            logger.error("Specification流式查询异常", e);
+            throw new RuntimeException("流式查询失败：" + e.getMessage(), e);
+        }
+    }
+
     // ==================== 查询单个对象 ====================
     public <T> T findOne(Class<T> entityClass, List<SearchCondition> conditions) {
         List<T> list = listQuery(entityClass, conditions);
@@ -124,6 +163,72 @@ public class JpaHelper {
         logger.info("实体保存成功：{}", entity);
     }
 
+    // ==================== 批量保存/更新（JDBC 批处理） ====================
+    /**
+     * 批量保存：每 chunkSize 条 flush + clear 一次，一次 flush 内的 INSERT 按 JDBC 批处理发送
+     * 实体主键必须是序列/pooled 生成，IDENTITY 主键会让 Hibernate 逐条执行 INSERT，批处理失效
+     * 传入 Iterable 即可，大批量导入时不必把全部实体先放进内存
+     *
+     * @return 保存的条数
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public <T> int saveAll(Iterable<T> entities, int chunkSize) {
+        return writeInChunks(entities, chunkSize, entityManager::persist);
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    public <T> int saveAll(Iterable<T> entities) {
+        return saveAll(entities, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * 批量更新：逐条 merge，每 chunkSize 条 flush + clear 一次，UPDATE 按 JDBC 批处理发送
+     *
+     * @return 更新的条数
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public <T> int updateAll(Iterable<T> entities, int chunkSize) {
+        return writeInChunks(entities, chunkSize, entityManager::merge);
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    public <T> int updateAll(Iterable<T> entities) {
+        return updateAll(entities, DEFAULT_BATCH_SIZE);
+    }
+
+    private <T> int writeInChunks(Iterable<T> entities, int chunkSize, Consumer<T> writer) {
+        if (entities == null) {
+            throw new IllegalArgumentException("实体集合不能为空");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize不能小于1");
+        }
+        // 本次会话的 JDBC 批大小与分块大小一致，一个分块正好一个批次
+        Session session = entityManager.unwrap(Session.class);
+        Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(chunkSize);
+        int count = 0;
+        try {
+            for (T entity : entities) {
+                if (entity == null) {
+                    throw new IllegalArgumentException("实体不能为空");
+                }
+                writer.accept(entity);
+                if (++count % chunkSize == 0) {
+                    // 刷出本批语句并释放一级缓存，持久化上下文不随批量大小增长
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+            entityManager.flush();
+            entityManager.clear();
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+        logger.info("批量写入完成：{}条，分块大小={}", count, chunkSize);
+        return count;
+    }
+
     // ==================== 删除 ====================
     @Transactional(rollbackFor = Exception.class)
     public <T> void delete(Class<T> entityClass, Object id) {
@@ -137,23 +242,195 @@ public class JpaHelper {
     // ==================== 统计数量 ====================
     public <T> long countQuery(Class<T> entityClass, List<SearchCondition> conditions) {
         try {
-            Specification<T> spec = buildSpecification(conditions);
-            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-            CriteriaQuery<Long> query = cb.createQuery(Long.class);
-            Root<T> root = query.from(entityClass);
-            query.select(cb.count(root));
-
-            if (spec != null) {
-                query.where(toPredicate(spec, root, query, cb));
-            }
-
-            return entityManager.createQuery(query).getSingleResult();
+            return countTypedQuery(entityClass, conditions).getSingleResult();
         } catch (Exception e) {
             logger.error("统计数量异常", e);
             return 0;
         }
     }
 
+    // ==================== 创建查询（编译缓存 / Criteria） ====================
+    private <T> TypedQuery<T> selectQuery(Class<T> entityClass, List<SearchCondition> conditions, Sort sort) {
+        if (!compiledQueryEnabled) {
+            return criteriaSelectQuery(entityClass, conditions, sort);
+        }
+        List<SearchCondition> active = activeConditions(conditions);
+        CompiledQuery compiled = compiledQuery(entityClass, active, sort);
+        TypedQuery<T> query = entityManager.createQuery(compiled.selectJpql(), entityClass);
+        bindParameters(query, active);
+        return query;
+    }
+
+    private <T> TypedQuery<Long> countTypedQuery(Class<T> entityClass, List<SearchCondition> conditions) {
+        if (!compiledQueryEnabled) {
+            return criteriaCountQuery(entityClass, conditions);
+        }
+        List<SearchCondition> active = activeConditions(conditions);
+        CompiledQuery compiled = compiledQuery(entityClass, active, null);
+        TypedQuery<Long> query = entityManager.createQuery(compiled.countJpql(), Long.class);
+        bindParameters(query, active);
+        return query;
+    }
+
+    private <T> TypedQuery<T> criteriaSelectQuery(Class<T> entityClass, List<SearchCondition> conditions,
+            Sort sort) {
+        Specification<T> spec = buildSpecification(conditions);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(entityClass);
+        Root<T> root = query.from(entityClass);
+
+        // 应用查询条件
+        if (spec != null) {
+            query.where(toPredicate(spec, root, query, cb));
+        }
+
+        // 应用排序
+        applySort(query, root, cb, sort);
+        return entityManager.createQuery(query);
+    }
+
+    private <T> TypedQuery<Long> criteriaCountQuery(Class<T> entityClass, List<SearchCondition> conditions) {
+        Specification<T> spec = buildSpecification(conditions);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(entityClass);
+        query.select(cb.count(root));
+
+        if (spec != null) {
+            query.where(toPredicate(spec, root, query, cb));
+        }
+        return entityManager.createQuery(query);
+    }
+
+    // ==================== 编译查询（JPQL 形状缓存） ====================
+    /**
+     * 获取查询形状对应的 JPQL，未命中时编译一次
+     * 形状 = 实体类 + 按顺序的（字段, 操作符）+ 排序，不含条件值，值全部作为参数绑定
+     */
+    private CompiledQuery compiledQuery(Class<?> entityClass, List<SearchCondition> active, Sort sort) {
+        List<ClauseShape> clauses = new ArrayList<>(active.size());
+        for (SearchCondition condition : active) {
+            clauses.add(ClauseShape.of(condition));
+        }
+        Sort shapeSort = sort == null ? Sort.unsorted() : sort;
+        // 编译时抛出的校验异常不会被缓存，下次同样的请求会重新校验
+        return queryShapeCache.get(new QueryShape(entityClass, clauses, shapeSort), this::compile);
+    }
+
+    /**
+     * 把查询形状编译成 JPQL：字段逐段用元模型校验，拼进语句的只有实体名和属性名，参数名为 p0..pn
+     */
+    private CompiledQuery compile(QueryShape shape) {
+        EntityType<?> entityType = entityManager.getMetamodel().entity(shape.entityClass());
+        StringBuilder where = new StringBuilder();
+        List<ClauseShape> clauses = shape.clauses();
+        for (int i = 0; i < clauses.size(); i++) {
+            ClauseShape clause = clauses.get(i);
+            where.append(i == 0 ? " where " : " and ")
+                    .append(renderClause(resolvePath(entityType, clause.field()), clause, PARAM_PREFIX + i));
+        }
+
+        StringBuilder orderBy = new StringBuilder();
+        for (Sort.Order order : shape.sort()) {
+            orderBy.append(orderBy.isEmpty() ? " order by " : ", ")
+                    .append(resolvePath(entityType, order.getProperty()).jpql())
+                    .append(order.isAscending() ? " asc" : " desc");
+        }
+
+        String from = " from " + entityType.getName() + " " + ROOT_ALIAS + where;
+        CompiledQuery compiled = new CompiledQuery("select " + ROOT_ALIAS + from + orderBy,
+                "select count(" + ROOT_ALIAS + ")" + from);
+        logger.debug("编译查询形状：{} -> {}", shape, compiled.selectJpql());
+        return compiled;
+    }
+
+    private String renderClause(ResolvedPath path, ClauseShape clause, String param) {
+        String field = path.jpql();
+        String text = String.class.equals(path.javaType()) ? field : "cast(" + field + " as String)";
+        return switch (clause.operator()) {
+            case EQ -> field + " = :" + param;
+            case NE -> field + " <> :" + param;
+            case GT -> field + " > :" + param;
+            case LT -> field + " < :" + param;
+            case GTE -> field + " >= :" + param;
+            case LTE -> field + " <= :" + param;
+            case LIKE, LIKE_LEFT, LIKE_RIGHT -> text + " like :" + param;
+            // 空集合：IN 恒为假，NOT IN 恒为真
+            case IN -> clause.emptyCollection() ? "1 = 0" : field + " in :" + param;
+            case NOT_IN -> clause.emptyCollection() ? "1 = 1" : field + " not in :" + param;
+            case IS_NULL -> field + " is null";
+            case IS_NOT_NULL -> field + " is not null";
+        };
+    }
+
+    /**
+     * 用元模型解析字段路径（支持级联，如 user.name），未知属性抛出 IllegalArgumentException
+     */
+    private ResolvedPath resolvePath(EntityType<?> entityType, String field) {
+        ManagedType<?> type = entityType;
+        StringBuilder jpql = new StringBuilder(ROOT_ALIAS);
+        Class<?> javaType = null;
+        for (String part : field.split("\\.")) {
+            if (type == null) {
+                throw new IllegalArgumentException("字段不支持级联访问: " + field);
+            }
+            Attribute<?, ?> attribute = type.getAttribute(part);
+            jpql.append('.').append(attribute.getName());
+            javaType = attribute.getJavaType();
+            type = attribute instanceof SingularAttribute<?, ?> singular
+                    && singular.getType() instanceof ManagedType<?> managed ? managed : null;
+        }
+        return new ResolvedPath(jpql.toString(), javaType);
+    }
+
+    /**
+     * 按编译时的顺序绑定条件值，参数名与 compile 生成的一致
+     */
+    private void bindParameters(TypedQuery<?> query, List<SearchCondition> active) {
+        for (int i = 0; i < active.size(); i++) {
+            SearchCondition condition = active.get(i);
+            Object value = condition.getValue();
+            String param = PARAM_PREFIX + i;
+            switch (condition.getOperator()) {
+                case GT, LT, GTE, LTE -> query.setParameter(param, asComparableValue(value));
+                case LIKE -> query.setParameter(param, "%" + value + "%");
+                case LIKE_LEFT -> query.setParameter(param, value + "%");
+                case LIKE_RIGHT -> query.setParameter(param, "%" + value);
+                case IN, NOT_IN -> {
+                    if (!((Collection<?>) value).isEmpty()) {
+                        query.setParameter(param, value);
+                    }
+                }
+                case IS_NULL, IS_NOT_NULL -> {
+                }
+                default -> query.setParameter(param, value);
+            }
+        }
+    }
+
+    /**
+     * 过滤掉字段为空或值为 null 的条件（与 Criteria 构建时的跳过规则一致）
+     */
+    private static List<SearchCondition> activeConditions(List<SearchCondition> conditions) {
+        if (conditions == null || conditions.isEmpty()) {
+            return List.of();
+        }
+        List<SearchCondition> active = new ArrayList<>(conditions.size());
+        for (SearchCondition condition : conditions) {
+            if (condition != null && StringUtils.hasText(condition.getField()) && condition.getValue() != null) {
+                active.add(condition);
+            }
+        }
+        return active;
+    }
+
+    /**
+     * 查询形状缓存统计（命中率、加载次数、淘汰数）
+     */
+    public CacheStats getQueryShapeCacheStats() {
+        return queryShapeCache.stats();
+    }
+
     // ==================== 构建 Specification ====================
     private <T> Specification<T> buildSpecification(List<SearchCondition> conditions) {
         if (conditions == null || conditions.isEmpty()) {
@@ -269,6 +546,44 @@ public class JpaHelper {
         query.orderBy(orders);
     }
 
+    // ==================== 查询形状 ====================
+    /**
+     * 查询形状缓存key
+     *
+     * @param entityClass 实体类
+     * @param clauses     按顺序的条件形状
+     * @param sort        排序条件
+     */
+    private record QueryShape(Class<?> entityClass, List<ClauseShape> clauses, Sort sort) {
+    }
+
+    /**
+     * 单个条件的形状；IN/NOT_IN 的空集合会生成不同的 JPQL，所以也算形状的一部分
+     */
+    private record ClauseShape(String field, SearchOperator operator, boolean emptyCollection) {
+
+        static ClauseShape of(SearchCondition condition) {
+            SearchOperator operator = condition.getOperator();
+            if (operator == null) {
+                throw new IllegalArgumentException("操作符不能为空: " + condition.getField());
+            }
+            boolean empty = false;
+            if (operator == SearchOperator.IN || operator == SearchOperator.NOT_IN) {
+                if (!(condition.getValue() instanceof Collection<?> values)) {
+                    throw new IllegalArgumentException("IN/NOT_IN 操作的值必须是集合: " + condition.getField());
+                }
+                empty = values.isEmpty();
+            }
+            return new ClauseShape(condition.getField(), operator, empty);
+        }
+    }
+
+    private record CompiledQuery(String selectJpql, String countJpql) {
+    }
+
+    private record ResolvedPath(String jpql, Class<?> javaType) {
+    }
+
     // ==================== 查询操作枚举 ====================
     public enum SearchOperator {
         EQ, NE, GT, LT, GTE, LTE,
@@ -0,0 +1,27 @@
+package com.example.jpa.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * JSON 编解码器：UTF-8 编码的 JSON 文本，与切换前写入 Redis 的格式一致
+ */
+public class JsonCacheCodec implements CacheCodec {
+
+    private final ObjectMapper objectMapper;
+
+    public JsonCacheCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return objectMapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> clazz) throws IOException {
+        return objectMapper.readValue(bytes, clazz);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.jpa.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * long 类型的布隆过滤器（线程安全，无锁）
+ * 特点：
+ * 1. mightContain 返回 false 时，元素一定不存在
+ * 2. 返回 true 时可能误判，误判率由 fpp 控制
+ * 3. 不支持删除，删除多了需要重建
+ */
+public class LongBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+    private final long expectedInsertions;
+    private final AtomicLong insertions = new AtomicLong();
+
+    private LongBloomFilter(long numBits, int numHashes, long expectedInsertions) {
+        this.bits = new AtomicLongArray((int) ((numBits + 63) >>> 6));
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    /**
+     * 按预期元素数量和误判率创建
+     *
+     * @param expectedInsertions 预期元素数量
+     * @param fpp                误判率，例如 0.01
+     */
+    public static LongBloomFilter create(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("expectedInsertions 必须大于0，fpp 必须在 (0, 1) 之间");
+        }
+        // m = -n * ln(p) / (ln2)^2，k = m / n * ln2
+        long numBits = Math.max(64, (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        numBits = Math.min(numBits, Integer.MAX_VALUE);
+        int numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+        return new LongBloomFilter(numBits, numHashes, expectedInsertions);
+    }
+
+    public void put(long value) {
+        long hash = mix64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long index = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            setBit(index);
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(long value) {
+        long hash = mix64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long index = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 插入数量超过预期后误判率会快速上升，应当重建
+     */
+    public boolean isSaturated() {
+        return insertions.get() > expectedInsertions;
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    /**
+     * MurmurHash3 fmix64，把相邻的ID打散到整个位数组
+     */
+    private static long mix64(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -1,16 +1,39 @@
 package com.example.jpa.utils;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
+import lombok.extern.slf4j.Slf4j;
+
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Component;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 // ProductVO product = multiCacheUtils.get(
@@ -23,10 +46,41 @@ import java.util.function.Supplier;
 /**
  * 多级缓存工具类
  * 缓存层级：Caffeine本地缓存 → Redis缓存 → 数据库
+ *
+ * 防击穿：
+ * 1. 单飞加载（single-flight）：同一个key在本JVM内同时只有一个线程穿透到 Redis/数据库，其余线程等待同一个结果
+ * 2. 概率提前刷新（XFetch）：Redis过期前按概率由单个请求异步重建缓存，避免大量key同时过期导致的集中回源
+ *
+ * 本地缓存模式（multi-cache.local-mode）：
+ * - SERIALIZED：本地存编码后的字节（与 Redis 中一致），命中时仍需解码
+ * - OBJECT：本地存对象，只在 Redis 边界做序列化（默认）
+ * - OBJECT_COPY_ON_READ：本地存对象，命中时返回拷贝，防止调用方修改共享实例
+ *
+ * Redis 中的值由 CacheCodec 编解码（multi-cache.codec，默认紧凑二进制）
+ *
+ * 跨节点一致性：delete 通过 CacheInvalidationBus 广播失效，其他节点按版本号淘汰本地缓存
+ * 版本号是 Redis 里每个 key 一个的计数器（cache-ver:<key>），delete 时 INCR，加载时和值一起读出，
+ * 所有节点比较的是同一个只增不减的数，不依赖各节点的时钟
  */
+@Slf4j
 @Component
 public class MultiCacheUtils {
 
+    /** 提前刷新系数，越大越早刷新（XFetch 论文推荐 1.0） */
+    private static final double EARLY_REFRESH_BETA = 1.0;
+
+    /** 未知回源耗时时使用的默认值（毫秒），例如数据由其他节点写入Redis */
+    private static final long DEFAULT_RECOMPUTE_MILLIS = 100;
+
+    /** 版本号 key 前缀 */
+    private static final String VERSION_KEY_PREFIX = "cache-ver:";
+
+    /**
+     * 版本号 key 的过期时间（秒），每次 delete 续期
+     * 过期后从 0 重新计数，此时本地条目（最长 1 分钟）早已过期，迟到的旧失效消息只会多淘汰，不会漏淘汰
+     */
+    private static final long VERSION_TTL_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
@@ -34,15 +88,51 @@ public class MultiCacheUtils {
     @Qualifier("objectMapper")
     private ObjectMapper objectMapper;
 
+    @Resource
+    private CacheCodec cacheCodec;
+
+    /**
+     * 本地缓存存储模式，默认直接存反序列化后的对象
+     */
+    @Value("${multi-cache.local-mode:OBJECT}")
+    private LocalCacheMode localCacheMode = LocalCacheMode.OBJECT;
+
+    @Resource
+    private CacheInvalidationBus invalidationBus;
+
+    /**
+     * 计算过期时间点和提前刷新用的时钟（只和本节点记录的时间比较），测试中可替换
+     */
+    private Clock clock = Clock.systemUTC();
+
     /**
      * Caffeine本地缓存配置
+     * SERIALIZED 模式存 byte[]，OBJECT 模式存解码后的对象；每个条目带版本号，用于跨节点失效比较
      */
-    private final Cache<String, String> localCache = Caffeine.newBuilder()
+    private final Cache<String, LocalEntry> localCache = Caffeine.newBuilder()
             .maximumSize(10000) // 最大缓存数量
             .expireAfterWrite(1, TimeUnit.MINUTES) // 写入后1分钟过期
             .softValues() // 内存不足时自动回收（优化内存）
             .build();
 
+    /**
+     * Redis过期时间元数据：用于计算是否需要提前刷新
+     */
+    private final Cache<String, ExpiryMeta> expiryMetas = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+
+    /**
+     * 正在进行中的加载任务：key -> 加载结果
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlightLoads = new ConcurrentHashMap<>();
+
+    /**
+     * 已提交提前刷新任务的key，防止重复提交
+     */
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
+
     /**
      * 通用缓存获取方法
      *
@@ -55,43 +145,214 @@ public class MultiCacheUtils {
     public <T> T get(@NonNull String key, long redisExpireSeconds, @NonNull Class<T> clazz,
             @NonNull Supplier<T> dbSupplier) {
         // 1. 先查本地缓存 Caffeine
-        String localVal = localCache.getIfPresent(key);
-        if (localVal != null) {
+        LocalEntry localEntry = localCache.getIfPresent(key);
+        if (localEntry != null) {
+            try {
+                T value = fromLocal(localEntry.value(), clazz);
+                refreshEarlyIfNeeded(key, redisExpireSeconds, clazz, dbSupplier);
+                return value;
+            } catch (Exception ignored) {
+                // 反序列化失败或类型不匹配，删除脏缓存
+                localCache.invalidate(key);
+            }
+        }
+
+        // 2. 本地未命中：同一个key只允许一个线程查 Redis/数据库，其余线程等待结果
+        T value = clazz.cast(loadOnce(key, () -> loadFromRedisOrDb(key, redisExpireSeconds, clazz, dbSupplier)));
+        if (value == null) {
+            return null;
+        }
+        refreshEarlyIfNeeded(key, redisExpireSeconds, clazz, dbSupplier);
+        if (localCacheMode == LocalCacheMode.OBJECT_COPY_ON_READ) {
+            // 单飞的等待者拿到的是同一个实例，拷贝后再返回
+            try {
+                return copyOf(value, clazz);
+            } catch (IOException e) {
+                log.warn("【缓存对象拷贝失败】key: {}", key, e);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 批量缓存获取方法：一次本地批量查询 → 一次 Redis MGET → 一次数据库批量查询 → 一次管道回写
+     *
+     * @param ids                业务ID集合
+     * @param keyMapper          业务ID转缓存key，例如 id -> "product:" + id
+     * @param redisExpireSeconds Redis过期时间（秒）
+     * @param clazz              返回类型
+     * @param dbLoader           数据库批量查询逻辑，返回 ID -> 数据，不存在的ID不放入结果
+     * @return ID -> 缓存数据（保持 ids 的迭代顺序，不存在的ID不在结果中）
+     */
+    public <K, T> Map<K, T> getAll(@NonNull Collection<K> ids, @NonNull Function<K, String> keyMapper,
+            long redisExpireSeconds, @NonNull Class<T> clazz, @NonNull Function<Collection<K>, Map<K, T>> dbLoader) {
+        Map<K, T> result = new LinkedHashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+        Map<String, K> keyToId = new LinkedHashMap<>();
+        ids.forEach(id -> keyToId.put(keyMapper.apply(id), id));
+
+        // 1. 本地缓存批量查询
+        Map<String, T> found = new HashMap<>();
+        localCache.getAllPresent(keyToId.keySet()).forEach((key, entry) -> {
             try {
-                return objectMapper.readValue(localVal, clazz);
+                found.put(key, fromLocal(entry.value(), clazz));
             } catch (Exception ignored) {
-                // 反序列化失败，删除脏缓存
                 localCache.invalidate(key);
             }
+        });
+
+        // 2. Redis MGET 查询剩余key，版本号和值在同一条命令里读出
+        List<String> redisKeys = keyToId.keySet().stream().filter(key -> !found.containsKey(key)).toList();
+        Map<String, Long> versions = new HashMap<>();
+        if (!redisKeys.isEmpty()) {
+            List<String> mgetKeys = new ArrayList<>(redisKeys.size() * 2);
+            redisKeys.forEach(key -> mgetKeys.add(versionKey(key)));
+            mgetKeys.addAll(redisKeys);
+            List<byte[]> redisVals = redisMultiGet(mgetKeys);
+            for (int i = 0; i < redisKeys.size(); i++) {
+                String key = redisKeys.get(i);
+                long version = parseVersion(redisVals == null ? null : redisVals.get(i));
+                versions.put(key, version);
+                byte[] redisVal = redisVals == null ? null : redisVals.get(redisKeys.size() + i);
+                if (redisVal == null) {
+                    continue;
+                }
+                try {
+                    T value = cacheCodec.decode(redisVal, clazz);
+                    putLocal(key, redisVal,
+                            localCacheMode == LocalCacheMode.OBJECT_COPY_ON_READ ? copyOf(value, clazz) : value, version);
+                    found.put(key, value);
+                } catch (Exception ignored) {
+                    stringRedisTemplate.delete(key);
+                }
+            }
         }
 
-        // 2. 再查 Redis
-        String redisVal = stringRedisTemplate.opsForValue().get(key);
+        // 3. 数据库批量查询剩余ID，并通过管道一次性回写 Redis
+        List<K> dbIds = keyToId.entrySet().stream()
+                .filter(entry -> !found.containsKey(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .toList();
+        if (!dbIds.isEmpty()) {
+            Map<K, T> dbData = dbLoader.apply(dbIds);
+            Map<String, byte[]> writeBack = new HashMap<>();
+            dbData.forEach((id, value) -> {
+                String key = keyMapper.apply(id);
+                found.put(key, value);
+                try {
+                    byte[] bytes = cacheCodec.encode(value);
+                    writeBack.put(key, bytes);
+                    putLocal(key, bytes, localCacheMode == LocalCacheMode.SERIALIZED ? null
+                            : cacheCodec.decode(bytes, clazz), versions.getOrDefault(key, 0L));
+                } catch (IOException ignored) {
+                    // 序列化失败不影响业务返回
+                }
+            });
+            setAllPipelined(writeBack, redisExpireSeconds);
+        }
+
+        keyToId.forEach((key, id) -> {
+            T value = found.get(key);
+            if (value != null) {
+                result.put(id, value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 清理缓存（同时清理本地+Redis），递增 key 的版本号，并通知其他节点清理本地缓存
+     *
+     * 先删值再递增版本号：读到新版本号的加载一定读不到被删掉的旧值
+     */
+    public void delete(@NonNull String key) {
+        localCache.invalidate(key);
+        expiryMetas.invalidate(key);
+        Long version = stringRedisTemplate.execute((RedisCallback<Long>) connection -> {
+            connection.keyCommands().del(rawKey(key));
+            byte[] versionKey = rawKey(versionKey(key));
+            Long next = connection.stringCommands().incr(versionKey);
+            connection.keyCommands().expire(versionKey, VERSION_TTL_SECONDS);
+            return next;
+        });
+        // 拿不到版本号时按最大版本处理：宁可多淘汰，不能漏淘汰
+        long invalidateVersion = version == null ? Long.MAX_VALUE : version;
+        // 删除期间本节点并发加载的旧数据也按版本淘汰
+        onRemoteInvalidate(key, invalidateVersion);
+        invalidationBus.publish(key, invalidateVersion);
+    }
+
+    /**
+     * 注册跨节点失效回调
+     */
+    @PostConstruct
+    void registerInvalidationListener() {
+        invalidationBus.addListener(this::onRemoteInvalidate);
+    }
+
+    /**
+     * 其他节点删除了缓存：只淘汰版本低于失效版本的本地条目，
+     * 递增版本号之后才加载的数据读到的版本不低于失效版本，会被保留
+     */
+    void onRemoteInvalidate(String key, long version) {
+        localCache.asMap().computeIfPresent(key, (k, entry) -> entry.version() < version ? null : entry);
+        expiryMetas.invalidate(key);
+    }
+
+    /**
+     * 查 Redis，未命中再查数据库并回填
+     */
+    private <T> T loadFromRedisOrDb(String key, long redisExpireSeconds, Class<T> clazz, Supplier<T> dbSupplier) {
+        // 1. 再查 Redis：版本号和值用一次 MGET 读出，之后发生的删除一定带来更大的版本号，能淘汰这次加载的数据
+        List<byte[]> redisVals = redisMultiGet(List.of(versionKey(key), key));
+        long version = parseVersion(redisVals == null ? null : redisVals.get(0));
+        byte[] redisVal = redisVals == null ? null : redisVals.get(1);
         if (redisVal != null) {
-            // 回写到本地缓存
-            localCache.put(key, redisVal);
             try {
-                return objectMapper.readValue(redisVal, clazz);
+                T value = cacheCodec.decode(redisVal, clazz);
+                // 回写到本地缓存
+                putLocal(key, redisVal, value, version);
+                if (expiryMetas.getIfPresent(key) == null) {
+                    // 数据可能由其他节点写入，补充过期时间元数据
+                    recordRedisTtl(key);
+                }
+                return value;
             } catch (Exception ignored) {
                 // Redis 脏数据清理
+                localCache.invalidate(key);
                 stringRedisTemplate.delete(key);
             }
         }
 
-        // 3. 最后查数据库
+        // 2. 最后查数据库
+        return loadFromDb(key, redisExpireSeconds, clazz, dbSupplier, version);
+    }
+
+    /**
+     * 查数据库并回填 Redis + 本地缓存
+     */
+    private <T> T loadFromDb(String key, long redisExpireSeconds, Class<T> clazz, Supplier<T> dbSupplier,
+            long version) {
+        long start = clock.millis();
         T dbData = dbSupplier.get();
         if (dbData == null) {
             return null;
         }
+        long recomputeMillis = clock.millis() - start;
 
-        // 4. 数据回填到 Redis + 本地缓存
+        // 数据回填到 Redis + 本地缓存
         try {
-            String json = objectMapper.writeValueAsString(dbData);
+            byte[] bytes = cacheCodec.encode(dbData);
             // 写入Redis
-            stringRedisTemplate.opsForValue().set(key, json, redisExpireSeconds, TimeUnit.SECONDS);
-            // 写入本地缓存
-            localCache.put(key, json);
-        } catch (JsonProcessingException ignored) {
+            redisSet(key, bytes, redisExpireSeconds);
+            // 写入本地缓存：对象模式下存一份解码出的副本，与调用方拿到的实体（可能仍受JPA管理）隔离
+            putLocal(key, bytes, localCacheMode == LocalCacheMode.SERIALIZED ? null : cacheCodec.decode(bytes, clazz),
+                    version);
+            expiryMetas.put(key, new ExpiryMeta(
+                    clock.millis() + TimeUnit.SECONDS.toMillis(redisExpireSeconds), recomputeMillis));
+        } catch (IOException ignored) {
             // 序列化失败不影响业务返回
         }
 
@@ -99,10 +360,188 @@ public class MultiCacheUtils {
     }
 
     /**
-     * 清理缓存（同时清理本地+Redis）
+     * 管道批量写入 Redis（一次网络往返），并记录过期时间元数据
      */
-    public void delete(@NonNull String key) {
-        localCache.invalidate(key);
-        stringRedisTemplate.delete(key);
+    private void setAllPipelined(Map<String, byte[]> values, long redisExpireSeconds) {
+        if (values.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, bytes) -> connection.stringCommands().set(rawKey(key), bytes,
+                    Expiration.seconds(redisExpireSeconds), RedisStringCommands.SetOption.upsert()));
+            return null;
+        });
+        long expireAt = clock.millis() + TimeUnit.SECONDS.toMillis(redisExpireSeconds);
+        values.keySet().forEach(key -> expiryMetas.put(key, new ExpiryMeta(expireAt, DEFAULT_RECOMPUTE_MILLIS)));
+    }
+
+    /**
+     * Redis 读写原始字节：值由 CacheCodec 编码，key 仍按 UTF-8 字符串存储
+     */
+    private byte[] redisGet(String key) {
+        return stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands()
+                .get(rawKey(key)));
+    }
+
+    private long readVersion(String key) {
+        return parseVersion(redisGet(versionKey(key)));
+    }
+
+    /**
+     * INCR 写入的是十进制文本，key 不存在时版本为 0
+     */
+    private static long parseVersion(byte[] raw) {
+        return raw == null ? 0 : Long.parseLong(new String(raw, StandardCharsets.UTF_8));
+    }
+
+    private static String versionKey(String key) {
+        return VERSION_KEY_PREFIX + key;
+    }
+
+    private List<byte[]> redisMultiGet(List<String> keys) {
+        byte[][] rawKeys = keys.stream().map(MultiCacheUtils::rawKey).toArray(byte[][]::new);
+        return stringRedisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.stringCommands()
+                .mGet(rawKeys));
+    }
+
+    private void redisSet(String key, byte[] bytes, long redisExpireSeconds) {
+        stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(rawKey(key), bytes, Expiration.seconds(redisExpireSeconds),
+                        RedisStringCommands.SetOption.upsert()));
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按存储模式写入本地缓存：只有 SERIALIZED 模式才保留字节
+     */
+    private void putLocal(String key, byte[] bytes, Object value, long version) {
+        localCache.put(key, new LocalEntry(localCacheMode == LocalCacheMode.SERIALIZED ? bytes : value, version));
+    }
+
+    /**
+     * 从本地缓存值还原对象
+     */
+    private <T> T fromLocal(Object localVal, Class<T> clazz) throws IOException {
+        if (localCacheMode == LocalCacheMode.SERIALIZED) {
+            return cacheCodec.decode((byte[]) localVal, clazz);
+        }
+        T value = clazz.cast(localVal);
+        if (localCacheMode == LocalCacheMode.OBJECT_COPY_ON_READ) {
+            return copyOf(value, clazz);
+        }
+        return value;
+    }
+
+    /**
+     * 深拷贝：通过 TokenBuffer 复制对象图，省去 JSON 文本的编码和解析
+     */
+    private <T> T copyOf(T value, Class<T> clazz) throws IOException {
+        try (TokenBuffer buffer = new TokenBuffer(objectMapper, false)) {
+            objectMapper.writeValue(buffer, value);
+            return objectMapper.readValue(buffer.asParser(), clazz);
+        }
+    }
+
+    /**
+     * 单飞加载：第一个线程执行 loader，其余线程等待同一个 Future
+     */
+    private Object loadOnce(String key, Supplier<?> loader) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlightLoads.putIfAbsent(key, mine);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        try {
+            Object value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(key, mine);
+        }
+    }
+
+    /**
+     * XFetch 概率提前刷新：
+     * now - recompute * beta * ln(random) >= expireAt 时触发异步重建
+     * 越接近过期、回源越慢，触发概率越高；同一时刻只会有一个刷新任务
+     */
+    private <T> void refreshEarlyIfNeeded(String key, long redisExpireSeconds, Class<T> clazz, Supplier<T> dbSupplier) {
+        ExpiryMeta meta = expiryMetas.getIfPresent(key);
+        if (meta == null) {
+            return;
+        }
+        double gap = meta.recomputeMillis() * EARLY_REFRESH_BETA * -Math.log(ThreadLocalRandom.current().nextDouble());
+        if (clock.millis() + gap < meta.expireAtMillis()) {
+            return;
+        }
+        if (inFlightLoads.containsKey(key) || !refreshingKeys.add(key)) {
+            return;
+        }
+        log.debug("【缓存提前刷新】key: {}", key);
+        CompletableFuture.runAsync(() -> {
+            Object refreshed = loadOnce(key,
+                    () -> loadFromDb(key, redisExpireSeconds, clazz, dbSupplier, readVersion(key)));
+            if (refreshed == null) {
+                // 数据已被删除：清掉 Redis、各节点本地缓存和过期元数据，不再提供旧值，也不再反复触发刷新
+                log.debug("【缓存提前刷新】数据已不存在，删除缓存 key: {}", key);
+                delete(key);
+            }
+        }).whenComplete((ignored, e) -> {
+            refreshingKeys.remove(key);
+            if (e != null) {
+                log.warn("【缓存提前刷新失败】key: {}", key, e);
+            }
+        });
+    }
+
+    /**
+     * 读取 Redis 剩余过期时间并记录
+     */
+    private void recordRedisTtl(String key) {
+        Long ttlMillis = stringRedisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+        if (ttlMillis != null && ttlMillis > 0) {
+            expiryMetas.put(key, new ExpiryMeta(clock.millis() + ttlMillis, DEFAULT_RECOMPUTE_MILLIS));
+        }
+    }
+
+    /**
+     * 本地缓存存储模式
+     */
+    public enum LocalCacheMode {
+        /** 存编码后的字节，每次命中都重新解码（旧行为，原先存 JSON 字符串） */
+        SERIALIZED,
+        /** 存解码后的对象，命中直接返回同一实例，调用方不得修改 */
+        OBJECT,
+        /** 存解码后的对象，命中时返回深拷贝，调用方可以随意修改 */
+        OBJECT_COPY_ON_READ
+    }
+
+    /**
+     * 本地缓存条目
+     *
+     * @param value   编码后的字节或解码后的对象
+     * @param version 加载前读到的 key 版本号，用于和跨节点失效版本比较
+     */
+    private record LocalEntry(Object value, long version) {
+    }
+
+    /**
+     * 过期时间元数据
+     *
+     * @param expireAtMillis  Redis过期的时间点
+     * @param recomputeMillis 上次回源耗时
+     */
+    private record ExpiryMeta(long expireAtMillis, long recomputeMillis) {
     }
-}
\ No newline at end of file
+}
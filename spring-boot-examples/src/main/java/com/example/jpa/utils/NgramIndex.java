@@ -0,0 +1,317 @@
+package com.example.jpa.utils;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存 n-gram 倒排索引（线程安全，读写锁）
+ * 用于 LIKE '%x%' 这类数据库索引无法加速的子串/前缀搜索：
+ * 1. 文本统一转小写后切成长度为 gramSize 的片段，每个片段对应一个有序的文档号列表
+ * 2. 查询时对查询串的所有片段求交集得到候选，再用原文做一次 indexOf 校验，没有误判
+ * 3. 查询串短于 gramSize 时无法用片段过滤，退化为遍历全部文本
+ *
+ * 内部用连续的 int 文档号代替业务ID：倒排列表是 int 数组，原文按文档号放在数组里，查询时没有装箱和哈希查找
+ * 排序：匹配位置越靠前越优先（前缀/完全匹配排最前），其次文本越短越优先，最后按文档号
+ */
+public class NgramIndex {
+
+    // 两个列表长度相差超过该倍数时改为倍增查找，否则归并求交
+    private static final int GALLOP_RATIO = 4;
+
+    private final int gramSize;
+    private final Map<Long, Integer> docs = new HashMap<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+    private final IntList freeDocs = new IntList();
+    private long[] ids = new long[1024];
+    private String[] texts = new String[1024];
+    private int maxDoc;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public NgramIndex(int gramSize) {
+        if (gramSize < 1) {
+            throw new IllegalArgumentException("gramSize 必须大于0");
+        }
+        this.gramSize = gramSize;
+    }
+
+    // ==================== 写入 ====================
+    /**
+     * 写入或替换ID对应的文本
+     */
+    public void put(long id, String text) {
+        String normalized = normalize(text);
+        lock.writeLock().lock();
+        try {
+            Integer existing = docs.get(id);
+            int doc;
+            if (existing != null) {
+                doc = existing;
+                if (texts[doc].equals(normalized)) {
+                    return;
+                }
+                removePostings(doc, texts[doc]);
+            } else {
+                doc = allocateDoc();
+                docs.put(id, doc);
+                ids[doc] = id;
+            }
+            texts[doc] = normalized;
+            for (int i = 0; i + gramSize <= normalized.length(); i++) {
+                postings.computeIfAbsent(normalized.substring(i, i + gramSize), key -> new IntList()).add(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docs.remove(id);
+            if (doc != null) {
+                removePostings(doc, texts[doc]);
+                texts[doc] = null;
+                freeDocs.append(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 优先复用删除留下的文档号，否则追加（追加时倒排列表都是尾部插入）
+     */
+    private int allocateDoc() {
+        if (freeDocs.size > 0) {
+            return freeDocs.values[--freeDocs.size];
+        }
+        if (maxDoc == texts.length) {
+            int capacity = maxDoc + (maxDoc >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+        return maxDoc++;
+    }
+
+    private void removePostings(int doc, String text) {
+        for (int i = 0; i + gramSize <= text.length(); i++) {
+            String gram = text.substring(i, i + gramSize);
+            IntList list = postings.get(gram);
+            if (list != null && list.remove(doc) && list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    // ==================== 查询 ====================
+    /**
+     * 子串/前缀搜索
+     *
+     * @param query      查询串（不区分大小写）
+     * @param prefixOnly true 只匹配前缀
+     * @param limit      最多返回条数
+     * @return 按相关度排序的ID
+     */
+    public List<Long> search(String query, boolean prefixOnly, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit 必须大于0");
+        }
+        String q = normalize(query);
+        if (q.isEmpty()) {
+            return List.of();
+        }
+        // 大顶堆，堆顶是当前最差的匹配，超过 limit 时淘汰
+        PriorityQueue<Match> top = new PriorityQueue<>(Comparator.reverseOrder());
+        lock.readLock().lock();
+        try {
+            if (q.length() < gramSize) {
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    if (texts[doc] != null) {
+                        offer(top, doc, texts[doc], q, prefixOnly, limit);
+                    }
+                }
+            } else {
+                IntList candidates = candidates(q);
+                for (int i = 0; i < candidates.size; i++) {
+                    int doc = candidates.values[i];
+                    offer(top, doc, texts[doc], q, prefixOnly, limit);
+                }
+            }
+
+            Long[] result = new Long[top.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = ids[top.poll().doc()];
+            }
+            return Arrays.asList(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询串所有不同片段的倒排列表求交集，从最短的列表开始，中间结果只会越来越小
+     */
+    private IntList candidates(String q) {
+        Map<String, IntList> distinct = new HashMap<>();
+        for (int i = 0; i + gramSize <= q.length(); i++) {
+            String gram = q.substring(i, i + gramSize);
+            IntList list = postings.get(gram);
+            if (list == null) {
+                return new IntList();
+            }
+            distinct.put(gram, list);
+        }
+        IntList[] lists = distinct.values().toArray(new IntList[0]);
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+        IntList result = lists[0];
+        for (int i = 1; i < lists.length && result.size > 0; i++) {
+            result = intersect(result, lists[i]);
+        }
+        return result;
+    }
+
+    private static IntList intersect(IntList small, IntList large) {
+        IntList result = new IntList(small.size);
+        if (large.size / GALLOP_RATIO > small.size) {
+            // 长度悬殊：短列表的每个值在长列表里倍增查找，只扫描 small.size * log(large/small) 个位置
+            int from = 0;
+            for (int i = 0; i < small.size && from < large.size; i++) {
+                int value = small.values[i];
+                int step = 1;
+                int to = from;
+                while (to < large.size && large.values[to] < value) {
+                    from = to + 1;
+                    to += step;
+                    step <<= 1;
+                }
+                int index = Arrays.binarySearch(large.values, from, Math.min(to + 1, large.size), value);
+                if (index >= 0) {
+                    result.append(value);
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+            return result;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < small.size && j < large.size) {
+            int a = small.values[i];
+            int b = large.values[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                result.append(a);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private static void offer(PriorityQueue<Match> top, int doc, String text, String q, boolean prefixOnly,
+            int limit) {
+        int position = prefixOnly ? (text.startsWith(q) ? 0 : -1) : text.indexOf(q);
+        if (position < 0) {
+            return;
+        }
+        if (top.size() == limit) {
+            Match worst = top.peek();
+            if (compare(position, text.length(), doc, worst.position(), worst.length(), worst.doc()) >= 0) {
+                return;
+            }
+            top.poll();
+        }
+        top.add(new Match(doc, position, text.length()));
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static int compare(int position, int length, int doc, int otherPosition, int otherLength,
+            int otherDoc) {
+        if (position != otherPosition) {
+            return Integer.compare(position, otherPosition);
+        }
+        if (length != otherLength) {
+            return Integer.compare(length, otherLength);
+        }
+        return Integer.compare(doc, otherDoc);
+    }
+
+    // ==================== 内部结构 ====================
+    private record Match(int doc, int position, int length) implements Comparable<Match> {
+
+        @Override
+        public int compareTo(Match other) {
+            return compare(position, length, doc, other.position, other.length, other.doc);
+        }
+    }
+
+    /**
+     * 有序 int 列表：新文档号递增，插入基本都是追加
+     */
+    private static final class IntList {
+        int[] values;
+        int size;
+
+        IntList() {
+            this(4);
+        }
+
+        IntList(int capacity) {
+            values = new int[Math.max(capacity, 1)];
+        }
+
+        void add(int value) {
+            if (size == 0 || values[size - 1] < value) {
+                append(value);
+                return;
+            }
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return;
+            }
+            int insertAt = -index - 1;
+            ensureCapacity();
+            System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+            values[insertAt] = value;
+            size++;
+        }
+
+        void append(int value) {
+            ensureCapacity();
+            values[size++] = value;
+        }
+
+        boolean remove(int value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        private void ensureCapacity() {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size + (size >> 1) + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.jpa.utils;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * 基于 Redis pub/sub 的失效消息通道
+ * 所有节点订阅同一个频道，任一节点发布的消息会广播到全部节点（包括自己）
+ */
+public class RedisInvalidationTransport implements CacheInvalidationTransport {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final String channel;
+
+    public RedisInvalidationTransport(StringRedisTemplate stringRedisTemplate,
+            RedisMessageListenerContainer listenerContainer, String channel) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.channel = channel;
+    }
+
+    @Override
+    public void publish(String payload) {
+        stringRedisTemplate.convertAndSend(channel, payload);
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> listener.accept(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(channel));
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.jpa.utils;
 
+import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 import jakarta.annotation.Resource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -14,6 +19,9 @@ public class RedisUtils {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private CacheCodec cacheCodec;
+
     // ====================== 1.String 字符串（最常用 80%场景）======================
     /** 设置缓存，永不过期 */
     public void set(@NonNull String key, @NonNull String value) {
@@ -96,4 +104,43 @@ public class RedisUtils {
     public String rpop(@NonNull String key) {
         return stringRedisTemplate.opsForList().rightPop(key);
     }
-}
\ No newline at end of file
+
+    // ====================== 6.对象缓存（按 CacheCodec 编码，默认紧凑二进制）======================
+    /** 按编解码器写入对象+过期时间 */
+    public void setObject(@NonNull String key, @NonNull Object value, long time, @NonNull TimeUnit unit) {
+        try {
+            setBytes(key, cacheCodec.encode(value), time, unit);
+        } catch (IOException e) {
+            throw new UncheckedIOException("缓存编码失败: " + key, e);
+        }
+    }
+
+    /** 按编解码器读取对象，不存在或空值缓存返回 null */
+    public <T> T getObject(@NonNull String key, @NonNull Class<T> clazz) {
+        byte[] bytes = getBytes(key);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return cacheCodec.decode(bytes, clazz);
+        } catch (IOException e) {
+            throw new UncheckedIOException("缓存解码失败: " + key, e);
+        }
+    }
+
+    /** 写入原始字节+过期时间（key 仍按 UTF-8 字符串编码，与 StringRedisTemplate 一致） */
+    public void setBytes(@NonNull String key, @NonNull byte[] value, long time, @NonNull TimeUnit unit) {
+        stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(rawKey(key), value, Expiration.from(time, unit), RedisStringCommands.SetOption.upsert()));
+    }
+
+    /** 读取原始字节 */
+    public byte[] getBytes(@NonNull String key) {
+        return stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands()
+                .get(rawKey(key)));
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
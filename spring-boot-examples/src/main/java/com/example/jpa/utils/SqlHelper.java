@@ -10,23 +10,57 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.annotation.PreDestroy;
 import jakarta.persistence.Query;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import lombok.Data;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 import java.util.regex.Pattern;
 
 /**
  * SQL原生查询辅助类，支持分页、排序、参数绑定
  * 功能：1. 原生SQL分页查询（实体对象、Object数组）
- * 2. 原生SQL列表查询（支持不分页）
+ * 2. 原生SQL列表查询（支持不分页）、流式查询（大结果集导出）
  * 3. 单个对象查询
  * 4. 更新/删除操作
  * 5. SQL注入防护、参数验证、日志记录、异常处理
+ * 6. 分页总数可缓存、与数据查询并行执行、超过上限后只给估算值
+ * 7. 游标分页（keyset/seek）：按上一页最后一行的排序键定位，深分页不再线性变慢
  */
 @Component
 public class SqlHelper {
@@ -35,10 +69,53 @@ public class SqlHelper {
     private static final Pattern VALID_FIELD_PATTERN = Pattern.compile("^[a-zA-Z_][a-zA-Z0-9_.]*$");
     private static final int DEFAULT_QUERY_TIMEOUT = 30000; // 30秒
     private static final int MAX_RESULT_SIZE = 100000; // 最大结果集数量
+    private static final int DEFAULT_FETCH_SIZE = 500; // 流式查询默认每批拉取行数
+    private static final int STREAM_CLEAR_INTERVAL = 1000; // 流式查询每消费多少行清空一次持久化上下文
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+    private static final String SEEK_PARAM_PREFIX = "seekKey"; // 游标参数名前缀
+    private static final Pattern SEEK_UNSAFE_PATTERN = Pattern.compile(
+            "\\b(group\\s+by|having|union|order\\s+by|limit|offset|fetch)\\b");
+
+    private static final long COUNT_CACHE_TTL_SECONDS = 30; // 总数缓存时间
+    private static final int COUNT_CACHE_MAX_SIZE = 1000; // 总数缓存最大条数
+    private static final int PLAN_CACHE_MAX_SIZE = 500; // 查询计划缓存最大条数
 
     @PersistenceContext
     private EntityManager entityManager;
 
+    /**
+     * 总数缓存：规范化后的COUNT SQL + 参数 -> 总数
+     * 翻页时条件不变，短时间内的总数直接复用，不再重复 COUNT
+     */
+    private final Cache<CountKey, Long> countCache = Caffeine.newBuilder()
+            .maximumSize(COUNT_CACHE_MAX_SIZE)
+            .expireAfterWrite(COUNT_CACHE_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * 查询计划缓存：原始SQL + 排序条件 -> 改写后的SQL
+     * 同一个查询每次调用只做一次字符串查找，不再重复正则改写、大小写转换和字段名校验
+     */
+    private final Cache<PlanKey, QueryPlan> planCache = Caffeine.newBuilder()
+            .maximumSize(PLAN_CACHE_MAX_SIZE)
+            .recordStats()
+            .build();
+
+    /**
+     * 是否启用查询计划缓存（基准测试对比用）
+     */
+    private boolean planCacheEnabled = true;
+
+    /**
+     * 并行COUNT线程池：队列满时由调用线程自己执行
+     */
+    private final ExecutorService countExecutor = new ThreadPoolExecutor(2, 4, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(200), runnable -> {
+                Thread thread = new Thread(runnable, "sql-helper-count");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+
     /**
      * 返回实体对象的分页查询
      *
@@ -50,30 +127,32 @@ public class SqlHelper {
      */
     public <T> Page<T> pageQuery(String sql, Map<String, Object> params,
             Pageable pageable, Class<T> resultClass) {
+        return pageQuery(sql, params, pageable, resultClass, CountOptions.exact());
+    }
+
+    /**
+     * 返回实体对象的分页查询，可指定总数统计方式（缓存、并行、估算）
+     *
+     * @param sql          原生SQL语句
+     * @param params       参数Map
+     * @param pageable     分页参数
+     * @param resultClass  结果类型
+     * @param countOptions 总数统计方式
+     * @return 分页对象，附带总数是否精确、是否来自缓存
+     */
+    public <T> SqlPage<T> pageQuery(String sql, Map<String, Object> params,
+            Pageable pageable, Class<T> resultClass, CountOptions countOptions) {
         validateInput(sql, pageable);
         try {
-            String sqlWithSort = applySort(sql, pageable.getSort());
-            String countSql = buildCountSql(sqlWithSort);
-
-            logger.debug("执行分页查询: {}", sqlWithSort);
+            QueryPlan plan = pagePlan(sql, pageable.getSort(), countOptions.estimateCap());
 
-            Query query = entityManager.createNativeQuery(sqlWithSort, resultClass);
-            Query countQuery = entityManager.createNativeQuery(countSql);
+            logger.debug("执行分页查询: {}", plan.dataSql());
 
-            setQueryTimeout(query);
-            setQueryTimeout(countQuery);
-
-            setParams(query, params);
-            setParams(countQuery, params);
+            Query query = entityManager.createNativeQuery(plan.dataSql(), resultClass);
+            SqlPage<T> page = fetchPage(query, plan, params, pageable, countOptions);
 
-            query.setFirstResult((int) pageable.getOffset());
-            query.setMaxResults(pageable.getPageSize());
-
-            long total = ((Number) countQuery.getSingleResult()).longValue();
-            List<T> content = castList(query.getResultList());
-
-            logger.info("分页查询完成: 总记录数={}, 当前页数据数={}", total, content.size());
-            return new PageImpl<>(Objects.requireNonNull(content), pageable, total);
+            logger.info("分页查询完成: 总记录数={}, 当前页数据数={}", page.getTotalElements(), page.getNumberOfElements());
+            return page;
         } catch (Exception e) {
             logger.error("分页查询异常: {}", sql, e);
             throw new RuntimeException("分页查询失败: " + e.getMessage(), e);
@@ -90,33 +169,145 @@ public class SqlHelper {
      */
     public Page<Object[]> pageQuery(String sql, Map<String, Object> params,
             Pageable pageable) {
+        return pageQuery(sql, params, pageable, CountOptions.exact());
+    }
+
+    /**
+     * 返回Object数组的分页查询（多表关联查询），可指定总数统计方式（缓存、并行、估算）
+     *
+     * @param sql          原生SQL语句
+     * @param params       参数Map
+     * @param pageable     分页参数
+     * @param countOptions 总数统计方式
+     * @return 分页对象，附带总数是否精确、是否来自缓存
+     */
+    public SqlPage<Object[]> pageQuery(String sql, Map<String, Object> params,
+            Pageable pageable, CountOptions countOptions) {
         validateInput(sql, pageable);
         try {
-            String sqlWithSort = applySort(sql, pageable.getSort());
-            String countSql = buildCountSql(sqlWithSort);
+            QueryPlan plan = pagePlan(sql, pageable.getSort(), countOptions.estimateCap());
 
-            logger.debug("执行Object[]分页查询: {}", sqlWithSort);
+            logger.debug("执行Object[]分页查询: {}", plan.dataSql());
 
-            Query query = entityManager.createNativeQuery(sqlWithSort);
-            Query countQuery = entityManager.createNativeQuery(countSql);
+            Query query = entityManager.createNativeQuery(plan.dataSql());
+            SqlPage<Object[]> page = fetchPage(query, plan, params, pageable, countOptions);
 
-            setQueryTimeout(query);
-            setQueryTimeout(countQuery);
+            logger.info("Object[]分页查询完成: 总记录数={}, 当前页数据数={}", page.getTotalElements(),
+                    page.getNumberOfElements());
+            return page;
+        } catch (Exception e) {
+            logger.error("Object[]分页查询异常: {}", sql, e);
+            throw new RuntimeException("分页查询失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 清空总数缓存（批量导入、删除数据后调用）
+     */
+    public void evictCountCache() {
+        countCache.invalidateAll();
+    }
 
+    @PreDestroy
+    public void shutdown() {
+        countExecutor.shutdown();
+    }
+
+    /**
+     * 返回实体对象的游标分页查询（keyset/seek）
+     * 不使用 OFFSET：把上一页最后一行的排序键改写成 WHERE (排序列) > (:游标) 条件，任意深度的翻页代价相同
+     *
+     * 注意：
+     * 1. 排序字段组合必须唯一（通常最后加上主键），否则相同排序键的行可能被跳过
+     * 2. 排序字段的值不能为 null
+     * 3. 排序字段是列名，结果类中需要有同名字段（支持下划线转驼峰，如 created_at -> createdAt）
+     *
+     * @param sql         原生SQL语句（不含 ORDER BY）
+     * @param params      参数Map
+     * @param sort        排序条件，不能为空
+     * @param pageSize    每页数量
+     * @param cursor      上一页返回的 nextCursor，查询第一页时传 null
+     * @param withTotal   是否统计总记录数（需要额外执行一次COUNT）
+     * @param resultClass 结果类型
+     * @return 游标分页对象
+     */
+    public <T> CursorPage<T> seekQuery(String sql, Map<String, Object> params, Sort sort, int pageSize,
+            String cursor, boolean withTotal, Class<T> resultClass) {
+        List<Function<T, Object>> getters = new ArrayList<>();
+        for (Sort.Order order : sort == null ? Sort.unsorted() : sort) {
+            Field field = findSortField(resultClass, order.getProperty());
+            getters.add(row -> readField(field, row));
+        }
+        return seekQuery(sql, params, sort, pageSize, cursor, withTotal,
+                seekSql -> entityManager.createNativeQuery(seekSql, resultClass),
+                row -> getters.stream().map(getter -> getter.apply(row)).toArray());
+    }
+
+    /**
+     * 返回Object数组的游标分页查询（多表关联查询）
+     *
+     * @param sql            原生SQL语句（不含 ORDER BY）
+     * @param params         参数Map
+     * @param sort           排序条件，不能为空
+     * @param pageSize       每页数量
+     * @param cursor         上一页返回的 nextCursor，查询第一页时传 null
+     * @param withTotal      是否统计总记录数（需要额外执行一次COUNT）
+     * @param sortKeyColumns 排序字段在结果数组中的下标，顺序与 sort 一致
+     * @return 游标分页对象
+     */
+    public CursorPage<Object[]> seekQuery(String sql, Map<String, Object> params, Sort sort, int pageSize,
+            String cursor, boolean withTotal, int... sortKeyColumns) {
+        if (sort != null && sortKeyColumns.length != sort.toList().size()) {
+            throw new IllegalArgumentException("排序字段下标数量必须与排序字段数量一致");
+        }
+        return seekQuery(sql, params, sort, pageSize, cursor, withTotal,
+                seekSql -> entityManager.createNativeQuery(seekSql),
+                row -> {
+                    Object[] keys = new Object[sortKeyColumns.length];
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = row[sortKeyColumns[i]];
+                    }
+                    return keys;
+                });
+    }
+
+    private <T> CursorPage<T> seekQuery(String sql, Map<String, Object> params, Sort sort, int pageSize,
+            String cursor, boolean withTotal, Function<String, Query> queryFactory,
+            Function<T, Object[]> sortKeyExtractor) {
+        validateInput(sql);
+        if (sort == null || sort.isUnsorted()) {
+            throw new IllegalArgumentException("游标分页必须指定排序字段");
+        }
+        if (pageSize < 1 || pageSize > MAX_RESULT_SIZE) {
+            throw new IllegalArgumentException("每页数量必须在1到" + MAX_RESULT_SIZE + "之间");
+        }
+        Object[] cursorKeys = cursor == null || cursor.isBlank() ? null : decodeCursor(cursor, sort);
+        QueryPlan plan = seekPlan(sql, sort, cursorKeys != null);
+
+        try {
+            logger.debug("执行游标分页查询: {}", plan.dataSql());
+
+            Query query = queryFactory.apply(plan.dataSql());
+            setQueryTimeout(query);
             setParams(query, params);
-            setParams(countQuery, params);
+            for (int i = 0; cursorKeys != null && i < cursorKeys.length; i++) {
+                query.setParameter(SEEK_PARAM_PREFIX + i, cursorKeys[i]);
+            }
+            // 多取一行，用来判断是否还有下一页
+            query.setMaxResults(pageSize + 1);
+            List<T> rows = castList(query.getResultList());
 
-            query.setFirstResult((int) pageable.getOffset());
-            query.setMaxResults(pageable.getPageSize());
+            boolean hasNext = rows.size() > pageSize;
+            List<T> content = hasNext ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+            String nextCursor = hasNext ? encodeCursor(sort, sortKeyExtractor.apply(content.get(pageSize - 1))) : null;
 
-            long total = ((Number) countQuery.getSingleResult()).longValue();
-            List<Object[]> content = castObjectArrayList(query.getResultList());
+            Long total = withTotal ? count(plan.countSql(), params) : null;
 
-            logger.info("Object[]分页查询完成: 总记录数={}, 当前页数据数={}", total, content.size());
-            return new PageImpl<>(Objects.requireNonNull(content), pageable, total);
+            logger.info("游标分页查询完成: 当前页数据数={}, 是否有下一页={}", content.size(), hasNext);
+            return new CursorPage<>(content, nextCursor, hasNext, total);
         } catch (Exception e) {
-            logger.error("Object[]分页查询异常: {}", sql, e);
-            throw new RuntimeException("分页查询失败: " + e.getMessage(), e);
+            logger.error("游标分页查询异常: {}", sql, e);
+            throw new RuntimeException("游标分页查询失败: " + e.getMessage(), e);
         }
     }
 
@@ -170,6 +361,62 @@ public class SqlHelper {
         }
     }
 
+    /**
+     * 返回实体对象的流式查询（不受 MAX_RESULT_SIZE 限制，用于导出等大结果集场景）
+     * 基于只进游标按 fetchSize 分批拉取，调用方消费一行才推进一行；
+     * 每消费 STREAM_CLEAR_INTERVAL 行清空一次持久化上下文，内存占用与结果集大小无关
+     *
+     * 注意：
+     * 1. 必须在事务内调用（如 @Transactional(readOnly = true)），并在事务结束前消费完
+     * 2. 必须关闭 Stream（try-with-resources），否则游标和数据库连接不会释放
+     * 3. 已消费的实体会被 detach，不能再访问懒加载属性
+     *
+     * @param sql         原生SQL语句
+     * @param params      参数Map
+     * @param resultClass 结果类型
+     * @param fetchSize   每批从数据库拉取的行数（JDBC fetch size）
+     * @return 懒加载的结果流
+     */
+    public <T> Stream<T> streamQuery(String sql, Map<String, Object> params,
+            Class<T> resultClass, int fetchSize) {
+        validateInput(sql);
+        try {
+            logger.debug("执行流式查询: {}", sql);
+            Query query = entityManager.createNativeQuery(sql, resultClass);
+            return openStream(query, params, fetchSize);
+        } catch (Exception e) {
+            logger.error("流式查询异常: {}", sql, e);
+            throw new RuntimeException("流式查询失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 返回实体对象的流式查询，使用默认 fetch size
+     */
+    public <T> Stream<T> streamQuery(String sql, Map<String, Object> params, Class<T> resultClass) {
+        return streamQuery(sql, params, resultClass, DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * 返回Object数组的流式查询（多表关联导出），注意事项同实体版本
+     *
+     * @param sql       原生SQL语句
+     * @param params    参数Map
+     * @param fetchSize 每批从数据库拉取的行数（JDBC fetch size）
+     * @return 懒加载的结果流
+     */
+    public Stream<Object[]> streamQuery(String sql, Map<String, Object> params, int fetchSize) {
+        validateInput(sql);
+        try {
+            logger.debug("执行Object[]流式查询: {}", sql);
+            Query query = entityManager.createNativeQuery(sql);
+            return openStream(query, params, fetchSize);
+        } catch (Exception e) {
+            logger.error("Object[]流式查询异常: {}", sql, e);
+            throw new RuntimeException("流式查询失败: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * 查询单个对象
      *
@@ -279,6 +526,139 @@ public class SqlHelper {
         return sql + " ORDER BY " + orderClause;
     }
 
+    /**
+     * 获取分页查询计划：拼接排序（含字段校验）、生成COUNT SQL
+     *
+     * @param sql  原生SQL语句
+     * @param sort 排序条件
+     * @param cap  估算上限，0 表示精确统计
+     * @return 查询计划
+     */
+    private QueryPlan pagePlan(String sql, Sort sort, long cap) {
+        return plan(new PlanKey(sql, sort, cap, PlanKind.PAGE), key -> {
+            String sqlWithSort = applySort(sql, sort);
+            return QueryPlan.of(sqlWithSort, buildCountSql(sqlWithSort, cap));
+        });
+    }
+
+    /**
+     * 获取游标分页查询计划：校验排序字段、拼接游标条件和排序
+     *
+     * @param sql       原生SQL语句
+     * @param sort      排序条件
+     * @param hasCursor 是否有游标
+     * @return 查询计划
+     */
+    private QueryPlan seekPlan(String sql, Sort sort, boolean hasCursor) {
+        return plan(new PlanKey(sql, sort, 0, hasCursor ? PlanKind.SEEK_NEXT : PlanKind.SEEK_FIRST), key -> {
+            sort.forEach(order -> {
+                if (!isValidFieldName(order.getProperty())) {
+                    logger.warn("检测到非法的排序字段: {}", order.getProperty());
+                    throw new IllegalArgumentException("非法的排序字段: " + order.getProperty());
+                }
+            });
+            return QueryPlan.of(applySeek(sql, sort, hasCursor), buildCountSql(sql));
+        });
+    }
+
+    private QueryPlan plan(PlanKey key, Function<PlanKey, QueryPlan> builder) {
+        // 生成计划时抛出的校验异常不会被缓存，下次同样的请求会重新校验
+        return planCacheEnabled ? planCache.get(key, builder) : builder.apply(key);
+    }
+
+    /**
+     * 查询计划缓存统计（命中率、加载次数、淘汰数）
+     */
+    public CacheStats getPlanCacheStats() {
+        return planCache.stats();
+    }
+
+    /**
+     * 查询当前页数据并按统计方式获取总数
+     * 1. 开启缓存且命中：不执行COUNT
+     * 2. 并行：COUNT 提交到线程池，与数据查询同时执行（COUNT 不在调用方事务内，看不到未提交的数据）
+     * 3. 估算：COUNT 最多数到 estimateCap + 1 行，超过上限时总数返回上限并标记为不精确
+     *
+     * @param query        已创建的数据查询
+     * @param plan         查询计划
+     * @param params       参数Map
+     * @param pageable     分页参数
+     * @param countOptions 总数统计方式
+     * @return 分页对象
+     */
+    private <T> SqlPage<T> fetchPage(Query query, QueryPlan plan, Map<String, Object> params,
+            Pageable pageable, CountOptions countOptions) throws Exception {
+        long cap = countOptions.estimateCap();
+        String countSql = plan.countSql();
+        CountKey countKey = countOptions.useCache() ? CountKey.of(plan.countCacheKey(), params) : null;
+        Long cachedTotal = countKey == null ? null : countCache.getIfPresent(countKey);
+
+        CompletableFuture<Long> asyncTotal = null;
+        if (cachedTotal == null && countOptions.async()) {
+            asyncTotal = CompletableFuture.supplyAsync(() -> count(countSql, params), countExecutor);
+        }
+        Long syncTotal = cachedTotal == null && asyncTotal == null ? count(countSql, params) : null;
+
+        setQueryTimeout(query);
+        setParams(query, params);
+        query.setFirstResult((int) pageable.getOffset());
+        query.setMaxResults(pageable.getPageSize());
+        List<T> content = castList(query.getResultList());
+
+        long total;
+        if (cachedTotal != null) {
+            total = cachedTotal;
+        } else if (asyncTotal != null) {
+            try {
+                total = asyncTotal.get(DEFAULT_QUERY_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        } else {
+            total = syncTotal;
+        }
+        if (countKey != null && cachedTotal == null) {
+            countCache.put(countKey, total);
+        }
+
+        boolean exact = cap <= 0 || total <= cap;
+        return new SqlPage<>(Objects.requireNonNull(content), pageable, exact ? total : cap, exact,
+                cachedTotal != null);
+    }
+
+    /**
+     * 执行COUNT查询
+     *
+     * @param countSql COUNT SQL
+     * @param params   参数Map
+     * @return 总数
+     */
+    private long count(String countSql, Map<String, Object> params) {
+        Query countQuery = entityManager.createNativeQuery(countSql);
+        setQueryTimeout(countQuery);
+        setParams(countQuery, params);
+        return ((Number) countQuery.getSingleResult()).longValue();
+    }
+
+    /**
+     * 生成COUNT SQL，cap 大于0时最多数到 cap + 1 行
+     *
+     * @param sql 原生SQL语句
+     * @param cap 估算上限，0 表示精确统计
+     * @return COUNT SQL
+     */
+    private String buildCountSql(String sql, long cap) {
+        if (cap <= 0 || sql.toLowerCase().contains("limit")) {
+            return buildCountSql(sql);
+        }
+        String workSql = sql;
+        int orderPos = sql.toLowerCase().lastIndexOf("order by");
+        if (orderPos > 0) {
+            workSql = sql.substring(0, orderPos);
+        }
+        return "SELECT COUNT(*) FROM (" + workSql.trim() + " LIMIT " + (cap + 1) + ") AS t";
+    }
+
     /**
      * 自动生成COUNT SQL（优化版）
      *
@@ -315,6 +695,237 @@ public class SqlHelper {
         return "SELECT COUNT(*) FROM (" + workSql + ") AS t";
     }
 
+    /**
+     * 拼接游标条件和排序
+     * 简单SQL（没有 GROUP BY/ORDER BY/LIMIT 等子句）直接在原 WHERE 上追加条件，可以用上排序列的索引；
+     * 复杂SQL包一层子查询，此时排序字段按结果列名（去掉表别名）引用
+     *
+     * @param sql       原生SQL语句
+     * @param sort      排序条件
+     * @param hasCursor 是否有游标（第一页没有）
+     * @return 拼接游标条件和排序后的SQL
+     */
+    private String applySeek(String sql, Sort sort, boolean hasCursor) {
+        String trimmed = sql.trim();
+        if (!SEEK_UNSAFE_PATTERN.matcher(trimmed.toLowerCase(Locale.ROOT)).find()) {
+            if (!hasCursor) {
+                return applySort(trimmed, sort);
+            }
+            String predicate = buildSeekPredicate(sort);
+            int wherePos = findTopLevelWhere(trimmed);
+            String seekSql = wherePos < 0 ? trimmed + " WHERE " + predicate
+                    : trimmed.substring(0, wherePos) + "WHERE (" + trimmed.substring(wherePos + 5).trim() + ") AND "
+                            + predicate;
+            return applySort(seekSql, sort);
+        }
+
+        Sort outerSort = Sort.by(sort.stream()
+                .map(order -> order.withProperty(unqualified(order.getProperty())))
+                .toList());
+        String wrapped = "SELECT * FROM (" + trimmed + ") seek_t";
+        return applySort(hasCursor ? wrapped + " WHERE " + buildSeekPredicate(outerSort) : wrapped, outerSort);
+    }
+
+    /**
+     * 生成游标条件：
+     * - 排序方向一致：(a, b) > (:seekKey0, :seekKey1)，DESC 时为 <
+     * - 方向混合：a > :seekKey0 OR (a = :seekKey0 AND b < :seekKey1)
+     *
+     * @param sort 排序条件
+     * @return 游标条件SQL片段
+     */
+    private String buildSeekPredicate(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        boolean sameDirection = orders.stream().map(Sort.Order::getDirection).distinct().count() == 1;
+        if (sameDirection) {
+            String operator = orders.get(0).isAscending() ? " > " : " < ";
+            if (orders.size() == 1) {
+                return orders.get(0).getProperty() + operator + ":" + SEEK_PARAM_PREFIX + 0;
+            }
+            StringBuilder columns = new StringBuilder();
+            StringBuilder keys = new StringBuilder();
+            for (int i = 0; i < orders.size(); i++) {
+                columns.append(i == 0 ? "" : ", ").append(orders.get(i).getProperty());
+                keys.append(i == 0 ? "" : ", ").append(":").append(SEEK_PARAM_PREFIX).append(i);
+            }
+            return "(" + columns + ")" + operator + "(" + keys + ")";
+        }
+
+        // 从最后一个排序字段向前嵌套
+        String predicate = null;
+        for (int i = orders.size() - 1; i >= 0; i--) {
+            Sort.Order order = orders.get(i);
+            String key = ":" + SEEK_PARAM_PREFIX + i;
+            String after = order.getProperty() + (order.isAscending() ? " > " : " < ") + key;
+            predicate = predicate == null ? after
+                    : "(" + after + " OR (" + order.getProperty() + " = " + key + " AND " + predicate + "))";
+        }
+        return predicate;
+    }
+
+    /**
+     * 查找最外层 WHERE 关键字的位置（跳过括号和字符串内的内容）
+     *
+     * @param sql 原生SQL语句
+     * @return WHERE 的下标，不存在返回 -1
+     */
+    private int findTopLevelWhere(String sql) {
+        String lowerSql = sql.toLowerCase(Locale.ROOT);
+        int depth = 0;
+        boolean inString = false;
+        for (int i = 0; i < lowerSql.length(); i++) {
+            char c = lowerSql.charAt(i);
+            if (c == '\'') {
+                inString = !inString;
+            } else if (!inString && c == '(') {
+                depth++;
+            } else if (!inString && c == ')') {
+                depth--;
+            } else if (!inString && depth == 0 && lowerSql.startsWith("where", i)
+                    && (i == 0 || !Character.isLetterOrDigit(lowerSql.charAt(i - 1)))
+                    && (i + 5 == lowerSql.length() || !Character.isLetterOrDigit(lowerSql.charAt(i + 5)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 去掉表别名：p.created_at -> created_at
+     */
+    private String unqualified(String property) {
+        return property.substring(property.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * 按排序字段（列名）查找结果类中的字段，支持下划线转驼峰
+     *
+     * @param resultClass 结果类型
+     * @param property    排序字段
+     * @return 字段
+     */
+    private Field findSortField(Class<?> resultClass, String property) {
+        String column = unqualified(property);
+        StringBuilder camel = new StringBuilder();
+        boolean upper = false;
+        for (char c : column.toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                camel.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        for (Class<?> c = resultClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.getName().equals(column) || field.getName().equals(camel.toString())) {
+                    field.setAccessible(true);
+                    return field;
+                }
+            }
+        }
+        throw new IllegalArgumentException("结果类型" + resultClass.getSimpleName() + "中找不到排序字段: " + property);
+    }
+
+    private Object readField(Field field, Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("读取排序字段失败: " + field.getName(), e);
+        }
+    }
+
+    /**
+     * 生成游标：排序条件指纹 + 带类型标记的排序键，Base64（URL安全）编码
+     *
+     * @param sort 排序条件
+     * @param keys 最后一行的排序键
+     * @return 游标
+     */
+    private String encodeCursor(Sort sort, Object[] keys) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(sort.toString().hashCode());
+            out.writeByte(keys.length);
+            for (Object key : keys) {
+                if (key == null) {
+                    throw new IllegalArgumentException("排序字段的值不能为空");
+                } else if (key instanceof Long || key instanceof Integer || key instanceof Short
+                        || key instanceof Byte) {
+                    out.writeByte('L');
+                    out.writeLong(((Number) key).longValue());
+                } else if (key instanceof Double || key instanceof Float) {
+                    out.writeByte('D');
+                    out.writeDouble(((Number) key).doubleValue());
+                } else if (key instanceof BigDecimal || key instanceof BigInteger) {
+                    out.writeByte('N');
+                    out.writeUTF(key.toString());
+                } else if (key instanceof String value) {
+                    out.writeByte('S');
+                    out.writeUTF(value);
+                } else if (key instanceof Boolean value) {
+                    out.writeByte('B');
+                    out.writeBoolean(value);
+                } else if (key instanceof Timestamp value) {
+                    out.writeByte('T');
+                    out.writeUTF(value.toLocalDateTime().toString());
+                } else if (key instanceof LocalDateTime value) {
+                    out.writeByte('T');
+                    out.writeUTF(value.toString());
+                } else if (key instanceof LocalDate value) {
+                    out.writeByte('d');
+                    out.writeUTF(value.toString());
+                } else if (key instanceof java.sql.Date value) {
+                    out.writeByte('d');
+                    out.writeUTF(value.toLocalDate().toString());
+                } else if (key instanceof UUID value) {
+                    out.writeByte('U');
+                    out.writeUTF(value.toString());
+                } else {
+                    throw new IllegalArgumentException("不支持的排序字段类型: " + key.getClass().getName());
+                }
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * 解析游标，格式错误或与排序条件不匹配时抛出 IllegalArgumentException
+     *
+     * @param cursor 游标
+     * @param sort   排序条件
+     * @return 排序键
+     */
+    private Object[] decodeCursor(String cursor, Sort sort) {
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            if (in.readInt() != sort.toString().hashCode()) {
+                throw new IllegalArgumentException("游标与排序条件不匹配");
+            }
+            Object[] keys = new Object[in.readUnsignedByte()];
+            if (keys.length != sort.toList().size()) {
+                throw new IllegalArgumentException("游标与排序条件不匹配");
+            }
+            for (int i = 0; i < keys.length; i++) {
+                int type = in.readUnsignedByte();
+                keys[i] = switch (type) {
+                    case 'L' -> in.readLong();
+                    case 'D' -> in.readDouble();
+                    case 'N' -> new BigDecimal(in.readUTF());
+                    case 'S' -> in.readUTF();
+                    case 'B' -> in.readBoolean();
+                    case 'T' -> LocalDateTime.parse(in.readUTF());
+                    case 'd' -> LocalDate.parse(in.readUTF());
+                    case 'U' -> UUID.fromString(in.readUTF());
+                    default -> throw new IllegalArgumentException("非法的游标");
+                };
+            }
+            return keys;
+        } catch (IOException | DateTimeParseException e) {
+            throw new IllegalArgumentException("非法的游标", e);
+        }
+    }
+
     /**
      * 验证字段名的有效性（防止SQL注入）
      *
@@ -350,11 +961,37 @@ public class SqlHelper {
      * @param sql SQL语句
      */
     private void validateInput(String sql) {
-        if (sql == null || sql.trim().isEmpty()) {
+        if (sql == null || sql.isBlank()) {
             throw new IllegalArgumentException("SQL语句不能为空");
         }
     }
 
+    /**
+     * 打开只进游标：只读、指定 fetch size，不设置查询超时（导出耗时与数据量成正比）
+     *
+     * @param query     查询对象
+     * @param params    参数Map
+     * @param fetchSize 每批拉取的行数
+     * @return 结果流
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Stream<T> openStream(Query query, Map<String, Object> params, int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize不能小于1");
+        }
+        query.setHint("org.hibernate.fetchSize", fetchSize);
+        query.setHint("org.hibernate.readOnly", true);
+        setParams(query, params);
+
+        AtomicLong consumed = new AtomicLong();
+        Stream<T> stream = (Stream<T>) query.getResultStream();
+        return stream.peek(row -> {
+            if (consumed.incrementAndGet() % STREAM_CLEAR_INTERVAL == 0) {
+                entityManager.clear();
+            }
+        });
+    }
+
     /**
      * 设置查询超时时间
      *
@@ -410,6 +1047,120 @@ public class SqlHelper {
         });
     }
 
+    /**
+     * 分页总数统计方式
+     * 用法：CountOptions.exact().withCache().inParallel().estimatedUpTo(10000)
+     *
+     * @param useCache    是否缓存总数（同样的SQL和参数在缓存时间内不再COUNT）
+     * @param async       是否与数据查询并行执行COUNT
+     * @param estimateCap 估算上限，超过后不再继续数，0 表示精确统计
+     */
+    public record CountOptions(boolean useCache, boolean async, long estimateCap) {
+
+        public CountOptions {
+            if (estimateCap < 0) {
+                throw new IllegalArgumentException("估算上限不能小于0");
+            }
+        }
+
+        /** 精确统计，不缓存、不并行（默认行为） */
+        public static CountOptions exact() {
+            return new CountOptions(false, false, 0);
+        }
+
+        public CountOptions withCache() {
+            return new CountOptions(true, async, estimateCap);
+        }
+
+        public CountOptions inParallel() {
+            return new CountOptions(useCache, true, estimateCap);
+        }
+
+        public CountOptions estimatedUpTo(long cap) {
+            return new CountOptions(useCache, async, cap);
+        }
+    }
+
+    /**
+     * 分页结果，在 Page 的基础上说明总数的来源
+     */
+    public static class SqlPage<T> extends PageImpl<T> {
+
+        /** 总数是否精确：估算模式下超过上限时为 false，此时总数为上限值 */
+        private final boolean totalExact;
+
+        /** 总数是否来自缓存 */
+        private final boolean totalCached;
+
+        public SqlPage(List<T> content, Pageable pageable, long total, boolean totalExact, boolean totalCached) {
+            super(content, pageable, total);
+            this.totalExact = totalExact;
+            this.totalCached = totalCached;
+        }
+
+        public boolean isTotalExact() {
+            return totalExact;
+        }
+
+        public boolean isTotalCached() {
+            return totalCached;
+        }
+    }
+
+    /**
+     * 总数缓存key：空白规范化后的COUNT SQL + 按参数名排序的参数
+     */
+    private record CountKey(String countSql, Map<String, Object> params) {
+
+        static CountKey of(String normalizedCountSql, Map<String, Object> params) {
+            Map<String, Object> sortedParams = params == null ? Map.of()
+                    : Collections.unmodifiableMap(new TreeMap<>(params));
+            return new CountKey(normalizedCountSql, sortedParams);
+        }
+    }
+
+    /**
+     * 查询计划缓存key
+     *
+     * @param sql      原始SQL
+     * @param sort     排序条件
+     * @param countCap 估算上限（分页）
+     * @param kind     计划类型
+     */
+    private record PlanKey(String sql, Sort sort, long countCap, PlanKind kind) {
+    }
+
+    private enum PlanKind {
+        /** OFFSET 分页 */
+        PAGE,
+        /** 游标分页第一页 */
+        SEEK_FIRST,
+        /** 游标分页后续页 */
+        SEEK_NEXT
+    }
+
+    /**
+     * 解析好的查询计划：改写后的数据SQL、COUNT SQL 及其规范化形式（总数缓存key）
+     * 排序字段在生成计划时已校验，命中缓存即说明校验通过
+     */
+    private record QueryPlan(String dataSql, String countSql, String countCacheKey) {
+
+        static QueryPlan of(String dataSql, String countSql) {
+            return new QueryPlan(dataSql, countSql, WHITESPACE_PATTERN.matcher(countSql.trim()).replaceAll(" "));
+        }
+    }
+
+    /**
+     * 游标分页结果
+     *
+     * @param content    当前页数据
+     * @param nextCursor 下一页游标，没有下一页时为 null
+     * @param hasNext    是否还有下一页
+     * @param total      总记录数，未要求统计时为 null
+     */
+    public record CursorPage<T>(List<T> content, String nextCursor, boolean hasNext, Long total) {
+    }
+
     @Data
     public static class SqlBuilder {
 
@@ -1,23 +1,67 @@
 package com.example.transaction;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.persistence.*;
+import java.io.IOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongFunction;
 
 /**
  * Spring Boot 事务管理学习示例
@@ -31,8 +75,13 @@ import java.util.List;
  * ./run-app.sh transaction
  *
  * 测试接口：
- * # 查看所有账户
- * curl http://localhost:8080/api/accounts
+ * # 查看账户（游标分页）/ 导出全部账户
+ * curl "http://localhost:8080/api/accounts?size=50"
+ * curl http://localhost:8080/api/accounts/stream
+ *
+ * # 查看交易日志（按账户、时间范围过滤）/ 导出
+ * curl "http://localhost:8080/api/logs?accountId=1&from=2024-01-01T00:00:00&size=50"
+ * curl "http://localhost:8080/api/logs/stream?accountId=1"
  *
  * # 成功转账（事务提交）
  * curl -X POST "http://localhost:8080/api/transfer?from=1&to=2&amount=100"
@@ -40,6 +89,19 @@ import java.util.List;
  * # 失败转账（事务回滚）
  * curl -X POST "http://localhost:8080/api/transfer?from=1&to=2&amount=10000"
  *
+ * # 转账引擎（有序加锁 + 冲突重试）
+ * curl -X POST "http://localhost:8080/api/transfer/engine?from=1&to=2&amount=100"
+ *
+ * # 压测：1000 笔并发转账，账户按 Zipf 分布选取（mode=engine / legacy）
+ * curl -X POST "http://localhost:8080/api/load-test?mode=engine&transfers=1000&concurrency=1000&accounts=100&skew=1.2"
+ *
+ * # 热点账户余额分桶（8 个桶）/ 关闭分桶
+ * curl -X POST "http://localhost:8080/api/accounts/2/shard?buckets=8"
+ * curl -X DELETE http://localhost:8080/api/accounts/2/shard
+ *
+ * # 交易日志写入对比：每条一个 REQUIRES_NEW 事务 vs LedgerWriter 批量提交
+ * curl -X POST "http://localhost:8080/api/ledger-benchmark?entries=5000&threads=32"
+ *
  * # 测试传播行为
  * curl -X POST http://localhost:8080/api/test-propagation
  *
@@ -63,9 +125,11 @@ public class TransactionApplication {
      */
     @Bean
     CommandLineRunner initData(AccountRepository accountRepository,
-                               TransactionLogRepository logRepository) {
+                               TransactionLogRepository logRepository,
+                               AccountBalanceBucketRepository bucketRepository) {
         return args -> {
             // 清空旧数据
+            bucketRepository.deleteAll();
             accountRepository.deleteAll();
             logRepository.deleteAll();
 
@@ -120,6 +184,13 @@ class Account {
 
     private LocalDateTime updatedAt;
 
+    // 余额分桶数，null 表示未分桶；分桶后 balance 只是基础余额，总余额 = balance + 各桶余额之和
+    private Integer bucketCount;
+
+    public boolean isSharded() {
+        return bucketCount != null;
+    }
+
     @PreUpdate
     public void preUpdate() {
         this.updatedAt = LocalDateTime.now();
@@ -133,23 +204,79 @@ class Account {
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "transaction_logs")
+@Table(name = "transaction_logs", indexes = {
+    // 账户索引带上 id：账户等值过滤后索引内按 id 有序，id > 游标 直接在索引上定位，分页不用排序
+    // 时间索引只能缩小 created_at 范围，范围内的行按 created_at 排列，按 id 分页仍需排序；
+    // 范围较大时优化器也可能改走主键按 id 顺序扫描、逐行过滤 created_at，以 EXPLAIN 为准
+    @Index(name = "idx_tx_log_from_account", columnList = "from_account_id, id"),
+    @Index(name = "idx_tx_log_to_account", columnList = "to_account_id, id"),
+    @Index(name = "idx_tx_log_created_at", columnList = "created_at, id")
+})
 class TransactionLog {
+    /** error_message 列长度，异常信息（常带 SQL 原文）超长时截断，避免整条日志写入失败 */
+    static final int ERROR_MESSAGE_LENGTH = 255;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(name = "from_account_id")
     private Long fromAccountId;    // 转出账户
+
+    @Column(name = "to_account_id")
     private Long toAccountId;      // 转入账户
+
     private BigDecimal amount;     // 金额
     private String status;         // 状态：SUCCESS/FAILED
+
+    @Column(name = "error_message", length = ERROR_MESSAGE_LENGTH)
     private String errorMessage;   // 错误信息
+
+    @Column(name = "created_at")
     private LocalDateTime createdAt;
 
     @PrePersist
     public void prePersist() {
         this.createdAt = LocalDateTime.now();
     }
+
+    public void setErrorMessage(String errorMessage) {
+        if (errorMessage != null && errorMessage.length() > ERROR_MESSAGE_LENGTH) {
+            int end = ERROR_MESSAGE_LENGTH;
+            if (Character.isHighSurrogate(errorMessage.charAt(end - 1))) {
+                end--;
+            }
+            errorMessage = errorMessage.substring(0, end);
+        }
+        this.errorMessage = errorMessage;
+    }
+}
+
+/**
+ * 账户余额分桶实体类（热点账户的子余额）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "account_balance_buckets", uniqueConstraints =
+    @UniqueConstraint(name = "uk_bucket_account_index", columnNames = {"account_id", "bucket_index"}))
+class AccountBalanceBucket {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;        // 所属账户
+
+    @Column(name = "bucket_index", nullable = false)
+    private Integer bucketIndex;   // 桶序号，0 到 bucketCount-1
+
+    @Column(nullable = false)
+    private BigDecimal balance;    // 桶内余额
+
+    @Version
+    private Long version;
 }
 
 /**
@@ -158,6 +285,41 @@ class TransactionLog {
 @Repository
 interface AccountRepository extends JpaRepository<Account, Long> {
     Account findByAccountNumber(String accountNumber);
+
+    List<Account> findByAccountNumberStartingWithOrderById(String prefix);
+
+    /**
+     * 悲观写锁（SELECT ... FOR UPDATE），等锁超时（H2 默认 1 秒）抛 PessimisticLockingFailureException
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.id = :id")
+    Optional<Account> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * 只查分桶数，不把账户加载进持久化上下文（之后还要对它加锁读取）
+     */
+    @Query("select a.bucketCount from Account a where a.id = :id")
+    Integer findBucketCount(@Param("id") Long id);
+}
+
+/**
+ * 余额分桶Repository
+ */
+@Repository
+interface AccountBalanceBucketRepository extends JpaRepository<AccountBalanceBucket, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from AccountBalanceBucket b where b.accountId = :accountId and b.bucketIndex = :bucketIndex")
+    Optional<AccountBalanceBucket> findForUpdate(@Param("accountId") Long accountId,
+                                                 @Param("bucketIndex") Integer bucketIndex);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from AccountBalanceBucket b where b.accountId = :accountId order by b.bucketIndex")
+    List<AccountBalanceBucket> findAllForUpdate(@Param("accountId") Long accountId);
+
+    @Query("select b.accountId, sum(b.balance) from AccountBalanceBucket b "
+        + "where b.accountId in :accountIds group by b.accountId")
+    List<Object[]> sumBalanceByAccountIds(@Param("accountIds") Collection<Long> accountIds);
 }
 
 /**
@@ -176,11 +338,14 @@ class AccountService {
 
     private final AccountRepository accountRepository;
     private final TransactionLogRepository logRepository;
+    private final ShardedBalanceService shardedBalanceService;
 
     public AccountService(AccountRepository accountRepository,
-                         TransactionLogRepository logRepository) {
+                         TransactionLogRepository logRepository,
+                         ShardedBalanceService shardedBalanceService) {
         this.accountRepository = accountRepository;
         this.logRepository = logRepository;
+        this.shardedBalanceService = shardedBalanceService;
     }
 
     /**
@@ -270,11 +435,13 @@ class AccountService {
     /**
      * 4. 只读事务
      * 优化查询性能，不允许修改操作
+     * 分桶账户返回汇总后的总余额
      */
     @Transactional(readOnly = true)
     public Account getAccountById(Long id) {
-        return accountRepository.findById(id)
+        Account account = accountRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("账户不存在"));
+        return shardedBalanceService.withTotalBalances(List.of(account)).get(0);
     }
 
     /**
@@ -310,21 +477,1067 @@ class AccountService {
             throw new IllegalArgumentException("金额必须大于0");
         }
     }
+}
+
+/**
+ * 转账引擎 - 高并发转账
+ *
+ * 与 AccountService.transfer 的区别：
+ * 1. 按账户ID从小到大加悲观写锁，方向相反的两笔转账也按同一顺序加锁，不会死锁
+ * 2. 事务里只有加锁、改余额、写日志，没有模拟耗时，锁持有时间尽量短
+ * 3. 等锁超时、乐观锁冲突（和不加锁的旧路径并发时）属于并发冲突：整笔转账在新事务里重试，
+ *    指数退避 + 全抖动（0 到退避上限之间随机），避免冲突的事务同时醒来再次冲突；次数和总耗时都有上限
+ * 4. 余额不足等业务失败不重试
+ * 5. SUCCESS 日志在转账事务内写入，和余额变更一起提交；失败日志交给 LedgerWriter 异步批量写入，不占转账线程
+ * 6. 转入账户开启了余额分桶时不锁账户行，只锁一个随机桶，见 ShardedBalanceService
+ */
+@Slf4j
+@Service
+class TransferEngine {
+
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long RETRY_BUDGET_MILLIS = 2_000;  // 从第一次尝试开始算的总预算
+    private static final long BACKOFF_BASE_MILLIS = 2;
+    private static final long BACKOFF_MAX_MILLIS = 128;
+
+    private final AccountRepository accountRepository;
+    private final TransactionLogRepository logRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerWriter ledgerWriter;
+    private final ShardedBalanceService shardedBalanceService;
+
+    public TransferEngine(AccountRepository accountRepository,
+                          TransactionLogRepository logRepository,
+                          PlatformTransactionManager transactionManager,
+                          LedgerWriter ledgerWriter,
+                          ShardedBalanceService shardedBalanceService) {
+        this.accountRepository = accountRepository;
+        this.logRepository = logRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ledgerWriter = ledgerWriter;
+        this.shardedBalanceService = shardedBalanceService;
+    }
 
     /**
-     * 获取所有账户
+     * 转账，遇到并发冲突自动重试
+     *
+     * @return 实际尝试次数（1 表示一次成功）
+     * @throws TransferConflictException 重试次数或时间预算用完仍然冲突
      */
-    @Transactional(readOnly = true)
-    public List<Account> getAllAccounts() {
-        return accountRepository.findAll();
+    public int transfer(Long fromId, Long toId, BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("金额必须大于0");
+        }
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("转出和转入账户不能相同");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_BUDGET_MILLIS);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> transferOnce(fromId, toId, amount));
+                return attempt;
+            } catch (ConcurrencyFailureException e) {
+                long backoffMillis = ThreadLocalRandom.current()
+                    .nextLong(Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << attempt) + 1);
+                if (attempt >= MAX_ATTEMPTS
+                        || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis) > deadline) {
+                    TransferConflictException conflict = new TransferConflictException(attempt, e);
+                    ledgerWriter.write(LedgerWriter.failed(fromId, toId, amount, conflict.getMessage()));
+                    throw conflict;
+                }
+                log.debug("转账冲突，第{}次重试前等待{}ms：{}", attempt, backoffMillis, e.getMessage());
+                sleep(backoffMillis);
+            } catch (RuntimeException e) {
+                ledgerWriter.write(LedgerWriter.failed(fromId, toId, amount, e.getMessage()));
+                throw e;
+            }
+        }
+    }
+
+    private void transferOnce(Long fromId, Long toId, BigDecimal amount) {
+        Integer toBucketCount = accountRepository.findBucketCount(toId);
+        Account fromAccount;
+        Account toAccount = null;
+        if (toBucketCount != null) {
+            // 转入账户已分桶：只锁转出账户行，转入落到随机桶
+            fromAccount = lock(fromId);
+        } else {
+            Long firstId = Math.min(fromId, toId);
+            Long secondId = Math.max(fromId, toId);
+            Account first = lock(firstId);
+            Account second = lock(secondId);
+            fromAccount = fromId.equals(firstId) ? first : second;
+            toAccount = fromId.equals(firstId) ? second : first;
+        }
+
+        // 托管实体，提交时统一 flush
+        shardedBalanceService.move(fromAccount, toAccount, toId, toBucketCount, amount);
+
+        TransactionLog txLog = new TransactionLog();
+        txLog.setFromAccountId(fromId);
+        txLog.setToAccountId(toId);
+        txLog.setAmount(amount);
+        txLog.setStatus("SUCCESS");
+        logRepository.save(txLog);
+    }
+
+    private Account lock(Long id) {
+        return accountRepository.findByIdForUpdate(id)
+            .orElseThrow(() -> new RuntimeException("账户不存在：" + id));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("转账重试被中断", e);
+        }
+    }
+}
+
+/**
+ * 并发冲突重试耗尽
+ */
+class TransferConflictException extends RuntimeException {
+
+    private final int attempts;
+
+    TransferConflictException(int attempts, Throwable cause) {
+        super("并发冲突，重试" + attempts + "次后放弃：" + cause.getMessage(), cause);
+        this.attempts = attempts;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
+
+/**
+ * 交易日志等待超时时已在提交中，可能已经落库也可能失败
+ */
+class LedgerOutcomeUnknownException extends RuntimeException {
+
+    LedgerOutcomeUnknownException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
+
+/**
+ * Zipf 分布采样：第 k 个元素被选中的概率与 1/k^s 成正比，s 越大越集中在前几个（热点账户）
+ */
+class ZipfSampler {
+
+    private final double[] cdf;
+
+    ZipfSampler(int n, double s) {
+        if (n < 1 || s < 0) {
+            throw new IllegalArgumentException("需要 n >= 1 且 s >= 0");
+        }
+        cdf = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1 / Math.pow(k, s);
+            cdf[k - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+    }
+
+    /**
+     * @return 0 到 n-1 的下标
+     */
+    int next() {
+        int index = Arrays.binarySearch(cdf, ThreadLocalRandom.current().nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+}
+
+/**
+ * 转账压测结果
+ *
+ * @param attempts  总尝试次数（含重试）
+ * @param aborts    因并发冲突失败的尝试次数
+ * @param gaveUp    冲突重试耗尽（engine）或冲突直接失败（legacy）的转账笔数
+ * @param rejected  业务失败（如余额不足）的转账笔数
+ * @param balanceConserved 压测前后账户总余额是否一致
+ */
+record LoadTestReport(String mode, int transfers, int concurrency, int accounts, double skew,
+                      int succeeded, int gaveUp, int rejected, long attempts, long aborts,
+                      long elapsedMillis, double throughputPerSecond, double abortRate,
+                      double p50Millis, double p99Millis, boolean balanceConserved) {
+}
+
+/**
+ * 转账压测：所有转账同时开始，账户按 Zipf 分布选取，少数热点账户承担大部分转账
+ * mode=engine 使用 TransferEngine，mode=legacy 使用 AccountService.transfer（乐观锁、不重试、事务内 sleep 100ms）
+ */
+@Slf4j
+@Component
+class TransferLoadTest {
+
+    private static final String ACCOUNT_PREFIX = "LOAD";
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    private final AccountRepository accountRepository;
+    private final AccountService accountService;
+    private final TransferEngine transferEngine;
+    private final ShardedBalanceService shardedBalanceService;
+
+    public TransferLoadTest(AccountRepository accountRepository,
+                            AccountService accountService,
+                            TransferEngine transferEngine,
+                            ShardedBalanceService shardedBalanceService) {
+        this.accountRepository = accountRepository;
+        this.accountService = accountService;
+        this.transferEngine = transferEngine;
+        this.shardedBalanceService = shardedBalanceService;
+    }
+
+    /**
+     * @param shardHot 压测前对最热的前 shardHot 个账户开启余额分桶（其余压测账户关闭分桶）
+     * @param buckets  分桶数
+     */
+    public LoadTestReport run(String mode, int transfers, int concurrency, int accountCount, double skew,
+                              int shardHot, int buckets) throws InterruptedException {
+        boolean useEngine = switch (mode) {
+            case "engine" -> true;
+            case "legacy" -> false;
+            default -> throw new IllegalArgumentException("mode 只支持 engine / legacy");
+        };
+        if (transfers < 1 || concurrency < 1 || concurrency > 2000 || accountCount < 2) {
+            throw new IllegalArgumentException("需要 transfers >= 1、1 <= concurrency <= 2000、accounts >= 2");
+        }
+        List<Long> ids = prepareAccounts(accountCount);
+        prepareSharding(ids, shardHot, buckets);
+        BigDecimal balanceBefore = totalBalance(ids);
+        ZipfSampler sampler = new ZipfSampler(ids.size(), skew);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger gaveUp = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicLong attempts = new AtomicLong();
+        AtomicLong aborts = new AtomicLong();
+        long[] latencies = new long[transfers];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(transfers);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < transfers; i++) {
+            final int index = i;
+            executor.execute(() -> {
+                long begin = 0;
+                try {
+                    start.await();
+                    Long fromId = ids.get(sampler.next());
+                    Long toId;
+                    do {
+                        toId = ids.get(sampler.next());
+                    } while (toId.equals(fromId));
+                    begin = System.nanoTime();
+                    int used = 1;
+                    if (useEngine) {
+                        used = transferEngine.transfer(fromId, toId, AMOUNT);
+                    } else {
+                        accountService.transfer(fromId, toId, AMOUNT);
+                    }
+                    succeeded.incrementAndGet();
+                    attempts.addAndGet(used);
+                    aborts.addAndGet(used - 1);
+                } catch (TransferConflictException e) {
+                    gaveUp.incrementAndGet();
+                    attempts.addAndGet(e.getAttempts());
+                    aborts.addAndGet(e.getAttempts());
+                } catch (ConcurrencyFailureException e) {
+                    gaveUp.incrementAndGet();
+                    attempts.incrementAndGet();
+                    aborts.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    rejected.incrementAndGet();
+                    attempts.incrementAndGet();
+                } finally {
+                    latencies[index] = begin == 0 ? 0 : System.nanoTime() - begin;
+                    done.countDown();
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsedNanos = System.nanoTime() - begin;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        long totalAttempts = attempts.get();
+        LoadTestReport report = new LoadTestReport(mode, transfers, concurrency, ids.size(), skew,
+            succeeded.get(), gaveUp.get(), rejected.get(), totalAttempts, aborts.get(),
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+            succeeded.get() * 1e9 / elapsedNanos,
+            totalAttempts == 0 ? 0 : (double) aborts.get() / totalAttempts,
+            percentileMillis(latencies, 0.50), percentileMillis(latencies, 0.99),
+            balanceBefore.compareTo(totalBalance(ids)) == 0);
+        log.info("转账压测完成：{}", report);
+        return report;
+    }
+
+    /**
+     * 复用已有的压测账户，不够时补建
+     */
+    private List<Long> prepareAccounts(int count) {
+        List<Account> existing = accountRepository.findByAccountNumberStartingWithOrderById(ACCOUNT_PREFIX);
+        List<Account> created = new ArrayList<>();
+        for (int i = existing.size(); i < count; i++) {
+            Account account = new Account();
+            account.setAccountNumber(ACCOUNT_PREFIX + String.format("%05d", i + 1));
+            account.setAccountName("压测账户" + (i + 1));
+            account.setBalance(INITIAL_BALANCE);
+            created.add(account);
+        }
+        accountRepository.saveAll(created);
+
+        List<Long> ids = new ArrayList<>(count);
+        for (Account account : accountRepository.findByAccountNumberStartingWithOrderById(ACCOUNT_PREFIX)) {
+            if (ids.size() == count) {
+                break;
+            }
+            ids.add(account.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Zipf 采样下标 0 的账户最热
+     */
+    private void prepareSharding(List<Long> ids, int shardHot, int buckets) {
+        Map<Long, Account> accounts = new HashMap<>();
+        accountRepository.findAllById(ids).forEach(account -> accounts.put(account.getId(), account));
+        for (int i = 0; i < ids.size(); i++) {
+            Account account = accounts.get(ids.get(i));
+            if (i < shardHot) {
+                if (!Integer.valueOf(buckets).equals(account.getBucketCount())) {
+                    shardedBalanceService.enableSharding(account.getId(), buckets);
+                }
+            } else if (account.isSharded()) {
+                shardedBalanceService.disableSharding(account.getId());
+            }
+        }
+    }
+
+    private BigDecimal totalBalance(List<Long> ids) {
+        return shardedBalanceService.withTotalBalances(accountRepository.findAllById(ids)).stream()
+            .map(Account::getBalance)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(sortedNanos.length * percentile) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1e6;
+    }
+}
+
+/**
+ * 热点账户余额分桶
+ *
+ * 收款频繁的账户（商户）每笔入账都要更新同一行、同一个 version，只能串行；开启分桶后：
+ * - 账户行的 balance 作为基础余额，另有 N 行分桶余额，总余额 = 基础余额 + 各桶之和
+ * - 入账随机落到一个桶，只锁这一个桶行，不同入账大多落在不同的桶上，可以并行
+ * - 出账先扣基础余额（调用方已持有账户行锁），不够时锁住全部桶按序号依次扣减（扫桶）
+ * - 查询余额时汇总
+ *
+ * 加锁顺序：先账户行（按账户ID），再桶行（按账户ID、桶序号），配合 TransferEngine 的有序加锁不会死锁
+ * move 要求在调用方事务内执行（MANDATORY），和余额变更、交易日志一起提交或回滚
+ * 只有 TransferEngine 走分桶；AccountService.transfer 等旧路径只读写基础余额，总额仍然守恒
+ */
+@Slf4j
+@Service
+class ShardedBalanceService {
+
+    static final int MAX_BUCKETS = 64;
+
+    private final AccountRepository accountRepository;
+    private final AccountBalanceBucketRepository bucketRepository;
+
+    public ShardedBalanceService(AccountRepository accountRepository,
+                                 AccountBalanceBucketRepository bucketRepository) {
+        this.accountRepository = accountRepository;
+        this.bucketRepository = bucketRepository;
+    }
+
+    /**
+     * 开启分桶或调整分桶数；减少桶数时，多出来的桶余额并回基础余额
+     */
+    @Transactional
+    public Account enableSharding(Long accountId, int buckets) {
+        if (buckets < 2 || buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("分桶数必须在 2 到 " + MAX_BUCKETS + " 之间");
+        }
+        Account account = lockAccount(accountId);
+        List<AccountBalanceBucket> existing = bucketRepository.findAllForUpdate(accountId);
+        for (AccountBalanceBucket bucket : existing) {
+            if (bucket.getBucketIndex() >= buckets) {
+                account.setBalance(account.getBalance().add(bucket.getBalance()));
+                bucketRepository.delete(bucket);
+            }
+        }
+        for (int index = existing.size(); index < buckets; index++) {
+            AccountBalanceBucket bucket = new AccountBalanceBucket();
+            bucket.setAccountId(accountId);
+            bucket.setBucketIndex(index);
+            bucket.setBalance(BigDecimal.ZERO);
+            bucketRepository.save(bucket);
+        }
+        account.setBucketCount(buckets);
+        log.info("账户{}开启余额分桶：{}个桶", accountId, buckets);
+        return account;
     }
 
     /**
-     * 获取所有交易日志
+     * 关闭分桶：全部桶余额并回基础余额后删除
+     */
+    @Transactional
+    public Account disableSharding(Long accountId) {
+        Account account = lockAccount(accountId);
+        for (AccountBalanceBucket bucket : bucketRepository.findAllForUpdate(accountId)) {
+            account.setBalance(account.getBalance().add(bucket.getBalance()));
+            bucketRepository.delete(bucket);
+        }
+        account.setBucketCount(null);
+        log.info("账户{}关闭余额分桶", accountId);
+        return account;
+    }
+
+    /**
+     * 转账的余额变更
+     *
+     * @param from          已加锁的转出账户
+     * @param to            已加锁的转入账户；转入账户分桶时为 null（不锁账户行）
+     * @param toBucketCount 转入账户的分桶数，null 表示未分桶
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void move(Account from, Account to, Long toId, Integer toBucketCount, BigDecimal amount) {
+        boolean sweep = from.isSharded() && from.getBalance().compareTo(amount) < 0;
+        if (!from.isSharded() && from.getBalance().compareTo(amount) < 0) {
+            throw new RuntimeException("余额不足");
+        }
+
+        // 需要的桶锁统一按（账户ID，桶序号）排序后再加
+        Map<Long, List<Integer>> wanted = new HashMap<>();
+        int creditIndex = -1;
+        if (to == null) {
+            creditIndex = ThreadLocalRandom.current().nextInt(toBucketCount);
+            wanted.computeIfAbsent(toId, id -> new ArrayList<>()).add(creditIndex);
+        }
+        if (sweep) {
+            List<Integer> all = wanted.computeIfAbsent(from.getId(), id -> new ArrayList<>());
+            for (int index = 0; index < from.getBucketCount(); index++) {
+                all.add(index);
+            }
+        }
+        Map<Long, Map<Integer, AccountBalanceBucket>> locked = lockBuckets(wanted);
+
+        // 出账
+        if (sweep) {
+            Map<Integer, AccountBalanceBucket> fromBuckets = locked.get(from.getId());
+            BigDecimal total = fromBuckets.values().stream()
+                .map(AccountBalanceBucket::getBalance)
+                .reduce(from.getBalance(), BigDecimal::add);
+            if (total.compareTo(amount) < 0) {
+                throw new RuntimeException("余额不足");
+            }
+            BigDecimal remaining = amount.subtract(from.getBalance());
+            from.setBalance(BigDecimal.ZERO);
+            for (AccountBalanceBucket bucket : fromBuckets.values()) {
+                if (remaining.signum() == 0) {
+                    break;
+                }
+                BigDecimal take = bucket.getBalance().min(remaining);
+                bucket.setBalance(bucket.getBalance().subtract(take));
+                remaining = remaining.subtract(take);
+            }
+        } else {
+            from.setBalance(from.getBalance().subtract(amount));
+        }
+
+        // 入账
+        if (to == null) {
+            AccountBalanceBucket bucket = locked.get(toId).get(creditIndex);
+            bucket.setBalance(bucket.getBalance().add(amount));
+        } else {
+            to.setBalance(to.getBalance().add(amount));
+        }
+    }
+
+    /**
+     * 分桶账户的余额替换为总余额，返回的是副本，不会把汇总值写回基础余额
      */
     @Transactional(readOnly = true)
-    public List<TransactionLog> getAllLogs() {
-        return logRepository.findAll();
+    public List<Account> withTotalBalances(List<Account> accounts) {
+        List<Long> shardedIds = accounts.stream().filter(Account::isSharded).map(Account::getId).toList();
+        if (shardedIds.isEmpty()) {
+            return accounts;
+        }
+        Map<Long, BigDecimal> bucketTotals = new HashMap<>();
+        for (Object[] row : bucketRepository.sumBalanceByAccountIds(shardedIds)) {
+            bucketTotals.put((Long) row[0], (BigDecimal) row[1]);
+        }
+        List<Account> result = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            if (!account.isSharded()) {
+                result.add(account);
+                continue;
+            }
+            Account copy = new Account();
+            copy.setId(account.getId());
+            copy.setAccountNumber(account.getAccountNumber());
+            copy.setAccountName(account.getAccountName());
+            copy.setBalance(account.getBalance().add(bucketTotals.getOrDefault(account.getId(), BigDecimal.ZERO)));
+            copy.setVersion(account.getVersion());
+            copy.setUpdatedAt(account.getUpdatedAt());
+            copy.setBucketCount(account.getBucketCount());
+            result.add(copy);
+        }
+        return result;
+    }
+
+    private Map<Long, Map<Integer, AccountBalanceBucket>> lockBuckets(Map<Long, List<Integer>> wanted) {
+        Map<Long, Map<Integer, AccountBalanceBucket>> locked = new HashMap<>();
+        List<Long> accountIds = new ArrayList<>(wanted.keySet());
+        accountIds.sort(Comparator.naturalOrder());
+        for (Long accountId : accountIds) {
+            Map<Integer, AccountBalanceBucket> buckets = new LinkedHashMap<>();
+            List<Integer> indexes = wanted.get(accountId);
+            indexes.sort(Comparator.naturalOrder());
+            for (Integer index : indexes) {
+                // 桶被并发关闭/缩减时找不到，按并发冲突处理，TransferEngine 会重试
+                AccountBalanceBucket bucket = bucketRepository.findForUpdate(accountId, index)
+                    .orElseThrow(() -> new ConcurrencyFailureException("账户" + accountId + "的分桶已变更"));
+                buckets.put(index, bucket);
+            }
+            locked.put(accountId, buckets);
+        }
+        return locked;
+    }
+
+    private Account lockAccount(Long accountId) {
+        return accountRepository.findByIdForUpdate(accountId)
+            .orElseThrow(() -> new RuntimeException("账户不存在：" + accountId));
+    }
+}
+
+/**
+ * 交易日志批量写入器（group commit）
+ *
+ * 每条日志单独一个事务时，每次都要付出一次提交（H2 文件库一次刷盘）；这里由单个写线程按入队顺序攒批：
+ * 攒够 BATCH_SIZE 条，或者批中第一条已等待 MAX_LATENCY_MILLIS，就用一个事务 + JDBC 批量插入一起提交
+ *
+ * 持久性：
+ * - SUCCESS 日志：write 阻塞到所在批次提交后才返回，和单独提交一样，返回即已落库
+ * - 批次失败时逐条重试，只有自身写不进去的日志失败（SUCCESS 日志的 write 抛异常），同批其它日志不受影响
+ * - 等待超时或被中断：还在队列里的日志会被撤回，抛异常即确定没有写入；已被写线程取走的日志结果未知
+ *   （之后仍可能提交），抛 LedgerOutcomeUnknownException，调用方需要按日志核对，不能当作失败重写
+ * - 其它状态：入队即返回，由写线程异步提交
+ * 写入与调用方事务无关（相当于 REQUIRES_NEW），调用方回滚不影响已入队的日志
+ * 队列有界，写不过来时 write 阻塞，反压到调用方
+ */
+@Slf4j
+@Component
+class LedgerWriter {
+
+    static final int BATCH_SIZE = 200;
+    static final long MAX_LATENCY_MILLIS = 5;
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final long DURABLE_WAIT_SECONDS = 10;
+
+    private static final String INSERT_SQL = "INSERT INTO transaction_logs "
+        + "(from_account_id, to_account_id, amount, status, error_message, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingLog> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private volatile boolean running;
+    private Thread writer;
+
+    public LedgerWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::runWriter, "ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 关闭时把队列里剩余的日志写完
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(DURABLE_WAIT_SECONDS));
+    }
+
+    /**
+     * 写入一条交易日志；SUCCESS 日志等待提交完成后返回
+     */
+    public void write(TransactionLog txLog) {
+        PendingLog pending = enqueue(txLog);
+        if (!"SUCCESS".equals(txLog.getStatus())) {
+            return;
+        }
+        try {
+            pending.committed().get(DURABLE_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw abandon(pending, "等待交易日志提交被中断", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("交易日志写入失败：" + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw abandon(pending, "交易日志提交超时", e);
+        }
+    }
+
+    /**
+     * 放弃等待：还没被写线程取走的从队列撤回，确定不会写入；已取走的结果未知
+     */
+    private RuntimeException abandon(PendingLog pending, String message, Exception cause) {
+        if (queue.remove(pending)) {
+            RuntimeException failure = new RuntimeException(message + "，日志已撤回未写入", cause);
+            pending.committed().completeExceptionally(failure);
+            return failure;
+        }
+        return new LedgerOutcomeUnknownException(message + "，日志已在提交中，结果未知", cause);
+    }
+
+    /**
+     * 入队，返回在所在批次提交后完成的 Future
+     */
+    public CompletableFuture<Void> append(TransactionLog txLog) {
+        return enqueue(txLog).committed();
+    }
+
+    private PendingLog enqueue(TransactionLog txLog) {
+        if (!running) {
+            throw new IllegalStateException("LedgerWriter 已关闭");
+        }
+        if (txLog.getCreatedAt() == null) {
+            txLog.setCreatedAt(LocalDateTime.now());
+        }
+        PendingLog pending = new PendingLog(txLog, System.nanoTime(), new CompletableFuture<>());
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("交易日志入队被中断", e);
+        }
+        return pending;
+    }
+
+    /** 已提交的批次数 */
+    public long getCommits() {
+        return commits.get();
+    }
+
+    /** 已写入的日志条数 */
+    public long getWritten() {
+        return written.get();
+    }
+
+    static TransactionLog failed(Long fromId, Long toId, BigDecimal amount, String errorMessage) {
+        TransactionLog txLog = new TransactionLog();
+        txLog.setFromAccountId(fromId);
+        txLog.setToAccountId(toId);
+        txLog.setAmount(amount);
+        txLog.setStatus("FAILED");
+        txLog.setErrorMessage(errorMessage);
+        return txLog;
+    }
+
+    private void runWriter() {
+        List<PendingLog> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingLog first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.enqueuedNanos() + TimeUnit.MILLISECONDS.toNanos(MAX_LATENCY_MILLIS);
+                while (batch.size() < BATCH_SIZE) {
+                    // 先把已经在队列里的取完，再在剩余的延迟预算内等新的
+                    if (queue.drainTo(batch, BATCH_SIZE - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingLog next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 只在关闭时发生：写完手上的这批后由循环条件决定是否退出
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 整批一个事务提交；整批失败时逐条重试，只让写不进去的那条失败，不连累同批的其它日志
+     */
+    private void flush(List<PendingLog> batch) {
+        try {
+            insert(batch);
+            batch.forEach(pending -> pending.committed().complete(null));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                log.error("交易日志写入失败：{}", batch.get(0).txLog(), e);
+                batch.get(0).committed().completeExceptionally(e);
+                return;
+            }
+            log.warn("交易日志批量写入失败，{}条逐条重试：{}", batch.size(), e.getMessage());
+            for (PendingLog pending : batch) {
+                flush(List.of(pending));
+            }
+        }
+    }
+
+    private void insert(List<PendingLog> batch) {
+        transactionTemplate.executeWithoutResult(status ->
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, pending) -> {
+                TransactionLog txLog = pending.txLog();
+                ps.setObject(1, txLog.getFromAccountId(), Types.BIGINT);
+                ps.setObject(2, txLog.getToAccountId(), Types.BIGINT);
+                ps.setBigDecimal(3, txLog.getAmount());
+                ps.setString(4, txLog.getStatus());
+                ps.setString(5, txLog.getErrorMessage());
+                ps.setTimestamp(6, Timestamp.valueOf(txLog.getCreatedAt()));
+            }));
+        commits.incrementAndGet();
+        written.addAndGet(batch.size());
+    }
+
+    private record PendingLog(TransactionLog txLog, long enqueuedNanos, CompletableFuture<Void> committed) {
+    }
+}
+
+/**
+ * 交易日志写入对比结果
+ *
+ * @param perEntryCommits 逐条写入（AccountService.logTransaction，REQUIRES_NEW）的提交次数，等于条数
+ * @param ledgerCommits   LedgerWriter 的批次提交次数
+ */
+record LedgerBenchmarkReport(int entries, int threads,
+                             long perEntryMillis, double perEntryPerSecond, long perEntryCommits,
+                             long ledgerMillis, double ledgerPerSecond, long ledgerCommits,
+                             double averageBatchSize) {
+}
+
+/**
+ * 交易日志写入对比：同样条数的 SUCCESS 日志，多线程并发写入
+ * 两种方式都是返回即已提交，区别只在多少条日志共用一次提交；压测数据写完后删除
+ */
+@Slf4j
+@Component
+class LedgerBenchmark {
+
+    private static final String MARKER = "ledger-benchmark";
+
+    private final AccountService accountService;
+    private final LedgerWriter ledgerWriter;
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerBenchmark(AccountService accountService, LedgerWriter ledgerWriter, JdbcTemplate jdbcTemplate) {
+        this.accountService = accountService;
+        this.ledgerWriter = ledgerWriter;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public LedgerBenchmarkReport run(int entries, int threads) throws InterruptedException {
+        if (entries < 1 || threads < 1 || threads > 500) {
+            throw new IllegalArgumentException("需要 entries >= 1、1 <= threads <= 500");
+        }
+        try {
+            long perEntryNanos = runConcurrently(entries, threads, () ->
+                accountService.logTransaction(0L, 0L, BigDecimal.ONE, "SUCCESS", MARKER));
+
+            long commitsBefore = ledgerWriter.getCommits();
+            long ledgerNanos = runConcurrently(entries, threads, () ->
+                ledgerWriter.write(benchmarkLog()));
+            long ledgerCommits = ledgerWriter.getCommits() - commitsBefore;
+
+            LedgerBenchmarkReport report = new LedgerBenchmarkReport(entries, threads,
+                TimeUnit.NANOSECONDS.toMillis(perEntryNanos), entries * 1e9 / perEntryNanos, entries,
+                TimeUnit.NANOSECONDS.toMillis(ledgerNanos), entries * 1e9 / ledgerNanos, ledgerCommits,
+                ledgerCommits == 0 ? 0 : (double) entries / ledgerCommits);
+            log.info("交易日志写入对比：{}", report);
+            return report;
+        } finally {
+            jdbcTemplate.update("DELETE FROM transaction_logs WHERE error_message = ?", MARKER);
+        }
+    }
+
+    private static TransactionLog benchmarkLog() {
+        TransactionLog txLog = new TransactionLog();
+        txLog.setFromAccountId(0L);
+        txLog.setToAccountId(0L);
+        txLog.setAmount(BigDecimal.ONE);
+        txLog.setStatus("SUCCESS");
+        txLog.setErrorMessage(MARKER);
+        return txLog;
+    }
+
+    private static long runConcurrently(int entries, int threads, Runnable task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(entries);
+        long begin = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.warn("写入失败：{}", e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return elapsed;
+    }
+}
+
+/**
+ * 游标分页结果
+ *
+ * @param content    当前页数据
+ * @param nextCursor 下一页游标（本页最后一条的ID），没有下一页时为 null
+ * @param hasNext    是否还有下一页
+ */
+record CursorPage<T>(List<T> content, Long nextCursor, boolean hasNext) {
+}
+
+/**
+ * 交易日志过滤条件，都可以为空
+ *
+ * @param accountId 转出或转入账户是该账户
+ * @param from      起始时间（包含）
+ * @param to        结束时间（不包含）
+ */
+record LogFilter(Long accountId, LocalDateTime from, LocalDateTime to) {
+}
+
+/**
+ * 账户/交易日志查询 - 游标分页和分块流式输出
+ *
+ * 1. 游标分页按 id 定位（WHERE id > 游标 ORDER BY id LIMIT n+1），翻到多深都只读一页的行，不像 OFFSET 要先跳过前面所有行
+ * 2. 流式输出按游标一块一块地查、写、flush，内存里只有一块；每块是一次独立的短查询，
+ *    客户端读得慢时不占数据库连接，也没有长事务；代价是输出不是同一时刻的快照，输出过程中新增的日志也会出现在后面
+ * 3. 按账户过滤时转出、转入分别走 (from_account_id, id) / (to_account_id, id) 索引各取一页再合并，
+ *    OR 条件会让 H2 放弃索引扫全表
+ *
+ * 只读查询直接用 JdbcTemplate 映射成普通对象：open-in-view 下整个请求共用一个 EntityManager，
+ * 用 Repository 分块读取时实体会在持久化上下文里一直累积，流式输出就失去了意义
+ */
+@Slf4j
+@Service
+class TransactionQueryService {
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    private static final String ACCOUNT_SQL = "SELECT id, account_number, account_name, balance, version, "
+        + "updated_at, bucket_count FROM accounts WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String LOG_COLUMNS =
+        "id, from_account_id, to_account_id, amount, status, error_message, created_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ShardedBalanceService shardedBalanceService;
+
+    public TransactionQueryService(JdbcTemplate jdbcTemplate,
+                                   ObjectMapper objectMapper,
+                                   ShardedBalanceService shardedBalanceService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.shardedBalanceService = shardedBalanceService;
+    }
+
+    // ====== 游标分页 ======
+
+    /**
+     * 分页查询账户，分桶账户返回总余额
+     *
+     * @param cursor 上一页返回的 nextCursor，查询第一页时传 null
+     */
+    public CursorPage<Account> pageAccounts(Long cursor, int size) {
+        checkPageSize(size);
+        CursorPage<Account> page = toPage(findAccounts(cursor == null ? 0 : cursor, size + 1), size, Account::getId);
+        return new CursorPage<>(shardedBalanceService.withTotalBalances(page.content()), page.nextCursor(),
+            page.hasNext());
+    }
+
+    /**
+     * 分页查询交易日志
+     *
+     * @param cursor 上一页返回的 nextCursor，查询第一页时传 null
+     */
+    public CursorPage<TransactionLog> pageLogs(LogFilter filter, Long cursor, int size) {
+        checkPageSize(size);
+        checkFilter(filter);
+        return toPage(findLogs(filter, cursor == null ? 0 : cursor, size + 1), size, TransactionLog::getId);
+    }
+
+    // ====== 分块流式输出 ======
+
+    /**
+     * 以 JSON 数组输出全部账户
+     */
+    public void streamAccounts(Writer writer) throws IOException {
+        long rows = streamChunks(writer,
+            afterId -> shardedBalanceService.withTotalBalances(findAccounts(afterId, STREAM_CHUNK_SIZE)),
+            Account::getId);
+        log.info("【账户导出完成】行数: {}", rows);
+    }
+
+    /**
+     * 以 JSON 数组输出符合条件的交易日志
+     */
+    public void streamLogs(LogFilter filter, Writer writer) throws IOException {
+        checkFilter(filter);
+        long rows = streamChunks(writer, afterId -> findLogs(filter, afterId, STREAM_CHUNK_SIZE),
+            TransactionLog::getId);
+        log.info("【交易日志导出完成】条件: {}, 行数: {}", filter, rows);
+    }
+
+    private <T> long streamChunks(Writer writer, LongFunction<List<T>> nextChunk, Function<T, Long> idOf)
+            throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(writer)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.writeStartArray();
+        long rows = 0;
+        long afterId = 0;
+        while (true) {
+            List<T> chunk = nextChunk.apply(afterId);
+            for (T row : chunk) {
+                json.writeObject(row);
+            }
+            rows += chunk.size();
+            // 每块推给客户端一次，不在输出缓冲区里堆积
+            json.flush();
+            writer.flush();
+            if (chunk.size() < STREAM_CHUNK_SIZE) {
+                break;
+            }
+            afterId = idOf.apply(chunk.get(chunk.size() - 1));
+        }
+        json.writeEndArray();
+        json.close();
+        writer.flush();
+        return rows;
+    }
+
+    // ====== 查询 ======
+
+    private List<Account> findAccounts(long afterId, int limit) {
+        return jdbcTemplate.query(ACCOUNT_SQL, TransactionQueryService::mapAccount, afterId, limit);
+    }
+
+    private List<TransactionLog> findLogs(LogFilter filter, long afterId, int limit) {
+        List<Object> args = new ArrayList<>();
+        String sql;
+        if (filter.accountId() == null) {
+            sql = logBranchSql(null, filter, afterId, limit, args);
+        } else {
+            // 两个分支各自走索引取前 limit 条，合并后再取前 limit 条；UNION 去重转给自己的日志
+            sql = "SELECT * FROM ("
+                + "SELECT * FROM (" + logBranchSql("from_account_id", filter, afterId, limit, args) + ") f UNION "
+                + "SELECT * FROM (" + logBranchSql("to_account_id", filter, afterId, limit, args) + ") t"
+                + ") u ORDER BY id LIMIT ?";
+            args.add(limit);
+        }
+        return jdbcTemplate.query(sql, TransactionQueryService::mapLog, args.toArray());
+    }
+
+    private static String logBranchSql(String accountColumn, LogFilter filter, long afterId, int limit,
+                                       List<Object> args) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(LOG_COLUMNS).append(" FROM transaction_logs WHERE ");
+        if (accountColumn != null) {
+            sql.append(accountColumn).append(" = ? AND ");
+            args.add(filter.accountId());
+        }
+        sql.append("id > ?");
+        args.add(afterId);
+        if (filter.from() != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(filter.from()));
+        }
+        if (filter.to() != null) {
+            sql.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(filter.to()));
+        }
+        sql.append(" ORDER BY id LIMIT ?");
+        args.add(limit);
+        return sql.toString();
+    }
+
+    private static <T> CursorPage<T> toPage(List<T> rows, int size, Function<T, Long> idOf) {
+        // 多取了一行，用来判断是否还有下一页
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+        return new CursorPage<>(content, hasNext ? idOf.apply(content.get(size - 1)) : null, hasNext);
+    }
+
+    private static void checkPageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("每页数量必须在1到" + MAX_PAGE_SIZE + "之间");
+        }
+    }
+
+    private static void checkFilter(LogFilter filter) {
+        if (filter.from() != null && filter.to() != null && !filter.from().isBefore(filter.to())) {
+            throw new IllegalArgumentException("起始时间必须早于结束时间");
+        }
+    }
+
+    private static Account mapAccount(ResultSet rs, int rowNum) throws SQLException {
+        Account account = new Account();
+        account.setId(rs.getLong("id"));
+        account.setAccountNumber(rs.getString("account_number"));
+        account.setAccountName(rs.getString("account_name"));
+        account.setBalance(rs.getBigDecimal("balance"));
+        account.setVersion(rs.getObject("version", Long.class));
+        account.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        account.setBucketCount(rs.getObject("bucket_count", Integer.class));
+        return account;
+    }
+
+    private static TransactionLog mapLog(ResultSet rs, int rowNum) throws SQLException {
+        TransactionLog txLog = new TransactionLog();
+        txLog.setId(rs.getLong("id"));
+        txLog.setFromAccountId(rs.getObject("from_account_id", Long.class));
+        txLog.setToAccountId(rs.getObject("to_account_id", Long.class));
+        txLog.setAmount(rs.getBigDecimal("amount"));
+        txLog.setStatus(rs.getString("status"));
+        txLog.setErrorMessage(rs.getString("error_message"));
+        txLog.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        return txLog;
     }
 }
 
@@ -337,17 +1550,43 @@ class AccountService {
 class TransactionController {
 
     private final AccountService accountService;
+    private final TransferEngine transferEngine;
+    private final TransferLoadTest transferLoadTest;
+    private final LedgerBenchmark ledgerBenchmark;
+    private final ShardedBalanceService shardedBalanceService;
+    private final TransactionQueryService queryService;
 
-    public TransactionController(AccountService accountService) {
+    public TransactionController(AccountService accountService,
+                                 TransferEngine transferEngine,
+                                 TransferLoadTest transferLoadTest,
+                                 LedgerBenchmark ledgerBenchmark,
+                                 ShardedBalanceService shardedBalanceService,
+                                 TransactionQueryService queryService) {
         this.accountService = accountService;
+        this.transferEngine = transferEngine;
+        this.transferLoadTest = transferLoadTest;
+        this.ledgerBenchmark = ledgerBenchmark;
+        this.shardedBalanceService = shardedBalanceService;
+        this.queryService = queryService;
     }
 
     /**
-     * 获取所有账户
+     * 分页查询账户（游标分页）
      */
     @GetMapping("/accounts")
-    public List<Account> getAllAccounts() {
-        return accountService.getAllAccounts();
+    public CursorPage<Account> getAccounts(@RequestParam(required = false) Long cursor,
+                                           @RequestParam(defaultValue = "50") int size) {
+        return queryService.pageAccounts(cursor, size);
+    }
+
+    /**
+     * 导出全部账户（分块流式输出 JSON 数组）
+     */
+    @GetMapping("/accounts/stream")
+    public void streamAccounts(HttpServletResponse response) throws IOException {
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType("application/json");
+        queryService.streamAccounts(response.getWriter());
     }
 
     /**
@@ -359,11 +1598,33 @@ class TransactionController {
     }
 
     /**
-     * 获取所有交易日志
+     * 分页查询交易日志，可按账户（转出或转入）和时间范围过滤
      */
     @GetMapping("/logs")
-    public List<TransactionLog> getAllLogs() {
-        return accountService.getAllLogs();
+    public CursorPage<TransactionLog> getLogs(@RequestParam(required = false) Long accountId,
+                                              @RequestParam(required = false)
+                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                              @RequestParam(required = false)
+                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                              @RequestParam(required = false) Long cursor,
+                                              @RequestParam(defaultValue = "50") int size) {
+        return queryService.pageLogs(new LogFilter(accountId, from, to), cursor, size);
+    }
+
+    /**
+     * 导出交易日志（分块流式输出 JSON 数组），过滤条件同分页查询
+     */
+    @GetMapping("/logs/stream")
+    public void streamLogs(@RequestParam(required = false) Long accountId,
+                           @RequestParam(required = false)
+                           @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                           @RequestParam(required = false)
+                           @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                           HttpServletResponse response) throws IOException {
+        LogFilter filter = new LogFilter(accountId, from, to);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType("application/json");
+        queryService.streamLogs(filter, response.getWriter());
     }
 
     /**
@@ -382,6 +1643,64 @@ class TransactionController {
         }
     }
 
+    /**
+     * 转账（转账引擎：有序加锁 + 冲突重试）
+     */
+    @PostMapping("/transfer/engine")
+    public String transferWithEngine(@RequestParam Long from,
+                                     @RequestParam Long to,
+                                     @RequestParam BigDecimal amount) {
+        try {
+            int attempts = transferEngine.transfer(from, to, amount);
+            return "转账成功：" + amount + "元（尝试" + attempts + "次）";
+        } catch (Exception e) {
+            log.error("转账失败", e);
+            return "转账失败：" + e.getMessage();
+        }
+    }
+
+    /**
+     * 转账压测
+     */
+    @PostMapping("/load-test")
+    public LoadTestReport loadTest(@RequestParam(defaultValue = "engine") String mode,
+                                   @RequestParam(defaultValue = "1000") int transfers,
+                                   @RequestParam(defaultValue = "1000") int concurrency,
+                                   @RequestParam(defaultValue = "100") int accounts,
+                                   @RequestParam(defaultValue = "1.2") double skew,
+                                   @RequestParam(defaultValue = "0") int shardHot,
+                                   @RequestParam(defaultValue = "8") int buckets) throws InterruptedException {
+        return transferLoadTest.run(mode, transfers, concurrency, accounts, skew, shardHot, buckets);
+    }
+
+    /**
+     * 开启/调整热点账户余额分桶
+     */
+    @PostMapping("/accounts/{id}/shard")
+    public Account enableSharding(@PathVariable Long id, @RequestParam(defaultValue = "8") int buckets) {
+        shardedBalanceService.enableSharding(id, buckets);
+        return accountService.getAccountById(id);
+    }
+
+    /**
+     * 关闭余额分桶
+     */
+    @DeleteMapping("/accounts/{id}/shard")
+    public Account disableSharding(@PathVariable Long id) {
+        shardedBalanceService.disableSharding(id);
+        return accountService.getAccountById(id);
+    }
+
+    /**
+     * 交易日志写入对比：逐条 REQUIRES_NEW 提交 vs LedgerWriter 批量提交
+     */
+    @PostMapping("/ledger-benchmark")
+    public LedgerBenchmarkReport ledgerBenchmark(@RequestParam(defaultValue = "5000") int entries,
+                                                 @RequestParam(defaultValue = "32") int threads)
+            throws InterruptedException {
+        return ledgerBenchmark.run(entries, threads);
+    }
+
     /**
      * 测试事务传播行为
      */
@@ -419,11 +1738,14 @@ class TransactionController {
         return """
             === Spring Boot 事务管理示例 ===
 
-            1. 查看所有账户
-               GET http://localhost:8080/api/accounts
+            1. 查看账户（游标分页，下一页带上返回的 nextCursor）
+               GET http://localhost:8080/api/accounts?size=50
+               GET http://localhost:8080/api/accounts?cursor=50&size=50
+               导出全部：GET http://localhost:8080/api/accounts/stream
 
-            2. 查看交易日志
-               GET http://localhost:8080/api/logs
+            2. 查看交易日志（游标分页，可按账户和时间范围过滤）
+               GET http://localhost:8080/api/logs?accountId=1&from=2024-01-01T00:00:00&to=2024-02-01T00:00:00
+               导出：GET http://localhost:8080/api/logs/stream?accountId=1
 
             3. 转账（成功）
                POST http://localhost:8080/api/transfer?from=1&to=2&amount=100
@@ -437,6 +1759,20 @@ class TransactionController {
             6. 测试独立事务
                POST http://localhost:8080/api/test-requires-new
 
+            7. 转账引擎（有序加锁 + 冲突重试）
+               POST http://localhost:8080/api/transfer/engine?from=1&to=2&amount=100
+
+            8. 转账压测（Zipf 热点账户，mode=engine / legacy）
+               POST http://localhost:8080/api/load-test?mode=engine&transfers=1000&concurrency=1000
+
+            9. 热点账户余额分桶（入账分散到多个桶行）
+               POST   http://localhost:8080/api/accounts/2/shard?buckets=8
+               DELETE http://localhost:8080/api/accounts/2/shard
+               压测时对最热的账户分桶：/api/load-test?mode=engine&shardHot=5&buckets=8
+
+            10. 交易日志写入对比（逐条提交 vs 批量提交）
+               POST http://localhost:8080/api/ledger-benchmark?entries=5000&threads=32
+
             核心知识点：
             - @Transactional：声明式事务
             - propagation：事务传播行为
@@ -0,0 +1,107 @@
+package com.example.benchmark;
+
+import com.example.jpa.entity.Product;
+import com.example.jpa.utils.BinaryCacheCodec;
+import com.example.jpa.utils.CacheCodec;
+import com.example.jpa.utils.JsonCacheCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 缓存值编解码基准测试
+ *
+ * 对比三种编解码方式的编码/解码耗时、每次操作分配的内存以及编码后的字节数：
+ * - JSON：原有方式，Jackson 序列化为 JSON 文本
+ * - BINARY：紧凑二进制，不压缩
+ * - BINARY_COMPRESSED：紧凑二进制，超过 256 字节压缩
+ *
+ * nameLength 模拟普通产品和大字段产品（大对象才会触发压缩）
+ *
+ * 运行方式（先打印编码后字节数，再执行 JMH）：
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.example.benchmark.CacheCodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheCodecBenchmark {
+
+    @Param({ "JSON", "BINARY", "BINARY_COMPRESSED" })
+    private String codecName;
+
+    @Param({ "16", "2048" })
+    private int nameLength;
+
+    private CacheCodec codec;
+    private Product product;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = newCodec(codecName);
+        product = newProduct(nameLength);
+        encoded = codec.encode(product);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.encode(product);
+    }
+
+    @Benchmark
+    public Product decode() throws IOException {
+        return codec.decode(encoded, Product.class);
+    }
+
+    private static CacheCodec newCodec(String name) {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        JsonCacheCodec json = new JsonCacheCodec(objectMapper);
+        return switch (name) {
+            case "JSON" -> json;
+            case "BINARY" -> new BinaryCacheCodec(json, 0);
+            case "BINARY_COMPRESSED" -> new BinaryCacheCodec(json, 256);
+            default -> throw new IllegalArgumentException("未知编解码器: " + name);
+        };
+    }
+
+    private static Product newProduct(int nameLength) {
+        StringBuilder name = new StringBuilder(nameLength);
+        while (name.length() < nameLength) {
+            name.append("笔记本电脑 16G/512G ");
+        }
+        Product product = new Product(name.substring(0, nameLength), 6999.00, 100);
+        product.setId(1L);
+        return product;
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        // JMH 不统计字节数，先单独打印一次
+        for (int nameLength : new int[] { 16, 2048 }) {
+            for (String codecName : new String[] { "JSON", "BINARY", "BINARY_COMPRESSED" }) {
+                int size = newCodec(codecName).encode(newProduct(nameLength)).length;
+                System.out.printf("nameLength=%-5d codec=%-18s bytes=%d%n", nameLength, codecName, size);
+            }
+        }
+
+        Options options = new OptionsBuilder()
+                .include(CacheCodecBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
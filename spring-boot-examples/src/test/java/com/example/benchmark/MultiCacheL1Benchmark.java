@@ -0,0 +1,89 @@
+package com.example.benchmark;
+
+import com.example.jpa.entity.Product;
+import com.example.jpa.utils.JsonCacheCodec;
+import com.example.jpa.utils.MultiCacheUtils;
+import com.example.jpa.utils.MultiCacheUtils.LocalCacheMode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * MultiCacheUtils 本地缓存命中基准测试
+ *
+ * 对比三种本地缓存模式下 L1 命中的耗时和每次命中的内存分配：
+ * - SERIALIZED：旧行为，每次命中都解码一次（编解码器为 JSON）
+ * - OBJECT：直接返回缓存对象
+ * - OBJECT_COPY_ON_READ：命中时通过 TokenBuffer 深拷贝
+ *
+ * 运行方式（-prof gc 输出 gc.alloc.rate.norm 即每次命中分配字节数）：
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.example.benchmark.MultiCacheL1Benchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiCacheL1Benchmark {
+
+    private static final String KEY = "product:1";
+
+    @Param({ "SERIALIZED", "OBJECT", "OBJECT_COPY_ON_READ" })
+    private LocalCacheMode mode;
+
+    private MultiCacheUtils multiCacheUtils;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+
+        // MultiCacheUtils 只通过 execute(RedisCallback) 访问 Redis，mock 默认返回 null 即 Redis 未命中：
+        // 第一次 get 走数据库并回填本地缓存，之后测的只是 L1 命中
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+
+        multiCacheUtils = new MultiCacheUtils();
+        ReflectionTestUtils.setField(multiCacheUtils, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(multiCacheUtils, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(multiCacheUtils, "cacheCodec", new JsonCacheCodec(objectMapper));
+        ReflectionTestUtils.setField(multiCacheUtils, "localCacheMode", mode);
+
+        multiCacheUtils.get(KEY, 1800, Product.class, MultiCacheL1Benchmark::newProduct);
+    }
+
+    @Benchmark
+    public Product localHit() {
+        return multiCacheUtils.get(KEY, 1800, Product.class, () -> {
+            throw new IllegalStateException("基准测试期间不应回源");
+        });
+    }
+
+    private static Product newProduct() {
+        Product product = new Product("笔记本电脑", 6999.00, 100);
+        product.setId(1L);
+        return product;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MultiCacheL1Benchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
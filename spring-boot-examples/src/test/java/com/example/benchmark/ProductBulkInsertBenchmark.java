@@ -0,0 +1,155 @@
+package com.example.benchmark;
+
+import com.example.jpa.entity.Product;
+import com.example.jpa.utils.JpaHelper;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product 批量插入基准测试（H2 内存库）
+ *
+ * - PER_ROW_IDENTITY：原有写法，IDENTITY 主键，每条一个事务调用 persist（等同逐条调用 JpaHelper.save）
+ * - BATCHED_SEQUENCE：JpaHelper.saveAll，序列 pooled 主键 + JDBC 批处理，每 50 条 flush/clear
+ *
+ * 每次迭代前清空表，实体按需生成，不在内存里攒 100 万个对象
+ * 不启动 Spring 容器，直接用 Hibernate 建 SessionFactory，只测 ORM + JDBC 的写入开销
+ *
+ * 运行方式：
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.example.benchmark.ProductBulkInsertBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class ProductBulkInsertBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Param({ "10000", "100000", "1000000" })
+    private int rows;
+
+    @Param({ "PER_ROW_IDENTITY", "BATCHED_SEQUENCE" })
+    private String mode;
+
+    private SessionFactory sessionFactory;
+    private EntityManager entityManager;
+    private JpaHelper jpaHelper;
+
+    /**
+     * 原有映射：IDENTITY 主键，Hibernate 每次 persist 立即执行 INSERT 拿回ID，无法批处理
+     */
+    @Entity
+    @Table(name = "product_identity")
+    public static class IdentityProduct {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        Long id;
+        @Column(nullable = false, length = 100)
+        String name;
+        @Column(nullable = false)
+        Double price;
+        @Column(nullable = false)
+        Integer stock;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Product.class)
+                .addAnnotatedClass(IdentityProduct.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.connection.password", "")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE))
+                .setProperty("hibernate.order_inserts", "true")
+                .buildSessionFactory();
+        entityManager = sessionFactory.createEntityManager();
+        jpaHelper = new JpaHelper();
+        ReflectionTestUtils.setField(jpaHelper, "entityManager", entityManager);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        entityManager.getTransaction().begin();
+        entityManager.createNativeQuery("TRUNCATE TABLE product").executeUpdate();
+        entityManager.createNativeQuery("TRUNCATE TABLE product_identity").executeUpdate();
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public int insert() {
+        return "PER_ROW_IDENTITY".equals(mode) ? insertPerRow() : insertBatched();
+    }
+
+    private int insertPerRow() {
+        for (int i = 0; i < rows; i++) {
+            IdentityProduct product = new IdentityProduct();
+            product.name = "商品-" + i;
+            product.price = 10.0 + i % 1000;
+            product.stock = i % 500;
+            entityManager.getTransaction().begin();
+            entityManager.persist(product);
+            entityManager.getTransaction().commit();
+            entityManager.clear();
+        }
+        return rows;
+    }
+
+    private int insertBatched() {
+        // 脱离 Spring 容器时 @Transactional 不生效，手动开启事务包住整个 saveAll
+        entityManager.getTransaction().begin();
+        int saved = jpaHelper.saveAll(() -> new Iterator<Product>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < rows;
+            }
+
+            @Override
+            public Product next() {
+                int n = i++;
+                return new Product("商品-" + n, 10.0 + n % 1000, n % 500);
+            }
+        }, BATCH_SIZE);
+        entityManager.getTransaction().commit();
+        return saved;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ProductBulkInsertBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
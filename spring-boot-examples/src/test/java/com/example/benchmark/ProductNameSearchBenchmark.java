@@ -0,0 +1,153 @@
+package com.example.benchmark;
+
+import com.example.jpa.utils.NgramIndex;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 产品名称搜索基准测试（100 万产品）
+ *
+ * - INDEX：NgramIndex 二元倒排索引，返回前 20 个排好序的ID
+ * - SCAN：内存里逐个 contains，相当于没有索引的 LIKE '%x%'，但没有数据库开销
+ * - H2_LIKE：H2 内存库 SELECT id ... WHERE LOWER(name) LIKE ? LIMIT 20（原有查询方式）
+ *
+ * SCAN 和 H2_LIKE 凑够 20 条就停止且不排序，对它们是偏有利的比较
+ * query 覆盖不同选择度：精确型号（命中极少）、品牌+品类（约 1%）、单个品类词（约 10%）
+ *
+ * 运行方式：
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.example.benchmark.ProductNameSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class ProductNameSearchBenchmark {
+
+    private static final int PRODUCTS = 1_000_000;
+    private static final int LIMIT = 20;
+    private static final String[] BRANDS = { "联想", "苹果", "华为", "小米", "戴尔", "惠普", "三星", "索尼", "佳能", "罗技" };
+    private static final String[] CATEGORIES = { "笔记本电脑", "智能手机", "平板电脑", "无线鼠标", "机械键盘", "显示器", "耳机",
+            "相机", "路由器", "移动电源" };
+    private static final String[] SPECS = { "Pro", "Max", "Air", "Mini", "Plus", "Lite", "Ultra", "SE", "X", "S" };
+
+    @Param({ "INDEX", "SCAN", "H2_LIKE" })
+    private String mode;
+
+    @Param({ "华为智能手机 max 2024", "罗技机械键盘", "鼠标" })
+    private String query;
+
+    private NgramIndex index;
+    private String[] names;
+    private Connection connection;
+    private PreparedStatement likeStatement;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        names = new String[PRODUCTS];
+        Random random = new Random(42);
+        for (int i = 0; i < PRODUCTS; i++) {
+            names[i] = BRANDS[random.nextInt(BRANDS.length)] + CATEGORIES[random.nextInt(CATEGORIES.length)] + " "
+                    + SPECS[random.nextInt(SPECS.length)] + " " + (1000 + random.nextInt(9000)) + "款";
+        }
+        switch (mode) {
+            case "INDEX" -> {
+                index = new NgramIndex(2);
+                for (int i = 0; i < PRODUCTS; i++) {
+                    index.put(i + 1, names[i]);
+                }
+            }
+            case "H2_LIKE" -> setUpH2();
+            default -> {
+            }
+        }
+    }
+
+    private void setUpH2() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:name_search;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE product (id BIGINT PRIMARY KEY, name VARCHAR(100) NOT NULL)");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO product VALUES (?, ?)")) {
+            for (int i = 0; i < PRODUCTS; i++) {
+                insert.setLong(1, i + 1);
+                insert.setString(2, names[i]);
+                insert.addBatch();
+                if ((i + 1) % 10_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        likeStatement = connection.prepareStatement("SELECT id FROM product WHERE LOWER(name) LIKE ? LIMIT " + LIMIT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (connection != null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+            }
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public List<Long> search() throws SQLException {
+        return switch (mode) {
+            case "INDEX" -> index.search(query, false, LIMIT);
+            case "SCAN" -> scan();
+            default -> like();
+        };
+    }
+
+    private List<Long> scan() {
+        String q = query.toLowerCase(Locale.ROOT);
+        List<Long> ids = new ArrayList<>(LIMIT);
+        for (int i = 0; i < names.length && ids.size() < LIMIT; i++) {
+            if (names[i].toLowerCase(Locale.ROOT).contains(q)) {
+                ids.add(i + 1L);
+            }
+        }
+        return ids;
+    }
+
+    private List<Long> like() throws SQLException {
+        likeStatement.setString(1, "%" + query.toLowerCase(Locale.ROOT) + "%");
+        List<Long> ids = new ArrayList<>(LIMIT);
+        try (ResultSet rs = likeStatement.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        }
+        return ids;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ProductNameSearchBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
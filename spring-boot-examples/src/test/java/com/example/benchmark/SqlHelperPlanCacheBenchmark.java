@@ -0,0 +1,95 @@
+package com.example.benchmark;
+
+import com.example.jpa.utils.SqlHelper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SqlHelper.pageQuery 自身开销基准测试（不含数据库耗时）
+ *
+ * EntityManager / Query 用动态代理实现，所有方法立即返回，测出来的只有
+ * SQL 改写、排序字段校验、COUNT SQL 生成和参数绑定的开销：
+ * - planCache=true：命中查询计划缓存
+ * - planCache=false：每次重新改写（旧行为）
+ *
+ * 运行方式：
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.example.benchmark.SqlHelperPlanCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlHelperPlanCacheBenchmark {
+
+    private static final String SQL = "SELECT p.id, p.name, p.price, p.stock FROM product p "
+            + "WHERE p.price BETWEEN :priceStart AND :priceEnd AND p.name LIKE :name";
+
+    @Param({ "true", "false" })
+    private boolean planCache;
+
+    private SqlHelper sqlHelper;
+    private Map<String, Object> params;
+    private Pageable pageable;
+
+    @Setup
+    public void setUp() {
+        sqlHelper = new SqlHelper();
+        ReflectionTestUtils.setField(sqlHelper, "entityManager", stubEntityManager());
+        ReflectionTestUtils.setField(sqlHelper, "planCacheEnabled", planCache);
+        params = Map.of("priceStart", 100.0, "priceEnd", 5000.0, "name", "%电脑%");
+        pageable = PageRequest.of(3, 20, Sort.by(Sort.Order.desc("p.price"), Sort.Order.asc("p.id")));
+    }
+
+    @TearDown
+    public void tearDown() {
+        sqlHelper.shutdown();
+    }
+
+    @Benchmark
+    public Page<Object[]> pageQuery() {
+        return sqlHelper.pageQuery(SQL, params, pageable);
+    }
+
+    /**
+     * 所有方法立即返回的 EntityManager：createNativeQuery 返回空结果的 Query
+     */
+    private static EntityManager stubEntityManager() {
+        Query query = (Query) Proxy.newProxyInstance(Query.class.getClassLoader(), new Class<?>[] { Query.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getResultList" -> List.of();
+                    case "getSingleResult" -> 0L;
+                    default -> method.getReturnType().isInstance(proxy) ? proxy : null;
+                });
+        return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[] { EntityManager.class },
+                (proxy, method, args) -> method.getName().equals("createNativeQuery") ? query : null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SqlHelperPlanCacheBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.jpa.entity.Product;
+import com.example.jpa.repository.ProductRepository;
+import com.example.jpa.service.ProductService;
+import com.example.jpa.utils.JsonCacheCodec;
+import com.example.jpa.utils.LongBloomFilter;
+import com.example.jpa.utils.MultiCacheUtils;
+import com.example.jpa.utils.RedisUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * ProductService.findById 单元测试类（Redis、数据库均为 mock）
+ *
+ * 测试范围：
+ * 1. 布隆过滤器拦截不存在的ID，不访问 Redis 和数据库
+ * 2. 数据库查不到时缓存空值，再次查询不回源
+ * 3. 布隆过滤器重建期间新建的ID不会被新过滤器拦截
+ * 4. 新建产品放入旧过滤器时恰好完成一次重建，新ID也要进入新过滤器
+ */
+@DisplayName("ProductService 单元测试")
+class ProductServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    private final JsonCacheCodec codec = new JsonCacheCodec(objectMapper);
+    private final Map<String, byte[]> redisData = new ConcurrentHashMap<>();
+
+    private ProductRepository productRepository;
+    private RedisUtils redisUtils;
+    private ProductService productService;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        redisUtils = mock(RedisUtils.class);
+        when(redisUtils.getBytes(anyString())).thenAnswer(inv -> redisData.get(inv.<String>getArgument(0)));
+        doAnswer(inv -> redisData.put(inv.getArgument(0),
+                inv.<String>getArgument(1).getBytes(StandardCharsets.UTF_8)))
+                .when(redisUtils).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+
+        productService = new ProductService();
+        ReflectionTestUtils.setField(productService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(productService, "redisUtils", redisUtils);
+        ReflectionTestUtils.setField(productService, "multiCacheUtils", mock(MultiCacheUtils.class));
+        ReflectionTestUtils.setField(productService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(productService, "cacheCodec", codec);
+    }
+
+    @Test
+    @DisplayName("布隆过滤器判定不存在_不应访问Redis和数据库")
+    void testUnknownId_ShouldBeRejectedByBloomFilter() {
+        when(productRepository.findAllIds()).thenReturn(List.of(1L, 2L, 3L));
+        productService.initProductIdFilter();
+
+        assertNull(productService.findById(404L));
+        verifyNoInteractions(redisUtils);
+        verify(productRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("数据库查不到_应缓存空值且再次查询不回源")
+    void testMissingId_ShouldCacheNullSentinel() {
+        when(productRepository.findById(42L)).thenReturn(Optional.empty());
+
+        assertNull(productService.findById(42L));
+        assertNull(productService.findById(42L));
+
+        verify(redisUtils).set("product:42", "null", 60, TimeUnit.SECONDS);
+        verify(productRepository, times(1)).findById(42L);
+    }
+
+    @Test
+    @DisplayName("重建布隆过滤器期间新建的产品_重建后应能查到")
+    void testRebuild_ShouldKeepIdsCreatedDuringRebuild() throws Exception {
+        Product created = new Product("新品", 99.0, 10);
+        created.setId(5000L);
+        when(productRepository.save(any(Product.class))).thenReturn(created);
+        // 全量ID已经读出、新过滤器还没切换时，另一个请求新建了产品
+        when(productRepository.findAllIds()).thenAnswer(inv -> {
+            productService.createProduct("新品", 99.0, 10);
+            return List.of(1L, 2L, 3L);
+        });
+        redisData.put("product:5000", codec.encode(created));
+
+        productService.initProductIdFilter();
+
+        Product found = productService.findById(5000L);
+        assertNotNull(found);
+        assertEquals("新品", found.getName());
+        assertNull(productService.findById(404L));
+    }
+
+    @Test
+    @DisplayName("新建产品放入旧过滤器时重建恰好完成_重建后应能查到")
+    void testCreateInterleavedWithFinishingRebuild_ShouldReachNewFilter() throws Exception {
+        when(productRepository.findAllIds()).thenReturn(List.of(1L, 2L, 3L));
+        productService.initProductIdFilter();
+        Product created = new Product("新品", 99.0, 10);
+        created.setId(5000L);
+        when(productRepository.save(any(Product.class))).thenReturn(created);
+        redisData.put("product:5000", codec.encode(created));
+
+        // 新ID放进旧过滤器的同时，一次完整的重建跑完并切换了过滤器（重建读到的全量ID里还没有它）
+        LongBloomFilter oldFilter = spy(
+                (LongBloomFilter) ReflectionTestUtils.getField(productService, "productIdFilter"));
+        ReflectionTestUtils.setField(productService, "productIdFilter", oldFilter);
+        doAnswer(inv -> {
+            productService.initProductIdFilter();
+            return inv.callRealMethod();
+        }).when(oldFilter).put(5000L);
+
+        productService.createProduct("新品", 99.0, 10);
+
+        assertNotSame(oldFilter, ReflectionTestUtils.getField(productService, "productIdFilter"));
+        assertNotNull(productService.findById(5000L));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.jpa.entity.Product;
+import com.example.jpa.utils.BinaryCacheCodec;
+import com.example.jpa.utils.JsonCacheCodec;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BinaryCacheCodec 单元测试类
+ *
+ * 测试范围：
+ * 1. 实体对象编解码（含 null 字段、时间字段）
+ * 2. 超过阈值压缩
+ * 3. 兼容 JSON 写入的旧数据和空值缓存
+ * 4. 不支持的类型回退到 JSON
+ * 5. 损坏数据（含非法时间值）抛出 IOException
+ * 6. 带 Jackson 注解的类型回退到 JSON，注解照常生效
+ */
+@DisplayName("BinaryCacheCodec 单元测试")
+class BinaryCacheCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    private final JsonCacheCodec jsonCodec = new JsonCacheCodec(objectMapper);
+    private final BinaryCacheCodec codec = new BinaryCacheCodec(jsonCodec, 256);
+
+    @Test
+    @DisplayName("实体编解码_字段应完全一致且比JSON小")
+    void testRoundTrip_ShouldKeepFieldsAndBeSmallerThanJson() throws IOException {
+        Product product = newProduct("笔记本电脑");
+        product.setUpdatedAt(null);
+
+        byte[] bytes = codec.encode(product);
+        Product decoded = codec.decode(bytes, Product.class);
+
+        assertEquals(product.getId(), decoded.getId());
+        assertEquals(product.getName(), decoded.getName());
+        assertEquals(product.getPrice(), decoded.getPrice());
+        assertEquals(product.getStock(), decoded.getStock());
+        assertEquals(product.getCreatedAt(), decoded.getCreatedAt());
+        // 构造方法会给 updatedAt 赋默认值，解码后必须还原为 null
+        assertNull(decoded.getUpdatedAt());
+        assertTrue(bytes.length < jsonCodec.encode(product).length);
+    }
+
+    @Test
+    @DisplayName("超过阈值_应压缩并能正确解码")
+    void testLargeValue_ShouldCompress() throws IOException {
+        Product product = newProduct("笔记本电脑".repeat(100));
+
+        byte[] bytes = codec.encode(product);
+
+        assertTrue(bytes.length < product.getName().getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(product.getName(), codec.decode(bytes, Product.class).getName());
+    }
+
+    @Test
+    @DisplayName("JSON写入的旧数据和空值缓存_应能解码")
+    void testLegacyJson_ShouldDecode() throws IOException {
+        Product product = newProduct("笔记本电脑");
+
+        Product decoded = codec.decode(jsonCodec.encode(product), Product.class);
+
+        assertEquals(product.getName(), decoded.getName());
+        assertNull(codec.decode("null".getBytes(StandardCharsets.UTF_8), Product.class));
+    }
+
+    @Test
+    @DisplayName("不支持的类型_应回退到JSON")
+    void testUnsupportedType_ShouldFallbackToJson() throws IOException {
+        List<String> names = List.of("a".repeat(300), "b");
+
+        assertEquals(names, codec.decode(codec.encode(names), List.class));
+        assertEquals("hello", codec.decode(codec.encode("hello"), String.class));
+    }
+
+    @Test
+    @DisplayName("损坏数据_应抛出IOException")
+    void testCorruptedData_ShouldThrowIOException() throws IOException {
+        byte[] bytes = codec.encode(newProduct("笔记本电脑"));
+
+        assertThrows(IOException.class, () -> codec.decode(Arrays.copyOf(bytes, bytes.length - 3), Product.class));
+    }
+
+    @Test
+    @DisplayName("非法时间值_应抛出IOException而不是DateTimeException")
+    void testInvalidTimeValue_ShouldThrowIOException() throws IOException {
+        Shift shift = new Shift();
+        shift.start = LocalTime.NOON;
+        // 帧头 6 字节 + null 位图 1 字节，之后是 start 的纳秒数，改成超过一天的值
+        byte[] bytes = Arrays.copyOf(codec.encode(shift), 15);
+        Arrays.fill(bytes, 7, 14, (byte) 0xFF);
+        bytes[14] = 0x7F;
+
+        assertThrows(IOException.class, () -> codec.decode(bytes, Shift.class));
+    }
+
+    @Test
+    @DisplayName("带Jackson注解的类型_应回退到JSON且@JsonIgnore生效")
+    void testJacksonAnnotatedType_ShouldFallbackToJson() throws IOException {
+        Account account = new Account();
+        account.name = "alice";
+        account.password = "secret";
+
+        byte[] bytes = codec.encode(account);
+        Account decoded = codec.decode(bytes, Account.class);
+
+        assertEquals('{', bytes[0]);
+        assertEquals("alice", decoded.name);
+        assertNull(decoded.password);
+    }
+
+    private static Product newProduct(String name) {
+        Product product = new Product(name, 6999.00, 100);
+        product.setId(1L);
+        return product;
+    }
+
+    static class Shift {
+        private LocalTime start;
+    }
+
+    static class Account {
+        public String name;
+        @JsonIgnore
+        public String password;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.jpa.utils.IndexAdvisor;
+import com.example.jpa.utils.IndexAdvisor.IndexAdvice;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IndexAdvisor 单元测试类（H2 内存库）
+ *
+ * 测试范围：
+ * 1. 全表扫描的查询给出建索引语句
+ * 2. 建索引后不再报告全表扫描
+ * 3. 前置通配符 LIKE 只给出提示
+ * 4. 非查询语句不统计
+ */
+@DisplayName("IndexAdvisor 单元测试")
+class IndexAdvisorTest {
+
+    private static final String STOCK_SQL = "SELECT * FROM product p WHERE p.stock < ? ORDER BY p.stock";
+
+    private IndexAdvisor advisor;
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        advisor = new IndexAdvisor(0, 100);
+        dataSource = advisor.wrap(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        execute("CREATE TABLE product (id BIGINT PRIMARY KEY, name VARCHAR(100), price DOUBLE, stock INT)");
+        execute("INSERT INTO product SELECT X, 'p' || X, X, MOD(X, 50) FROM SYSTEM_RANGE(1, 1000)");
+    }
+
+    @Test
+    @DisplayName("全表扫描_应建议索引且不统计非查询语句")
+    void testFullScan_ShouldSuggestIndex() throws SQLException {
+        query(STOCK_SQL, 5);
+        query(STOCK_SQL, 10);
+
+        List<IndexAdvice> report = advisor.report();
+
+        assertEquals(1, report.size());
+        IndexAdvice advice = report.get(0);
+        assertEquals(2, advice.executions());
+        assertTrue(advice.fullScan());
+        assertEquals(List.of("CREATE INDEX idx_product_stock ON product(stock)"), advice.suggestions());
+    }
+
+    @Test
+    @DisplayName("建索引后_不应再报告全表扫描")
+    void testIndexed_ShouldNotReportFullScan() throws SQLException {
+        execute("CREATE INDEX idx_product_stock ON product(stock)");
+        query(STOCK_SQL, 5);
+
+        IndexAdvice advice = advisor.report().get(0);
+
+        assertFalse(advice.fullScan());
+        assertTrue(advice.suggestions().isEmpty());
+    }
+
+    @Test
+    @DisplayName("前置通配符LIKE_应只给出提示")
+    void testLeadingWildcard_ShouldOnlyAddNote() throws SQLException {
+        query("SELECT * FROM product p WHERE p.name LIKE ?", "%5%");
+
+        IndexAdvice advice = advisor.report().get(0);
+
+        assertTrue(advice.fullScan());
+        assertTrue(advice.suggestions().isEmpty());
+        assertFalse(advice.notes().isEmpty());
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private void query(String sql, Object param) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setObject(1, param);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    rs.getLong(1);
+                }
+            }
+        }
+    }
+}
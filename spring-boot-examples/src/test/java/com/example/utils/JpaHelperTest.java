@@ -0,0 +1,148 @@
+package com.example.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.example.jpa.entity.Product;
+import com.example.jpa.utils.JpaHelper;
+import com.example.jpa.utils.JpaHelper.SearchCondition;
+import com.example.jpa.utils.JpaHelper.SearchOperator;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.SingularAttribute;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * JpaHelper 单元测试类
+ *
+ * 测试范围：
+ * 1. 相同查询形状只编译一次，条件值作为参数绑定
+ * 2. 排序编译进 JPQL，COUNT 不带排序
+ * 3. 未知字段拒绝编译
+ * 4. IN 空集合
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("JpaHelper 单元测试")
+class JpaHelperTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private Metamodel metamodel;
+
+    @Mock
+    private EntityType<Product> entityType;
+
+    @Mock
+    private SingularAttribute<Product, String> nameAttribute;
+
+    @Mock
+    private SingularAttribute<Product, Double> priceAttribute;
+
+    @Mock
+    private TypedQuery<Product> query;
+
+    @Mock
+    private TypedQuery<Long> countQuery;
+
+    @InjectMocks
+    private JpaHelper jpaHelper;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(entityManager.getMetamodel()).thenReturn(metamodel);
+        lenient().doReturn(entityType).when(metamodel).entity(Product.class);
+        lenient().when(entityType.getName()).thenReturn("Product");
+        lenient().doReturn(nameAttribute).when(entityType).getAttribute("name");
+        lenient().doReturn(priceAttribute).when(entityType).getAttribute("price");
+        lenient().when(nameAttribute.getName()).thenReturn("name");
+        lenient().doReturn(String.class).when(nameAttribute).getJavaType();
+        lenient().when(priceAttribute.getName()).thenReturn("price");
+        lenient().doReturn(Double.class).when(priceAttribute).getJavaType();
+    }
+
+    @Test
+    @DisplayName("相同查询形状_只编译一次并绑定参数")
+    void testSameShape_ShouldCompileOnceAndBindValues() {
+        when(entityManager.createQuery(anyString(), eq(Product.class))).thenReturn(query);
+        when(query.setMaxResults(anyInt())).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of());
+
+        jpaHelper.listQuery(Product.class, List.of(
+                SearchCondition.of("name", SearchOperator.LIKE, "电脑"),
+                SearchCondition.of("price", SearchOperator.GTE, 100.0)));
+        jpaHelper.listQuery(Product.class, List.of(
+                SearchCondition.of("name", SearchOperator.LIKE, "手机"),
+                SearchCondition.of("price", SearchOperator.GTE, 200.0)));
+
+        verify(entityManager, times(2))
+                .createQuery("select e from Product e where e.name like :p0 and e.price >= :p1", Product.class);
+        verify(metamodel, times(1)).entity(Product.class);
+        verify(query).setParameter("p0", "%电脑%");
+        verify(query).setParameter("p1", 100.0);
+        verify(query).setParameter("p0", "%手机%");
+        verify(query).setParameter("p1", 200.0);
+        assertEquals(1, jpaHelper.getQueryShapeCacheStats().hitCount());
+    }
+
+    @Test
+    @DisplayName("分页查询_排序应编译进JPQL且COUNT不带排序")
+    void testPageQuery_ShouldCompileSortAndCount() {
+        when(entityManager.createQuery(anyString(), eq(Product.class))).thenReturn(query);
+        when(entityManager.createQuery(anyString(), eq(Long.class))).thenReturn(countQuery);
+        when(query.setFirstResult(anyInt())).thenReturn(query);
+        when(query.setMaxResults(anyInt())).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of());
+        when(countQuery.getSingleResult()).thenReturn(5L);
+
+        Page<Product> page = jpaHelper.pageQuery(Product.class,
+                List.of(SearchCondition.of("name", SearchOperator.EQ, "笔记本")),
+                PageRequest.of(0, 10, Sort.by(Sort.Order.desc("price"))));
+
+        assertEquals(5, page.getTotalElements());
+        verify(entityManager).createQuery("select e from Product e where e.name = :p0 order by e.price desc",
+                Product.class);
+        verify(entityManager).createQuery("select count(e) from Product e where e.name = :p0", Long.class);
+        verify(countQuery).setParameter("p0", "笔记本");
+    }
+
+    @Test
+    @DisplayName("未知字段_应抛出异常且不生成查询")
+    void testUnknownField_ShouldThrowException() {
+        doThrow(new IllegalArgumentException("无此属性")).when(entityType).getAttribute("name or 1=1");
+
+        List<SearchCondition> conditions = List.of(SearchCondition.of("name or 1=1", SearchOperator.EQ, "x"));
+
+        assertThrows(RuntimeException.class, () -> jpaHelper.listQuery(Product.class, conditions));
+        verify(entityManager, never()).createQuery(anyString(), eq(Product.class));
+    }
+
+    @Test
+    @DisplayName("IN空集合_应生成恒假条件且不绑定参数")
+    void testEmptyIn_ShouldRenderFalseCondition() {
+        when(entityManager.createQuery(anyString(), eq(Product.class))).thenReturn(query);
+        when(query.setMaxResults(anyInt())).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of());
+
+        jpaHelper.listQuery(Product.class, List.of(SearchCondition.of("name", SearchOperator.IN, List.of())));
+
+        verify(entityManager).createQuery("select e from Product e where 1 = 0", Product.class);
+        verify(query, never()).setParameter(anyString(), any());
+    }
+}
@@ -0,0 +1,405 @@
+package com.example.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.jpa.utils.CacheInvalidationBus;
+import com.example.jpa.utils.BinaryCacheCodec;
+import com.example.jpa.utils.InProcessInvalidationTransport;
+import com.example.jpa.utils.JsonCacheCodec;
+import com.example.jpa.utils.MultiCacheUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * MultiCacheUtils 单元测试类
+ *
+ * 测试范围：
+ * 1. 本地缓存命中
+ * 2. 跨节点本地缓存失效（进程内通道模拟两个节点，共用一个内存版 Redis）
+ * 3. 迟到的失效消息不会淘汰更新的数据
+ * 4. 并发未命中只回源一次（单飞）
+ * 5. 临近过期只触发一次异步刷新（XFetch）；刷新时数据已删除则清掉缓存
+ * 6. 批量查询：本地缓存 → MGET → 数据库 → 管道回写，保持ID顺序，跳过不存在的ID
+ */
+@DisplayName("MultiCacheUtils 单元测试")
+class MultiCacheUtilsTest {
+
+    private static final String KEY = "product:1";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BinaryCacheCodec codec = new BinaryCacheCodec(new JsonCacheCodec(objectMapper), 1024);
+    private FakeRedis redis;
+    private InProcessInvalidationTransport transport;
+    private CacheInvalidationBus busA;
+    private CacheInvalidationBus busB;
+    private MultiCacheUtils nodeA;
+    private MultiCacheUtils nodeB;
+
+    @BeforeEach
+    void setUp() {
+        redis = new FakeRedis();
+        transport = new InProcessInvalidationTransport();
+        busA = new CacheInvalidationBus(transport, objectMapper, 100, 60_000);
+        busB = new CacheInvalidationBus(transport, objectMapper, 100, 60_000);
+        nodeA = newNode(busA);
+        nodeB = newNode(busB);
+    }
+
+    @AfterEach
+    void tearDown() {
+        busA.shutdown();
+        busB.shutdown();
+    }
+
+    @Test
+    @DisplayName("本地缓存命中_不应再次回源")
+    void testLocalHit_ShouldNotCallSupplierAgain() {
+        AtomicInteger loads = new AtomicInteger();
+
+        nodeB.get(KEY, 60, String.class, () -> "v" + loads.incrementAndGet());
+        String value = nodeB.get(KEY, 60, String.class, () -> "v" + loads.incrementAndGet());
+
+        assertEquals("v1", value);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("其他节点删除缓存_本节点本地缓存应失效")
+    void testRemoteDelete_ShouldInvalidateLocalCache() {
+        AtomicInteger loads = new AtomicInteger();
+        nodeB.get(KEY, 60, String.class, () -> "v" + loads.incrementAndGet());
+
+        nodeA.delete(KEY);
+        busA.flush();
+
+        String value = nodeB.get(KEY, 60, String.class, () -> "v" + loads.incrementAndGet());
+        assertEquals("v2", value);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("迟到的失效消息_不应淘汰之后加载的数据")
+    void testLateInvalidation_ShouldKeepFresherEntry() {
+        AtomicInteger loads = new AtomicInteger();
+
+        // A 删除后版本号已递增，失效消息还没送到 B；B 此时加载读到的是新版本号
+        nodeA.delete(KEY);
+        nodeB.get(KEY, 60, String.class, () -> "v" + loads.incrementAndGet());
+        busA.flush();
+
+        String value = nodeB.get(KEY, 60, String.class, () -> "v" + loads.incrementAndGet());
+        assertEquals("v1", value);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("并发未命中_数据库只应查询一次")
+    void testConcurrentMiss_ShouldLoadOnce() throws Exception {
+        int threads = 16;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<String> dbSupplier = () -> {
+            loads.incrementAndGet();
+            awaitQuietly(release);
+            return "v1";
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return nodeB.get(KEY, 60, String.class, dbSupplier);
+                }));
+            }
+            start.countDown();
+            // 第一个线程进入回源后停住，留时间让其余线程排到同一个加载上
+            waitUntil(() -> loads.get() == 1);
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("v1", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("临近过期_应只触发一次异步刷新")
+    void testNearExpiry_ShouldRefreshOnceInBackground() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<String> dbSupplier = () -> {
+            int n = loads.incrementAndGet();
+            if (n > 1) {
+                refreshing.countDown();
+                awaitQuietly(release);
+            }
+            return "v" + n;
+        };
+
+        assertEquals("v1", nodeB.get(KEY, 60, String.class, dbSupplier));
+        // 时钟拨到 Redis 过期时间点，进入提前刷新窗口
+        advanceClock(nodeB, Duration.ofSeconds(60));
+        for (int i = 0; i < 50; i++) {
+            // 刷新进行中，继续返回旧值，也不再提交新的刷新
+            assertEquals("v1", nodeB.get(KEY, 60, String.class, dbSupplier));
+        }
+        assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        waitUntil(() -> "v2".equals(redisValue(KEY)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("提前刷新时数据已删除_应删除缓存且不再提供旧值")
+    void testRefreshFindsRowGone_ShouldDeleteCache() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<String> dbSupplier = () -> loads.incrementAndGet() == 1 ? "v1" : null;
+
+        assertEquals("v1", nodeB.get(KEY, 60, String.class, dbSupplier));
+        advanceClock(nodeB, Duration.ofSeconds(60));
+        // 触发刷新的这次读取仍返回旧值
+        assertEquals("v1", nodeB.get(KEY, 60, String.class, dbSupplier));
+
+        waitUntil(() -> !redis.data.containsKey(KEY));
+        assertNull(nodeB.get(KEY, 60, String.class, dbSupplier));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @DisplayName("批量查询_应按本地缓存→MGET→数据库顺序补齐并保持ID顺序")
+    void testGetAll_ShouldFillFromEachTierInOrder() throws IOException {
+        nodeB.get("product:1", 60, String.class, () -> "p1");
+        redis.data.put("product:2", codec.encode("p2"));
+        redis.mgets.clear();
+        List<Collection<Long>> dbCalls = new ArrayList<>();
+
+        Map<Long, String> result = nodeB.getAll(List.of(3L, 1L, 4L, 2L), id -> "product:" + id, 60,
+                String.class, ids -> {
+                    dbCalls.add(List.copyOf(ids));
+                    return ids.contains(3L) ? Map.of(3L, "p3") : Map.of();
+                });
+
+        assertEquals(List.of(3L, 1L, 2L), new ArrayList<>(result.keySet()));
+        assertEquals(List.of("p3", "p1", "p2"), new ArrayList<>(result.values()));
+        // 本地命中的 key 不查 Redis，其余 key 一次 MGET
+        assertEquals(1, redis.mgets.size());
+        assertFalse(redis.mgets.get(0).contains("product:1"));
+        assertTrue(redis.mgets.get(0).containsAll(List.of("product:2", "product:3", "product:4")));
+        // Redis 也没有的ID一次批量回源，查到的通过一次管道回写
+        assertEquals(List.of(List.of(3L, 4L)), dbCalls);
+        assertEquals(1, redis.pipelines.get());
+        assertEquals("p3", redisValue("product:3"));
+        assertFalse(redis.data.containsKey("product:4"));
+    }
+
+    @Test
+    @DisplayName("批量查询_已加载的ID应命中本地缓存_只有不存在的ID回源")
+    void testGetAll_ShouldServeLoadedIdsFromLocalCache() throws IOException {
+        redis.data.put("product:2", codec.encode("p2"));
+        nodeB.getAll(List.of(1L, 2L), id -> "product:" + id, 60, String.class, ids -> Map.of(1L, "p1"));
+        redis.mgets.clear();
+        List<Collection<Long>> dbCalls = new ArrayList<>();
+
+        Map<Long, String> result = nodeB.getAll(List.of(2L, 4L, 1L), id -> "product:" + id, 60,
+                String.class, ids -> {
+                    dbCalls.add(List.copyOf(ids));
+                    return Map.of();
+                });
+
+        assertEquals(List.of(2L, 1L), new ArrayList<>(result.keySet()));
+        assertEquals(1, redis.mgets.size());
+        assertTrue(redis.mgets.get(0).contains("product:4"));
+        assertFalse(redis.mgets.get(0).contains("product:1"));
+        assertFalse(redis.mgets.get(0).contains("product:2"));
+        assertEquals(List.of(List.of(4L)), dbCalls);
+    }
+
+    private String redisValue(String key) {
+        byte[] bytes = redis.data.get(key);
+        try {
+            return bytes == null ? null : codec.decode(bytes, String.class);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void advanceClock(MultiCacheUtils node, Duration offset) {
+        ReflectionTestUtils.setField(node, "clock", Clock.offset(Clock.systemUTC(), offset));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("等待超时");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private MultiCacheUtils newNode(CacheInvalidationBus bus) {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(inv -> ((RedisCallback<?>) inv.getArgument(0)).doInRedis(redis.connection));
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            ((RedisCallback<?>) inv.getArgument(0)).doInRedis(redis.connection);
+            redis.pipelines.incrementAndGet();
+            return List.of();
+        });
+        when(redisTemplate.delete(anyString())).thenAnswer(inv -> redis.data.remove(inv.getArgument(0)) != null);
+
+        MultiCacheUtils node = new MultiCacheUtils();
+        ReflectionTestUtils.setField(node, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(node, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(node, "cacheCodec", codec);
+        ReflectionTestUtils.setField(node, "invalidationBus", bus);
+        ReflectionTestUtils.invokeMethod(node, "registerInvalidationListener");
+        return node;
+    }
+
+    /**
+     * 内存版 Redis：只实现 MultiCacheUtils 在连接回调里用到的命令，多个节点共用同一份数据
+     */
+    private static class FakeRedis {
+
+        final Map<String, byte[]> data = new ConcurrentHashMap<>();
+        final List<List<String>> mgets = new CopyOnWriteArrayList<>();
+        final AtomicInteger pipelines = new AtomicInteger();
+        final RedisConnection connection;
+
+        FakeRedis() {
+            RedisStringCommands strings = proxy(RedisStringCommands.class, this::stringCommand);
+            RedisKeyCommands keys = proxy(RedisKeyCommands.class, this::keyCommand);
+            connection = proxy(RedisConnection.class, (method, args) -> switch (method.getName()) {
+                case "stringCommands" -> strings;
+                case "keyCommands" -> keys;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private Object stringCommand(Method method, Object[] args) {
+            switch (method.getName()) {
+                case "get":
+                    return data.get(key(args[0]));
+                case "mGet":
+                    List<String> requested = new ArrayList<>();
+                    List<byte[]> values = new ArrayList<>();
+                    for (byte[] rawKey : (byte[][]) args[0]) {
+                        requested.add(key(rawKey));
+                        values.add(data.get(key(rawKey)));
+                    }
+                    mgets.add(requested);
+                    return values;
+                case "set":
+                    // 和真实 Redis 一样拒绝 SET ... EX 0
+                    Expiration expiration = (Expiration) args[2];
+                    if (!expiration.isPersistent() && expiration.getExpirationTime() <= 0) {
+                        throw new IllegalArgumentException("ERR invalid expire time in 'set' command");
+                    }
+                    data.put(key(args[0]), (byte[]) args[1]);
+                    return true;
+                case "incr":
+                    byte[] next = data.merge(key(args[0]), "1".getBytes(StandardCharsets.UTF_8),
+                            (old, one) -> String.valueOf(Long.parseLong(new String(old, StandardCharsets.UTF_8)) + 1)
+                                    .getBytes(StandardCharsets.UTF_8));
+                    return Long.parseLong(new String(next, StandardCharsets.UTF_8));
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private Object keyCommand(Method method, Object[] args) {
+            switch (method.getName()) {
+                case "del":
+                    long removed = 0;
+                    for (byte[] rawKey : (byte[][]) args[0]) {
+                        removed += data.remove(key(rawKey)) != null ? 1 : 0;
+                    }
+                    return removed;
+                case "expire":
+                    return true;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private static String key(Object rawKey) {
+            return new String((byte[]) rawKey, StandardCharsets.UTF_8);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Command command) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                    (proxy, method, args) -> method.getDeclaringClass() == Object.class
+                            ? objectMethod(proxy, method, args)
+                            : command.invoke(method, args));
+        }
+
+        private static Object objectMethod(Object proxy, Method method, Object[] args) {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> "FakeRedis";
+            };
+        }
+
+        @FunctionalInterface
+        private interface Command {
+            Object invoke(Method method, Object[] args);
+        }
+    }
+}
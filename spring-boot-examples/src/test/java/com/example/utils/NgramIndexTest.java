@@ -0,0 +1,69 @@
+package com.example.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.jpa.utils.NgramIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NgramIndex 单元测试类
+ *
+ * 测试范围：
+ * 1. 子串匹配与排序（位置优先，其次长度）
+ * 2. 前缀匹配
+ * 3. 修改、删除后索引同步
+ * 4. 短于切分长度的查询和大小写
+ */
+@DisplayName("NgramIndex 单元测试")
+class NgramIndexTest {
+
+    private NgramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new NgramIndex(2);
+        index.put(1L, "联想笔记本电脑");
+        index.put(2L, "笔记本");
+        index.put(3L, "苹果笔记本 Pro");
+        index.put(4L, "无线鼠标");
+    }
+
+    @Test
+    @DisplayName("子串匹配_应按匹配位置和长度排序")
+    void testSubstring_ShouldRankByPositionAndLength() {
+        assertEquals(List.of(2L, 1L, 3L), index.search("笔记本", false, 10));
+        assertEquals(List.of(2L, 1L), index.search("笔记本", false, 2));
+        assertTrue(index.search("笔记本电脑 Pro", false, 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("前缀匹配_应只返回以查询串开头的记录")
+    void testPrefix_ShouldOnlyMatchPrefix() {
+        assertEquals(List.of(2L), index.search("笔记", true, 10));
+        assertEquals(List.of(3L), index.search("苹果", true, 10));
+    }
+
+    @Test
+    @DisplayName("修改和删除_索引应同步")
+    void testUpdateAndRemove_ShouldSync() {
+        index.put(2L, "平板电脑");
+        index.remove(4L);
+
+        assertEquals(List.of(1L, 3L), index.search("笔记本", false, 10));
+        assertEquals(List.of(2L, 1L), index.search("电脑", false, 10));
+        assertTrue(index.search("鼠标", false, 10).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    @DisplayName("单字查询和大小写_应正确匹配")
+    void testShortQueryAndCase_ShouldMatch() {
+        assertEquals(List.of(4L), index.search("鼠", false, 10));
+        assertEquals(List.of(3L), index.search("pRO", false, 10));
+    }
+}
@@ -36,6 +36,9 @@ import static org.mockito.Mockito.*;
  * 5. SQL注入防护
  * 6. 参数验证
  * 7. 异常处理
+ * 8. 游标分页
+ * 9. 总数缓存、并行统计、估算总数
+ * 10. 查询计划缓存
  */
 @ExtendWith(MockitoExtension.class)
 @DisplayName("SqlPageHelper 单元测试")
@@ -136,6 +139,160 @@ class SqlPageHelperTest {
         assertNotNull(result);
     }
 
+    // ==================== 总数统计方式测试 ====================
+
+    @Test
+    @DisplayName("总数缓存_相同SQL和参数翻页时不应重复COUNT")
+    void testPageQueryWithCountCache_ShouldCountOnce() {
+        when(entityManager.createNativeQuery(anyString(), eq(TestEntity.class))).thenReturn(query);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+        when(query.getResultList()).thenReturn((List) new ArrayList<TestEntity>());
+        when(query.getSingleResult()).thenReturn(100L);
+        SqlHelper.CountOptions options = SqlHelper.CountOptions.exact().withCache();
+
+        SqlHelper.SqlPage<TestEntity> first = sqlPageHelper.pageQuery(testSql, testParams, pageable,
+                TestEntity.class, options);
+        SqlHelper.SqlPage<TestEntity> second = sqlPageHelper.pageQuery(testSql, new HashMap<>(testParams),
+                PageRequest.of(1, 10), TestEntity.class, options);
+
+        assertFalse(first.isTotalCached());
+        assertTrue(second.isTotalCached());
+        assertEquals(100L, second.getTotalElements());
+        verify(query, times(1)).getSingleResult();
+    }
+
+    @Test
+    @DisplayName("估算总数_超过上限时应返回上限并标记为不精确")
+    void testPageQueryWithEstimate_ShouldCapTotal() {
+        when(entityManager.createNativeQuery(anyString(), eq(TestEntity.class))).thenReturn(query);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+        when(query.getResultList()).thenReturn((List) new ArrayList<TestEntity>());
+        when(query.getSingleResult()).thenReturn(51L);
+
+        SqlHelper.SqlPage<TestEntity> result = sqlPageHelper.pageQuery(testSql, testParams, pageable,
+                TestEntity.class, SqlHelper.CountOptions.exact().estimatedUpTo(50));
+
+        assertFalse(result.isTotalExact());
+        assertEquals(50L, result.getTotalElements());
+        verify(entityManager).createNativeQuery("SELECT COUNT(*) FROM (" + testSql + " LIMIT 51) AS t");
+    }
+
+    @Test
+    @DisplayName("并行统计总数_应返回正确的分页数据")
+    void testPageQueryWithAsyncCount_ShouldReturnTotal() {
+        List<TestEntity> mockResults = new ArrayList<>();
+        mockResults.add(new TestEntity(1, "User1"));
+
+        when(entityManager.createNativeQuery(anyString(), eq(TestEntity.class))).thenReturn(query);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+        when(query.getResultList()).thenReturn((List) mockResults);
+        when(query.getSingleResult()).thenReturn(30L);
+
+        SqlHelper.SqlPage<TestEntity> result = sqlPageHelper.pageQuery(testSql, testParams, pageable,
+                TestEntity.class, SqlHelper.CountOptions.exact().inParallel());
+
+        assertEquals(30L, result.getTotalElements());
+        assertTrue(result.isTotalExact());
+        assertEquals(1, result.getContent().size());
+    }
+
+    @Test
+    @DisplayName("相同SQL和排序重复查询_应命中查询计划缓存")
+    void testRepeatedPageQuery_ShouldHitPlanCache() {
+        Pageable pageableWithSort = PageRequest.of(0, 10, Sort.by("age").descending());
+        when(entityManager.createNativeQuery(anyString(), eq(TestEntity.class))).thenReturn(query);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+        when(query.getResultList()).thenReturn((List) new ArrayList<TestEntity>());
+        when(query.getSingleResult()).thenReturn(0L);
+
+        sqlPageHelper.pageQuery(testSql, testParams, pageableWithSort, TestEntity.class);
+        sqlPageHelper.pageQuery(testSql, testParams, pageableWithSort.next(), TestEntity.class);
+
+        assertEquals(1, sqlPageHelper.getPlanCacheStats().hitCount());
+        assertEquals(1, sqlPageHelper.getPlanCacheStats().missCount());
+        verify(entityManager, times(2)).createNativeQuery(testSql + " ORDER BY age DESC", TestEntity.class);
+    }
+
+    // ==================== 游标分页测试 ====================
+
+    @Test
+    @DisplayName("游标分页第一页_应多取一行判断下一页且不执行COUNT")
+    void testSeekQueryFirstPage_ShouldReturnNextCursorWithoutCount() {
+        List<TestEntity> mockResults = new ArrayList<>();
+        mockResults.add(new TestEntity(1, "User1"));
+        mockResults.add(new TestEntity(2, "User2"));
+        mockResults.add(new TestEntity(3, "User3"));
+
+        when(entityManager.createNativeQuery(anyString(), eq(TestEntity.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn((List) mockResults);
+
+        SqlHelper.CursorPage<TestEntity> result = sqlPageHelper.seekQuery(testSql, testParams, Sort.by("id"), 2,
+                null, false, TestEntity.class);
+
+        assertEquals(2, result.content().size());
+        assertTrue(result.hasNext());
+        assertNotNull(result.nextCursor());
+        assertNull(result.total());
+        verify(query).setMaxResults(3);
+        verify(entityManager).createNativeQuery(testSql + " ORDER BY id ASC", TestEntity.class);
+        verify(entityManager, never()).createNativeQuery(anyString());
+    }
+
+    @Test
+    @DisplayName("游标分页下一页_应改写为WHERE条件并绑定游标值")
+    void testSeekQueryWithCursor_ShouldRewriteToSeekPredicate() {
+        List<TestEntity> firstPage = new ArrayList<>();
+        firstPage.add(new TestEntity(1, "User1"));
+        firstPage.add(new TestEntity(2, "User2"));
+        firstPage.add(new TestEntity(3, "User3"));
+
+        when(entityManager.createNativeQuery(anyString(), eq(TestEntity.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn((List) firstPage, (List) new ArrayList<TestEntity>());
+        String cursor = sqlPageHelper.seekQuery(testSql, testParams, Sort.by("id"), 2, null, false,
+                TestEntity.class).nextCursor();
+
+        SqlHelper.CursorPage<TestEntity> result = sqlPageHelper.seekQuery(testSql, testParams, Sort.by("id"), 2,
+                cursor, false, TestEntity.class);
+
+        assertFalse(result.hasNext());
+        assertNull(result.nextCursor());
+        verify(entityManager).createNativeQuery(
+                "SELECT * FROM users WHERE (age > :age) AND id > :seekKey0 ORDER BY id ASC", TestEntity.class);
+        verify(query).setParameter("seekKey0", 2L);
+    }
+
+    @Test
+    @DisplayName("游标分页要求统计总数_应执行COUNT")
+    void testSeekQueryWithTotal_ShouldCount() {
+        when(entityManager.createNativeQuery(anyString(), eq(TestEntity.class))).thenReturn(query);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+        when(query.getResultList()).thenReturn((List) new ArrayList<TestEntity>());
+        when(query.getSingleResult()).thenReturn(42L);
+
+        SqlHelper.CursorPage<TestEntity> result = sqlPageHelper.seekQuery(testSql, testParams, Sort.by("id"), 10,
+                null, true, TestEntity.class);
+
+        assertEquals(42L, result.total());
+    }
+
+    @Test
+    @DisplayName("游标与排序条件不匹配_应抛出异常")
+    void testSeekQueryWithMismatchedCursor_ShouldThrowException() {
+        List<TestEntity> mockResults = new ArrayList<>();
+        mockResults.add(new TestEntity(1, "User1"));
+        mockResults.add(new TestEntity(2, "User2"));
+
+        when(entityManager.createNativeQuery(anyString(), eq(TestEntity.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn((List) mockResults);
+        String cursor = sqlPageHelper.seekQuery(testSql, testParams, Sort.by("id"), 1, null, false,
+                TestEntity.class).nextCursor();
+
+        assertThrows(IllegalArgumentException.class, () -> sqlPageHelper.seekQuery(testSql, testParams,
+                Sort.by("id").descending(), 1, cursor, false, TestEntity.class));
+        assertThrows(IllegalArgumentException.class, () -> sqlPageHelper.seekQuery(testSql, testParams,
+                Sort.by("id"), 1, "not-a-cursor", false, TestEntity.class));
+    }
+
     // ==================== 列表查询测试 ====================
 
     @Test
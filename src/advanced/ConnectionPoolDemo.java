@@ -1,8 +1,35 @@
 package advanced;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
 
 /**
  * 数据库连接池详解
@@ -32,6 +59,11 @@ public class ConnectionPoolDemo {
         demonstrateWithoutPool();
         demonstrateSimpleConnectionPool();
         demonstrateConnectionPoolBehavior();
+        demonstrateStripedConnectionPool();
+        demonstrateContentionBenchmark();
+        demonstratePoolMetrics();
+        demonstrateVirtualThreadMode();
+        demonstrateStatementCache();
         demonstrateBestPractices();
     }
 
@@ -161,10 +193,382 @@ public class ConnectionPoolDemo {
     }
 
     /**
-     * 4. 最佳实践
+     * 4. 高并发连接池（StripedConnectionPool）
+     */
+    private static void demonstrateStripedConnectionPool() throws Exception {
+        System.out.println("4. 高并发连接池（StripedConnectionPool）\n");
+
+        PoolConfig config = PoolConfig.defaults(3);
+        try (StripedConnectionPool pool = new StripedConnectionPool("jdbc:h2:mem:testdb", "sa", "", config)) {
+            System.out.println("连接池配置: " + config);
+
+            // close() 即归还，配合 try-with-resources 不会忘记归还
+            try (Connection conn = pool.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT 1")) {
+                rs.next();
+                System.out.println("  查询结果: " + rs.getInt(1) + "，活跃=" + pool.getActiveCount()
+                    + "，空闲=" + pool.getAvailableCount());
+            }
+            System.out.println("  归还后: 活跃=" + pool.getActiveCount() + "，空闲=" + pool.getAvailableCount());
+
+            System.out.println("\n场景: 5 个任务争用 3 个连接，等待者按到达顺序拿到归还的连接");
+            ExecutorService executor = Executors.newFixedThreadPool(5);
+            CountDownLatch latch = new CountDownLatch(5);
+            for (int i = 1; i <= 5; i++) {
+                final int taskId = i;
+                executor.submit(() -> {
+                    long start = System.nanoTime();
+                    try (Connection conn = pool.getConnection();
+                         Statement stmt = conn.createStatement()) {
+                        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                        System.out.println("  [任务" + taskId + "] 获得连接，等待 " + waitedMillis + "ms");
+                        stmt.execute("SELECT 1");
+                        Thread.sleep(200);
+                    } catch (Exception e) {
+                        System.out.println("  [任务" + taskId + "] 错误: " + e.getMessage());
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            }
+            latch.await();
+            executor.shutdown();
+        }
+        System.out.println();
+    }
+
+    /**
+     * 5. 并发争用对比：SimpleConnectionPool vs StripedConnectionPool
+     *
+     * 每个线程循环 获取 → 持有 holdMicros → 归还，统计 1 秒内完成次数和获取失败次数
+     * holdMicros=0 测纯粹的获取/归还开销（锁竞争），holdMicros=100 模拟短查询下连接不够用时的等待
+     */
+    private static void demonstrateContentionBenchmark() throws Exception {
+        System.out.println("5. 并发争用对比（连接数 10，每组 1 秒）\n");
+
+        String url = "jdbc:h2:mem:pool_bench;DB_CLOSE_DELAY=-1";
+        int poolSize = 10;
+        System.out.printf("  %-8s %-8s %16s %16s %10s%n", "持有(us)", "线程数", "Simple(ops/s)", "Striped(ops/s)",
+            "Simple失败");
+        for (int holdMicros : new int[] { 0, 100 }) {
+            for (int threads : new int[] { 4, 8, 16, 32, 64 }) {
+                SimpleConnectionPool simple = new SimpleConnectionPool(url, "sa", "", poolSize);
+                long[] simpleResult = runContention(simple::getConnection, simple::releaseConnection, threads,
+                    holdMicros);
+                simple.shutdown();
+
+                long[] stripedResult;
+                try (StripedConnectionPool striped = new StripedConnectionPool(url, "sa", "",
+                        PoolConfig.defaults(poolSize))) {
+                    stripedResult = runContention(striped::getConnection, Connection::close, threads, holdMicros);
+                }
+                System.out.printf("  %-8d %-8d %16d %16d %10d%n", holdMicros, threads, simpleResult[0],
+                    stripedResult[0], simpleResult[1]);
+            }
+        }
+        System.out.println("\n  Simple 所有线程串行在一把锁上，wait/notify 还会丢失唤醒导致超时失败；");
+        System.out.println("  Striped 大部分获取走本线程缓存或 CAS，不加锁\n");
+    }
+
+    @FunctionalInterface
+    interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface ConnectionReleaser {
+        void release(Connection conn) throws SQLException;
+    }
+
+    /**
+     * @return [1 秒内完成次数, 获取失败次数]
+     */
+    private static long[] runContention(ConnectionSupplier borrow, ConnectionReleaser release, int threads,
+            int holdMicros) throws InterruptedException {
+        AtomicLong ops = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                long done = 0;
+                while (System.nanoTime() < deadline) {
+                    try {
+                        Connection conn = borrow.get();
+                        if (holdMicros > 0) {
+                            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(holdMicros));
+                        }
+                        release.release(conn);
+                        done++;
+                    } catch (SQLException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+                ops.addAndGet(done);
+            });
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new long[] { ops.get(), failures.get() };
+    }
+
+    /**
+     * 6. 连接池监控与泄漏检测
+     */
+    private static void demonstratePoolMetrics() throws Exception {
+        System.out.println("6. 连接池监控与泄漏检测\n");
+
+        PoolConfig config = PoolConfig.defaults(5).withLeakDetectionThreshold(300);
+        try (StripedConnectionPool pool = new StripedConnectionPool("jdbc:h2:mem:testdb", "sa", "", config)) {
+            pool.registerMBean("demo");
+            HttpServer server = pool.startMetricsServer(new InetSocketAddress("127.0.0.1", 0));
+
+            // 正常负载：8 个线程争用 5 个连接
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int i = 0; i < 200; i++) {
+                executor.submit(() -> {
+                    try (Connection conn = pool.getConnection();
+                         Statement stmt = conn.createStatement()) {
+                        stmt.execute("SELECT 1");
+                        Thread.sleep(2);
+                    } catch (Exception e) {
+                        System.out.println("  错误: " + e.getMessage());
+                    }
+                    return null;
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+
+            // 忘记归还的连接：超过阈值后打印借出时的调用栈
+            Connection leaked = pool.getConnection();
+            System.out.println("场景: 借出连接后不归还，泄漏阈值 " + config.leakDetectionThresholdMillis() + "ms");
+            Thread.sleep(config.leakDetectionThresholdMillis() * 2);
+
+            System.out.println("\n拉取指标 GET /metrics:");
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/metrics"))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+            response.body().lines()
+                .filter(line -> !line.startsWith("#") && !line.contains("_bucket"))
+                .forEach(line -> System.out.println("  " + line));
+
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(StripedConnectionPool.MBEAN_DOMAIN + ":type=ConnectionPool,name=demo");
+            System.out.println("\nJMX " + name + ":");
+            System.out.println("  ActiveConnections = " + mBeanServer.getAttribute(name, "ActiveConnections"));
+            System.out.println("  AcquireP99Micros  = " + mBeanServer.getAttribute(name, "AcquireP99Micros"));
+            System.out.println("  LeaksDetected     = " + mBeanServer.getAttribute(name, "LeaksDetected"));
+
+            leaked.close();
+        }
+        System.out.println();
+    }
+
+    /**
+     * 7. 虚拟线程友好模式
+     *
+     * 10000 个任务同时查询 JdbcDemo 的 H2 库（users 表），连接池 10 个连接，对比：
+     * - SimpleConnectionPool：synchronized + wait，虚拟线程在里面等待会钉住载体线程
+     * - StripedConnectionPool 默认模式 / 虚拟线程模式
+     *
+     * JDK 21+：反射调用 Executors.newVirtualThreadPerTaskExecutor，用 JFR 统计 jdk.VirtualThreadPinned 事件
+     * JDK 17：没有虚拟线程，退化为 VT_FALLBACK_PLATFORM_THREADS 个平台线程，统计 jdk.JavaMonitorEnter /
+     * jdk.JavaMonitorWait 事件 —— 换成虚拟线程后正是这些操作会钉住载体线程
+     */
+    private static final int VT_TASKS = 10_000;
+    private static final int VT_FALLBACK_PLATFORM_THREADS = 200;
+    private static final boolean VIRTUAL_THREADS_AVAILABLE = Runtime.version().feature() >= 21;
+
+    private static void demonstrateVirtualThreadMode() throws Exception {
+        System.out.println("7. 虚拟线程友好模式\n");
+
+        try (Connection conn = DriverManager.getConnection(JdbcDemo.URL, JdbcDemo.USER, JdbcDemo.PASSWORD);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(JdbcDemo.CREATE_USERS_SQL);
+            stmt.execute("INSERT INTO users (name, email, age) SELECT 'vt' || X, 'vt' || X || '@example.com', "
+                + "18 + MOD(X, 50) FROM SYSTEM_RANGE(1, 1000) WHERE NOT EXISTS "
+                + "(SELECT 1 FROM users WHERE email = 'vt1@example.com')");
+        }
+
+        System.out.println(VIRTUAL_THREADS_AVAILABLE
+            ? "执行方式: 每个任务一个虚拟线程，统计 jdk.VirtualThreadPinned"
+            : "执行方式: JDK " + Runtime.version().feature() + " 没有虚拟线程，用 " + VT_FALLBACK_PLATFORM_THREADS
+                + " 个平台线程代替，统计会钉住虚拟线程的监视器事件");
+        System.out.printf("  %-24s %8s %12s %8s %10s %10s%n", "连接池", "耗时(ms)", "吞吐(ops/s)", "失败",
+            "池内事件", "驱动事件");
+
+        SimpleConnectionPool simple = new SimpleConnectionPool(JdbcDemo.URL, JdbcDemo.USER, JdbcDemo.PASSWORD, 10);
+        printVirtualThreadResult("SimpleConnectionPool",
+            runWithPinningRecording(simple::getConnection, simple::releaseConnection));
+        simple.shutdown();
+
+        try (StripedConnectionPool striped = new StripedConnectionPool(JdbcDemo.URL, JdbcDemo.USER,
+                JdbcDemo.PASSWORD, PoolConfig.defaults(10))) {
+            printVirtualThreadResult("Striped 默认模式", runWithPinningRecording(striped::getConnection, Connection::close));
+        }
+        try (StripedConnectionPool striped = new StripedConnectionPool(JdbcDemo.URL, JdbcDemo.USER,
+                JdbcDemo.PASSWORD, PoolConfig.defaults(10).withVirtualThreadMode())) {
+            printVirtualThreadResult("Striped 虚拟线程模式",
+                runWithPinningRecording(striped::getConnection, Connection::close));
+        }
+        System.out.println("\n  池内事件来自连接池自身的 synchronized/wait，驱动事件来自 H2 内部的锁（与连接池无关）\n");
+    }
+
+    /**
+     * @return [耗时ms, 成功次数, 失败次数, 池内钉住事件, 其它钉住事件]
+     */
+    private static long[] runWithPinningRecording(ConnectionSupplier borrow, ConnectionReleaser release)
+            throws Exception {
+        Path file = Files.createTempFile("pool-pinning", ".jfr");
+        try (Recording recording = new Recording()) {
+            String[] events = VIRTUAL_THREADS_AVAILABLE
+                ? new String[] { "jdk.VirtualThreadPinned" }
+                : new String[] { "jdk.JavaMonitorEnter", "jdk.JavaMonitorWait" };
+            for (String event : events) {
+                recording.enable(event).withThreshold(Duration.ZERO).withStackTrace();
+            }
+            recording.start();
+            long[] result = runPerTaskWorkload(borrow, release);
+            recording.stop();
+            recording.dump(file);
+
+            long poolEvents = 0;
+            long otherEvents = 0;
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (isRaisedByPool(event)) {
+                    poolEvents++;
+                } else {
+                    otherEvents++;
+                }
+            }
+            return new long[] { result[0], result[1], result[2], poolEvents, otherEvents };
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * 第一个非 JDK 栈帧在连接池里，说明锁是连接池自己的
+     */
+    private static boolean isRaisedByPool(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return false;
+        }
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            String className = frame.getMethod().getType().getName();
+            if (className.startsWith("java.") || className.startsWith("jdk.") || className.startsWith("sun.")) {
+                continue;
+            }
+            return className.contains("ConnectionPool");
+        }
+        return false;
+    }
+
+    private static long[] runPerTaskWorkload(ConnectionSupplier borrow, ConnectionReleaser release)
+            throws InterruptedException {
+        ExecutorService executor = newPerTaskExecutor();
+        AtomicLong succeeded = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long start = System.nanoTime();
+        for (int i = 0; i < VT_TASKS; i++) {
+            executor.execute(() -> {
+                try {
+                    Connection conn = borrow.get();
+                    try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM users WHERE age > ?")) {
+                        ps.setInt(1, ThreadLocalRandom.current().nextInt(18, 68));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            rs.next();
+                        }
+                    } finally {
+                        release.release(conn);
+                    }
+                    succeeded.incrementAndGet();
+                } catch (SQLException e) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.MINUTES);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new long[] { elapsedMillis, succeeded.get(), failed.get() };
+    }
+
+    /**
+     * JDK 21+ 每个任务一个虚拟线程；反射调用，JDK 17 下也能编译运行
+     */
+    private static ExecutorService newPerTaskExecutor() {
+        if (VIRTUAL_THREADS_AVAILABLE) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("  创建虚拟线程执行器失败，改用平台线程: " + e);
+            }
+        }
+        return Executors.newFixedThreadPool(VT_FALLBACK_PLATFORM_THREADS);
+    }
+
+    private static void printVirtualThreadResult(String name, long[] result) {
+        long throughput = result[0] == 0 ? result[1] : result[1] * 1000 / result[0];
+        System.out.printf("  %-24s %8d %12d %8d %10d %10d%n", name, result[0], throughput, result[2], result[3],
+            result[4]);
+    }
+
+    /**
+     * 8. PreparedStatement 缓存
+     *
+     * 和 JdbcDemo 一样每次操作都 conn.prepareStatement(sql)，开启缓存后同一连接上重复的 SQL 直接复用
+     */
+    private static void demonstrateStatementCache() throws Exception {
+        System.out.println("8. PreparedStatement 缓存\n");
+
+        String[] sqls = {
+            "SELECT name, email FROM users WHERE id = ?",
+            "SELECT COUNT(*) FROM users WHERE age > ?",
+            "SELECT id FROM users WHERE email = ?"
+        };
+        for (int cacheSize : new int[] { 0, 2, 16 }) {
+            PoolConfig config = PoolConfig.defaults(4).withStatementCache(cacheSize);
+            try (StripedConnectionPool pool = new StripedConnectionPool(JdbcDemo.URL, JdbcDemo.USER,
+                    JdbcDemo.PASSWORD, config)) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 20_000; i++) {
+                    try (Connection conn = pool.getConnection();
+                         PreparedStatement ps = conn.prepareStatement(sqls[i % sqls.length])) {
+                        if (i % sqls.length == 2) {
+                            ps.setString(1, "vt" + (i % 1000 + 1) + "@example.com");
+                        } else {
+                            ps.setInt(1, i % 1000 + 1);
+                        }
+                        try (ResultSet rs = ps.executeQuery()) {
+                            rs.next();
+                        }
+                    }
+                }
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                System.out.println("缓存大小 " + cacheSize + "：20000 次查询耗时 " + elapsedMillis + "ms，总命中率 "
+                    + String.format("%.1f%%", pool.getStatementCacheHitRatio() * 100));
+                if (cacheSize > 0) {
+                    for (StatementCacheStat stat : pool.getStatementCacheStats()) {
+                        System.out.printf("  %5.1f%%  命中 %6d / 未命中 %4d  %s%n", stat.hitRatio() * 100, stat.hits(),
+                            stat.misses(), stat.sql());
+                    }
+                }
+            }
+        }
+        System.out.println("  缓存小于常用 SQL 数时 LRU 会来回淘汰，命中率骤降，缓存大小应覆盖热点 SQL\n");
+    }
+
+    /**
+     * 9. 最佳实践
      */
     private static void demonstrateBestPractices() {
-        System.out.println("4. 连接池最佳实践\n");
+        System.out.println("9. 连接池最佳实践\n");
 
         System.out.println("✅ 核心参数配置：");
         System.out.println("  1. maximumPoolSize（最大连接数）");
@@ -319,4 +723,1115 @@ public class ConnectionPoolDemo {
             return DriverManager.getConnection(url, user, password);
         }
     }
+
+    // ==================== 高并发连接池实现 ====================
+
+    /**
+     * 连接池参数
+     *
+     * @param maxSize                  最大连接数
+     * @param minIdle                  最小空闲连接数，后台线程补齐
+     * @param connectionTimeoutMillis  获取连接最长等待时间
+     * @param idleTimeoutMillis        空闲超过该时间且连接数多于 minIdle 时回收
+     * @param maxLifetimeMillis        连接最长存活时间，到期后空闲时回收、使用中的归还时回收
+     * @param housekeepingPeriodMillis 后台校验/回收周期
+     * @param leakDetectionThresholdMillis 借出超过该时间未归还视为疑似泄漏，0 表示关闭（开启后每次借出都要记录调用栈）
+     * @param virtualThreadMode        虚拟线程模式：公平信号量准入，不用线程本地缓存，见 StripedConnectionPool
+     * @param statementCacheSize       每个连接缓存的 PreparedStatement 数（LRU），0 表示不缓存
+     */
+    record PoolConfig(int maxSize, int minIdle, long connectionTimeoutMillis, long idleTimeoutMillis,
+            long maxLifetimeMillis, long housekeepingPeriodMillis, long leakDetectionThresholdMillis,
+            boolean virtualThreadMode, int statementCacheSize) {
+
+        PoolConfig {
+            if (maxSize < 1 || minIdle < 0 || minIdle > maxSize) {
+                throw new IllegalArgumentException("需要 maxSize >= 1 且 0 <= minIdle <= maxSize");
+            }
+            if (leakDetectionThresholdMillis < 0 || statementCacheSize < 0) {
+                throw new IllegalArgumentException("leakDetectionThresholdMillis 和 statementCacheSize 不能为负数");
+            }
+        }
+
+        static PoolConfig defaults(int maxSize) {
+            return new PoolConfig(maxSize, Math.min(3, maxSize), 5_000, 600_000, 1_800_000, 30_000, 0, false, 0);
+        }
+
+        PoolConfig withLeakDetectionThreshold(long thresholdMillis) {
+            return new PoolConfig(maxSize, minIdle, connectionTimeoutMillis, idleTimeoutMillis, maxLifetimeMillis,
+                housekeepingPeriodMillis, thresholdMillis, virtualThreadMode, statementCacheSize);
+        }
+
+        PoolConfig withVirtualThreadMode() {
+            return new PoolConfig(maxSize, minIdle, connectionTimeoutMillis, idleTimeoutMillis, maxLifetimeMillis,
+                housekeepingPeriodMillis, leakDetectionThresholdMillis, true, statementCacheSize);
+        }
+
+        PoolConfig withStatementCache(int size) {
+            return new PoolConfig(maxSize, minIdle, connectionTimeoutMillis, idleTimeoutMillis, maxLifetimeMillis,
+                housekeepingPeriodMillis, leakDetectionThresholdMillis, virtualThreadMode, size);
+        }
+    }
+
+    /**
+     * 连接池 JMX 视图（MXBean 接口必须是 public）
+     */
+    public interface ConnectionPoolMXBean {
+        int getActiveConnections();
+
+        int getIdleConnections();
+
+        int getPendingThreads();
+
+        int getTotalConnections();
+
+        int getMaxSize();
+
+        long getAcquireCount();
+
+        long getAcquireP50Micros();
+
+        long getAcquireP99Micros();
+
+        long getAcquireMaxMicros();
+
+        long getAcquireTimeouts();
+
+        long getLeaksDetected();
+
+        long getOldestConnectionAgeMillis();
+
+        String[] getRecentLeaks();
+
+        double getStatementCacheHitRatio();
+    }
+
+    /**
+     * 单条 SQL 的 PreparedStatement 缓存命中情况（所有连接合计）
+     */
+    record StatementCacheStat(String sql, long hits, long misses) {
+        double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    /**
+     * 高并发连接池（思路来自 HikariCP 的 ConcurrentBag）
+     *
+     * 获取连接依次尝试：
+     * 1. 本线程最近归还的连接（ThreadLocal，无竞争）
+     * 2. 共享列表：每个线程从自己的分段位置开始扫描，CAS 抢占空闲连接，线程之间很少抢同一个
+     * 3. 未达上限时创建新连接
+     * 4. 公平等待：登记为等待者后在 SynchronousQueue(fair) 上限时等待，归还的连接按到达顺序直接交给等待者
+     *
+     * 归还时先把连接标记为空闲，有等待者就直接交接，没有就放进本线程缓存，下次本线程获取时直接命中
+     * 连接校验、空闲回收、最长存活时间都由后台线程处理，不占用 getConnection 的时间
+     * getConnection 返回代理连接，close() 即归还；同一个代理重复 close 只归还一次
+     *
+     * 监控：获取耗时直方图、活跃/空闲/等待数、连接存活时间，可通过 JMX 或 HTTP /metrics 拉取
+     * 泄漏检测：开启后借出时记录调用栈，后台按阈值一半的周期检查，超时未归还的打印借出位置
+     *
+     * 虚拟线程模式（virtualThreadMode）：
+     * - 虚拟线程一个任务一个，线程本地缓存永远命中不了，反而让每个虚拟线程留下一个缓存，所以不用
+     * - 准入改为公平 Semaphore(maxSize)：拿到许可的线程一定能拿到连接，其余线程排在 AQS 队列里 park，
+     *   成千上万个等待者不会都去自旋交接，归还时也不用等人接手
+     * - 整个池没有 synchronized / Object.wait，虚拟线程等待时不会钉住（pin）载体线程
+     *
+     * PreparedStatement 缓存（statementCacheSize > 0）：
+     * 每个物理连接按 SQL 缓存 PreparedStatement（LRU），conn.prepareStatement(sql) 命中时不再让驱动重新解析；
+     * 语句 close() 时清空参数放回缓存，连接归还时忘记关闭的语句也一并放回；同一 SQL 同时打开两个时第二个不缓存
+     */
+    static class StripedConnectionPool implements AutoCloseable, ConnectionPoolMXBean {
+
+        static final String MBEAN_DOMAIN = "advanced";
+        private static final int RECENT_LEAKS_MAX = 20;
+
+        private static final int NOT_IN_USE = 0;
+        private static final int IN_USE = 1;
+        private static final int RESERVED = 2; // 后台线程正在校验/回收
+        private static final int REMOVED = -1;
+
+        private static final int THREAD_LOCAL_MAX = 16; // 每个线程最多缓存的连接数
+        private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+        /** 代理类只生成一次，之后每次借出直接 new，省掉 Proxy.newProxyInstance 的查找开销 */
+        private static final java.lang.reflect.Constructor<?> PROXY_CONSTRUCTOR = proxyConstructor(Connection.class);
+        private static final java.lang.reflect.Constructor<?> STATEMENT_PROXY_CONSTRUCTOR =
+            proxyConstructor(PreparedStatement.class);
+
+        /** 命中率统计最多记录的不同 SQL 数，防止拼接字面量的 SQL 把统计撑爆 */
+        private static final int STATEMENT_STATS_MAX = 1000;
+
+        private static java.lang.reflect.Constructor<?> proxyConstructor(Class<?> type) {
+            try {
+                return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                    (proxy, method, args) -> null).getClass().getConstructor(InvocationHandler.class);
+            } catch (NoSuchMethodException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final String url;
+        private final String user;
+        private final String password;
+        private final PoolConfig config;
+
+        /** 全部连接，写时复制：只在创建/回收时修改，获取连接时无锁读取 */
+        private volatile PoolEntry[] entries = new PoolEntry[0];
+        private final ReentrantLock entriesLock = new ReentrantLock();
+
+        private final ThreadLocal<ArrayDeque<PoolEntry>> threadLocalEntries =
+            ThreadLocal.withInitial(ArrayDeque::new);
+        private final SynchronousQueue<PoolEntry> handoffQueue = new SynchronousQueue<>(true);
+        private final AtomicInteger waiters = new AtomicInteger();
+        private final AtomicInteger totalConnections = new AtomicInteger();
+        private final ScheduledExecutorService housekeeper;
+        private volatile boolean closed;
+
+        private final PoolMetrics metrics = new PoolMetrics();
+        private final ConcurrentLinkedDeque<String> recentLeaks = new ConcurrentLinkedDeque<>();
+        private volatile ObjectName mBeanName;
+        private volatile HttpServer metricsServer;
+
+        /** 虚拟线程模式的准入许可，普通模式为 null */
+        private final Semaphore admission;
+
+        /** SQL -> [命中, 未命中]，所有连接合计 */
+        private final ConcurrentHashMap<String, LongAdder[]> statementStats = new ConcurrentHashMap<>();
+
+        StripedConnectionPool(String url, String user, String password, PoolConfig config) throws SQLException {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.config = config;
+            this.admission = config.virtualThreadMode() ? new Semaphore(config.maxSize(), true) : null;
+            fillToMinIdle();
+            housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "pool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            housekeeper.scheduleWithFixedDelay(this::houseKeep, config.housekeepingPeriodMillis(),
+                config.housekeepingPeriodMillis(), TimeUnit.MILLISECONDS);
+            long leakThreshold = config.leakDetectionThresholdMillis();
+            if (leakThreshold > 0) {
+                long period = Math.max(leakThreshold / 2, 10);
+                housekeeper.scheduleWithFixedDelay(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // ---------- 获取 ----------
+
+        public Connection getConnection() throws SQLException {
+            return getConnection(config.connectionTimeoutMillis());
+        }
+
+        public Connection getConnection(long timeoutMillis) throws SQLException {
+            if (closed) {
+                throw new SQLException("连接池已关闭");
+            }
+            long startNanos = System.nanoTime();
+            Connection conn = acquire(startNanos, timeoutMillis);
+            metrics.recordAcquire(System.nanoTime() - startNanos);
+            return conn;
+        }
+
+        private Connection acquire(long startNanos, long timeoutMillis) throws SQLException {
+            if (admission != null) {
+                return acquireAdmitted(timeoutMillis);
+            }
+            // 1. 本线程缓存，倒序取最近归还的
+            ArrayDeque<PoolEntry> local = threadLocalEntries.get();
+            PoolEntry entry;
+            while ((entry = local.pollLast()) != null) {
+                if (entry.compareAndSetState(NOT_IN_USE, IN_USE)) {
+                    return borrow(entry);
+                }
+            }
+
+            // 2. 共享列表  3. 创建
+            entry = scanShared();
+            if (entry == null) {
+                entry = tryCreate();
+            }
+            if (entry != null) {
+                return borrow(entry);
+            }
+
+            // 4. 登记等待后再扫一次：登记之前归还的连接不会交接给我们，但一定还在共享列表里
+            long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            waiters.incrementAndGet();
+            try {
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    entry = scanShared();
+                    if (entry != null) {
+                        return borrow(entry);
+                    }
+                    entry = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (entry != null && entry.compareAndSetState(NOT_IN_USE, IN_USE)) {
+                        return borrow(entry);
+                    }
+                    // 后台回收后可能又有了名额
+                    entry = tryCreate();
+                    if (entry != null) {
+                        return borrow(entry);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("获取连接被中断", e);
+            } finally {
+                waiters.decrementAndGet();
+            }
+            metrics.timeouts.increment();
+            throw new SQLTimeoutException("获取连接超时(" + timeoutMillis + "ms)：活跃=" + getActiveCount()
+                + "，总数=" + totalConnections.get() + "，等待=" + waiters.get());
+        }
+
+        /**
+         * 虚拟线程模式：先拿许可再拿连接，许可数等于最大连接数
+         */
+        private Connection acquireAdmitted(long timeoutMillis) throws SQLException {
+            boolean admitted;
+            waiters.incrementAndGet();
+            try {
+                admitted = admission.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("获取连接被中断", e);
+            } finally {
+                waiters.decrementAndGet();
+            }
+            if (!admitted) {
+                metrics.timeouts.increment();
+                throw new SQLTimeoutException("获取连接超时(" + timeoutMillis + "ms)：活跃=" + getActiveCount()
+                    + "，总数=" + totalConnections.get() + "，排队=" + admission.getQueueLength());
+            }
+            PoolEntry entry;
+            try {
+                entry = claimAdmitted();
+            } catch (SQLException e) {
+                admission.release();
+                throw e;
+            }
+            return borrow(entry);
+        }
+
+        /**
+         * 持有许可时一定有空闲连接或还能创建；后台线程正在校验（RESERVED）的连接稍等即可
+         */
+        private PoolEntry claimAdmitted() throws SQLException {
+            while (true) {
+                PoolEntry entry = scanShared();
+                if (entry == null) {
+                    entry = tryCreate();
+                }
+                if (entry != null) {
+                    return entry;
+                }
+                if (closed) {
+                    throw new SQLException("连接池已关闭");
+                }
+                Thread.yield();
+            }
+        }
+
+        /**
+         * 从线程对应的分段位置开始扫描，不同线程优先争抢不同的连接
+         */
+        private PoolEntry scanShared() {
+            PoolEntry[] snapshot = entries;
+            int n = snapshot.length;
+            if (n == 0) {
+                return null;
+            }
+            int start = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 33) % n;
+            for (int i = 0; i < n; i++) {
+                PoolEntry entry = snapshot[(start + i) % n];
+                if (entry.state == NOT_IN_USE && entry.compareAndSetState(NOT_IN_USE, IN_USE)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 未达上限时创建一个使用中的连接；CAS 占名额，建连接不加锁
+         */
+        private PoolEntry tryCreate() throws SQLException {
+            return addConnection(IN_USE, config.maxSize());
+        }
+
+        private PoolEntry addConnection(int initialState, int limit) throws SQLException {
+            int total;
+            while ((total = totalConnections.get()) < limit) {
+                if (totalConnections.compareAndSet(total, total + 1)) {
+                    Connection raw;
+                    try {
+                        raw = DriverManager.getConnection(url, user, password);
+                    } catch (SQLException e) {
+                        totalConnections.decrementAndGet();
+                        throw e;
+                    }
+                    StatementCache statements = config.statementCacheSize() > 0
+                        ? new StatementCache(config.statementCacheSize()) : null;
+                    PoolEntry entry = new PoolEntry(raw, initialState, statements);
+                    metrics.connectionsCreated.increment();
+                    entriesLock.lock();
+                    try {
+                        PoolEntry[] updated = Arrays.copyOf(entries, entries.length + 1);
+                        updated[updated.length - 1] = entry;
+                        entries = updated;
+                    } finally {
+                        entriesLock.unlock();
+                    }
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        private Connection borrow(PoolEntry entry) throws SQLException {
+            entry.lastAccessNanos = System.nanoTime();
+            if (config.leakDetectionThresholdMillis() > 0) {
+                entry.borrowStack = new Throwable("连接借出位置，线程: " + Thread.currentThread().getName());
+                entry.leakReported = false;
+            }
+            try {
+                return (Connection) PROXY_CONSTRUCTOR.newInstance(new PooledConnectionHandler(entry));
+            } catch (ReflectiveOperationException e) {
+                release(entry, false);
+                throw new SQLException("创建代理连接失败", e);
+            }
+        }
+
+        // ---------- 归还 ----------
+
+        /**
+         * 兼容 SimpleConnectionPool 的写法，等同于 conn.close()
+         */
+        public void releaseConnection(Connection conn) throws SQLException {
+            conn.close();
+        }
+
+        private void release(PoolEntry entry, boolean resetAutoCommit) {
+            long now = System.nanoTime();
+            if (entry.leakReported) {
+                System.out.println("  [泄漏检测] 先前报告的连接已归还，共持有 "
+                    + TimeUnit.NANOSECONDS.toMillis(now - entry.lastAccessNanos) + "ms");
+            }
+            entry.borrowStack = null;
+            entry.lastAccessNanos = now;
+            try {
+                if (resetAutoCommit && !resetConnection(entry)) {
+                    return;
+                }
+                if (closed || entry.evictOnRelease) {
+                    entry.state = RESERVED;
+                    removeEntry(entry);
+                    return;
+                }
+                makeAvailable(entry, true);
+            } finally {
+                if (admission != null) {
+                    admission.release();
+                }
+            }
+        }
+
+        /**
+         * 标记为空闲；有等待者时直接交接（自旋到有人接手或被别人抢走），否则放进本线程缓存
+         */
+        private void makeAvailable(PoolEntry entry, boolean cacheInThread) {
+            entry.state = NOT_IN_USE;
+            if (admission != null) {
+                // 虚拟线程模式由信号量交接，不自旋也不放线程本地缓存
+                return;
+            }
+            for (int i = 0; waiters.get() > 0; i++) {
+                if (entry.state != NOT_IN_USE || handoffQueue.offer(entry)) {
+                    return;
+                }
+                if ((i & 0xff) == 0xff) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+                } else {
+                    Thread.yield();
+                }
+            }
+            if (cacheInThread) {
+                ArrayDeque<PoolEntry> local = threadLocalEntries.get();
+                if (local.size() < THREAD_LOCAL_MAX) {
+                    local.addLast(entry);
+                }
+            }
+        }
+
+        /**
+         * 借用期间关闭了自动提交：回滚未提交的事务并恢复，避免把半个事务留给下一个使用者
+         *
+         * @return 连接是否还能继续使用
+         */
+        private boolean resetConnection(PoolEntry entry) {
+            try {
+                if (!entry.raw.getAutoCommit()) {
+                    entry.raw.rollback();
+                    entry.raw.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                entry.state = RESERVED;
+                removeEntry(entry);
+                return false;
+            }
+        }
+
+        // ---------- 后台维护 ----------
+
+        /**
+         * 校验空闲连接、回收超时/到期连接、补齐最小空闲数
+         * 先把空闲连接 CAS 成 RESERVED 再处理，期间获取连接的线程会跳过它
+         */
+        private void houseKeep() {
+            long now = System.nanoTime();
+            long idleTimeout = TimeUnit.MILLISECONDS.toNanos(config.idleTimeoutMillis());
+            long maxLifetime = TimeUnit.MILLISECONDS.toNanos(config.maxLifetimeMillis());
+            for (PoolEntry entry : entries) {
+                boolean expired = now - entry.createdNanos > maxLifetime;
+                if (entry.state == IN_USE) {
+                    entry.evictOnRelease |= expired;
+                    continue;
+                }
+                if (!entry.compareAndSetState(NOT_IN_USE, RESERVED)) {
+                    continue;
+                }
+                boolean idle = now - entry.lastAccessNanos > idleTimeout
+                    && totalConnections.get() > config.minIdle();
+                if (expired || idle || !isValid(entry)) {
+                    removeEntry(entry);
+                } else {
+                    makeAvailable(entry, false);
+                }
+            }
+            try {
+                fillToMinIdle();
+            } catch (SQLException e) {
+                System.out.println("  [housekeeper] 补充连接失败: " + e.getMessage());
+            }
+        }
+
+        private boolean isValid(PoolEntry entry) {
+            try {
+                return entry.raw.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void fillToMinIdle() throws SQLException {
+            while (!closed && getAvailableCount() < config.minIdle()) {
+                PoolEntry entry = addConnection(RESERVED, config.maxSize());
+                if (entry == null) {
+                    return;
+                }
+                makeAvailable(entry, false);
+            }
+        }
+
+        private void removeEntry(PoolEntry entry) {
+            entriesLock.lock();
+            try {
+                List<PoolEntry> remaining = new ArrayList<>(Arrays.asList(entries));
+                if (!remaining.remove(entry)) {
+                    return;
+                }
+                entries = remaining.toArray(new PoolEntry[0]);
+                entry.state = REMOVED;
+                totalConnections.decrementAndGet();
+                metrics.connectionsClosed.increment();
+            } finally {
+                entriesLock.unlock();
+            }
+            try {
+                entry.raw.close();
+            } catch (SQLException ignored) {
+                // 连接已经不可用，忽略
+            }
+        }
+
+        /**
+         * 借出超过阈值且未报告过的连接：打印借出时的调用栈，每次借出只报告一次
+         */
+        private void detectLeaks() {
+            long threshold = TimeUnit.MILLISECONDS.toNanos(config.leakDetectionThresholdMillis());
+            long now = System.nanoTime();
+            for (PoolEntry entry : entries) {
+                Throwable stack = entry.borrowStack;
+                long heldNanos = now - entry.lastAccessNanos;
+                if (entry.state != IN_USE || stack == null || entry.leakReported || heldNanos < threshold) {
+                    continue;
+                }
+                entry.leakReported = true;
+                metrics.leaksDetected.increment();
+                StringBuilder report = new StringBuilder("疑似连接泄漏：已借出 ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(heldNanos)).append("ms，").append(stack.getMessage());
+                for (StackTraceElement frame : stack.getStackTrace()) {
+                    if (!frame.getClassName().startsWith(StripedConnectionPool.class.getName())) {
+                        report.append("\n      at ").append(frame);
+                    }
+                }
+                System.out.println("  [泄漏检测] " + report);
+                recentLeaks.addFirst(report.toString());
+                while (recentLeaks.size() > RECENT_LEAKS_MAX) {
+                    recentLeaks.pollLast();
+                }
+            }
+        }
+
+        // ---------- 状态 ----------
+
+        public int getAvailableCount() {
+            return countState(NOT_IN_USE);
+        }
+
+        public int getActiveCount() {
+            return countState(IN_USE);
+        }
+
+        public int getTotalCount() {
+            return totalConnections.get();
+        }
+
+        public int getWaitingCount() {
+            return admission != null ? admission.getQueueLength() : waiters.get();
+        }
+
+        // ---------- 监控指标 ----------
+
+        @Override
+        public int getActiveConnections() {
+            return getActiveCount();
+        }
+
+        @Override
+        public int getIdleConnections() {
+            return getAvailableCount();
+        }
+
+        @Override
+        public int getPendingThreads() {
+            return getWaitingCount();
+        }
+
+        @Override
+        public int getTotalConnections() {
+            return getTotalCount();
+        }
+
+        @Override
+        public int getMaxSize() {
+            return config.maxSize();
+        }
+
+        @Override
+        public long getAcquireCount() {
+            return metrics.acquireCount.sum();
+        }
+
+        @Override
+        public long getAcquireP50Micros() {
+            return TimeUnit.NANOSECONDS.toMicros(metrics.percentileNanos(0.50));
+        }
+
+        @Override
+        public long getAcquireP99Micros() {
+            return TimeUnit.NANOSECONDS.toMicros(metrics.percentileNanos(0.99));
+        }
+
+        @Override
+        public long getAcquireMaxMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(metrics.acquireMaxNanos.get());
+        }
+
+        @Override
+        public long getAcquireTimeouts() {
+            return metrics.timeouts.sum();
+        }
+
+        @Override
+        public long getLeaksDetected() {
+            return metrics.leaksDetected.sum();
+        }
+
+        @Override
+        public long getOldestConnectionAgeMillis() {
+            long now = System.nanoTime();
+            long oldest = 0;
+            for (PoolEntry entry : entries) {
+                oldest = Math.max(oldest, now - entry.createdNanos);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(oldest);
+        }
+
+        @Override
+        public String[] getRecentLeaks() {
+            return recentLeaks.toArray(new String[0]);
+        }
+
+        @Override
+        public double getStatementCacheHitRatio() {
+            long[] totals = statementTotals();
+            return new StatementCacheStat("", totals[0], totals[1]).hitRatio();
+        }
+
+        /**
+         * 每条 SQL 的缓存命中情况，按使用次数从多到少
+         */
+        public List<StatementCacheStat> getStatementCacheStats() {
+            List<StatementCacheStat> stats = new ArrayList<>();
+            statementStats.forEach((sql, counters) ->
+                stats.add(new StatementCacheStat(sql, counters[0].sum(), counters[1].sum())));
+            stats.sort(Comparator.comparingLong((StatementCacheStat stat) -> stat.hits() + stat.misses()).reversed());
+            return stats;
+        }
+
+        private long[] statementTotals() {
+            long hits = 0;
+            long misses = 0;
+            for (LongAdder[] counters : statementStats.values()) {
+                hits += counters[0].sum();
+                misses += counters[1].sum();
+            }
+            return new long[] { hits, misses };
+        }
+
+        private void recordStatement(String sql, boolean hit) {
+            LongAdder[] counters = statementStats.get(sql);
+            if (counters == null) {
+                if (statementStats.size() >= STATEMENT_STATS_MAX) {
+                    return;
+                }
+                counters = statementStats.computeIfAbsent(sql, key -> new LongAdder[] { new LongAdder(), new LongAdder() });
+            }
+            counters[hit ? 0 : 1].increment();
+        }
+
+        /**
+         * 注册到平台 MBeanServer，JConsole/VisualVM 里可以看到 advanced:type=ConnectionPool,name=poolName
+         */
+        public void registerMBean(String poolName) throws Exception {
+            ObjectName name = new ObjectName(MBEAN_DOMAIN + ":type=ConnectionPool,name=" + poolName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            mBeanName = name;
+        }
+
+        /**
+         * 启动拉取式指标接口 GET /metrics（Prometheus 文本格式），连接池关闭时一起停止
+         */
+        public HttpServer startMetricsServer(InetSocketAddress address) throws java.io.IOException {
+            HttpServer server = HttpServer.create(address, 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = toPrometheusText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (var out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            metricsServer = server;
+            return server;
+        }
+
+        public String toPrometheusText() {
+            StringBuilder text = new StringBuilder();
+            gauge(text, "pool_connections_active", "借出中的连接数", getActiveCount());
+            gauge(text, "pool_connections_idle", "空闲连接数", getAvailableCount());
+            gauge(text, "pool_connections_pending", "等待获取连接的线程数", getWaitingCount());
+            gauge(text, "pool_connections_total", "当前连接总数", getTotalCount());
+            gauge(text, "pool_connections_max", "最大连接数", config.maxSize());
+            gauge(text, "pool_connection_oldest_age_seconds", "最老连接的存活时间",
+                getOldestConnectionAgeMillis() / 1000.0);
+            counter(text, "pool_connections_created_total", "累计创建连接数", metrics.connectionsCreated.sum());
+            counter(text, "pool_connections_closed_total", "累计关闭连接数", metrics.connectionsClosed.sum());
+            counter(text, "pool_acquire_timeouts_total", "获取连接超时次数", metrics.timeouts.sum());
+            counter(text, "pool_leaks_detected_total", "疑似泄漏次数", metrics.leaksDetected.sum());
+            long[] statementTotals = statementTotals();
+            counter(text, "pool_statement_cache_hits_total", "PreparedStatement 缓存命中次数", statementTotals[0]);
+            counter(text, "pool_statement_cache_misses_total", "PreparedStatement 缓存未命中次数", statementTotals[1]);
+            metrics.appendHistogram(text, "pool_acquire_seconds", "获取连接耗时");
+            return text.toString();
+        }
+
+        private static void gauge(StringBuilder text, String name, String help, double value) {
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" gauge\n")
+                .append(name).append(' ').append(value).append('\n');
+        }
+
+        private static void counter(StringBuilder text, String name, String help, long value) {
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" counter\n")
+                .append(name).append(' ').append(value).append('\n');
+        }
+
+        private int countState(int state) {
+            int count = 0;
+            for (PoolEntry entry : entries) {
+                if (entry.state == state) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * 关闭连接池：空闲连接立即关闭，使用中的连接在归还时关闭
+         */
+        @Override
+        public void close() {
+            closed = true;
+            housekeeper.shutdownNow();
+            if (metricsServer != null) {
+                metricsServer.stop(0);
+            }
+            if (mBeanName != null) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(mBeanName);
+                } catch (Exception ignored) {
+                    // 已经注销
+                }
+            }
+            for (PoolEntry entry : entries) {
+                if (entry.compareAndSetState(NOT_IN_USE, RESERVED)) {
+                    removeEntry(entry);
+                }
+            }
+        }
+
+        public void shutdown() {
+            close();
+        }
+
+        // ---------- 内部结构 ----------
+
+        private static final class PoolEntry {
+            private static final java.lang.invoke.VarHandle STATE;
+
+            static {
+                try {
+                    STATE = java.lang.invoke.MethodHandles.lookup()
+                        .findVarHandle(PoolEntry.class, "state", int.class);
+                } catch (ReflectiveOperationException e) {
+                    throw new ExceptionInInitializerError(e);
+                }
+            }
+
+            final Connection raw;
+            final long createdNanos = System.nanoTime();
+            volatile int state;
+            volatile long lastAccessNanos = createdNanos;
+            volatile boolean evictOnRelease;
+            // 泄漏检测：借出时的调用栈，借出期间 lastAccessNanos 就是借出时间
+            volatile Throwable borrowStack;
+            volatile boolean leakReported;
+            // 只有借到该连接的线程会访问，物理连接关闭时缓存的语句随之关闭
+            final StatementCache statements;
+
+            PoolEntry(Connection raw, int state, StatementCache statements) {
+                this.raw = raw;
+                this.state = state;
+                this.statements = statements;
+            }
+
+            boolean compareAndSetState(int expect, int update) {
+                return STATE.compareAndSet(this, expect, update);
+            }
+        }
+
+        /**
+         * 获取耗时直方图和计数器，全部用 LongAdder，记录时线程之间不争用同一个变量
+         * 第 i 个桶统计耗时在 [2^i, 2^(i+1)) 纳秒的次数，分位数取桶上界，误差在 2 倍以内
+         */
+        private static final class PoolMetrics {
+            private static final int BUCKETS = 40; // 2^40 纳秒约 18 分钟
+
+            final LongAdder[] acquireBuckets = new LongAdder[BUCKETS];
+            final LongAdder acquireCount = new LongAdder();
+            final LongAdder acquireTotalNanos = new LongAdder();
+            final AtomicLong acquireMaxNanos = new AtomicLong();
+            final LongAdder timeouts = new LongAdder();
+            final LongAdder leaksDetected = new LongAdder();
+            final LongAdder connectionsCreated = new LongAdder();
+            final LongAdder connectionsClosed = new LongAdder();
+
+            PoolMetrics() {
+                for (int i = 0; i < BUCKETS; i++) {
+                    acquireBuckets[i] = new LongAdder();
+                }
+            }
+
+            void recordAcquire(long nanos) {
+                int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+                acquireBuckets[bucket].increment();
+                acquireCount.increment();
+                acquireTotalNanos.add(nanos);
+                if (nanos > acquireMaxNanos.get()) {
+                    acquireMaxNanos.accumulateAndGet(nanos, Math::max);
+                }
+            }
+
+            long percentileNanos(double percentile) {
+                long[] counts = new long[BUCKETS];
+                long total = 0;
+                for (int i = 0; i < BUCKETS; i++) {
+                    counts[i] = acquireBuckets[i].sum();
+                    total += counts[i];
+                }
+                long rank = (long) Math.ceil(total * percentile);
+                long seen = 0;
+                for (int i = 0; i < BUCKETS; i++) {
+                    seen += counts[i];
+                    if (seen >= rank && seen > 0) {
+                        return Math.min(1L << (i + 1), acquireMaxNanos.get());
+                    }
+                }
+                return 0;
+            }
+
+            /**
+             * Prometheus 直方图：le 为桶上界（秒），计数累加
+             */
+            void appendHistogram(StringBuilder text, String name, String help) {
+                text.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                    .append("# TYPE ").append(name).append(" histogram\n");
+                long cumulative = 0;
+                for (int i = 0; i < BUCKETS; i++) {
+                    cumulative += acquireBuckets[i].sum();
+                    text.append(name).append("_bucket{le=\"").append((1L << (i + 1)) / 1e9).append("\"} ")
+                        .append(cumulative).append('\n');
+                }
+                text.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n')
+                    .append(name).append("_sum ").append(acquireTotalNanos.sum() / 1e9).append('\n')
+                    .append(name).append("_count ").append(acquireCount.sum()).append('\n');
+            }
+        }
+
+        /**
+         * 代理连接：close() 归还到连接池，归还后再调用其它方法抛出异常
+         */
+        private final class PooledConnectionHandler implements InvocationHandler {
+            private final PoolEntry entry;
+            private boolean returned;
+            private boolean autoCommitChanged;
+
+            PooledConnectionHandler(PoolEntry entry) {
+                this.entry = entry;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            if (entry.statements != null) {
+                                entry.statements.closeOpenStatements();
+                            }
+                            release(entry, autoCommitChanged);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || entry.raw.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "PooledConnection[" + entry.raw + "]";
+                    case "setAutoCommit":
+                        autoCommitChanged = true;
+                        break;
+                    default:
+                        break;
+                }
+                if (returned) {
+                    throw new SQLException("连接已归还到连接池");
+                }
+                if (entry.statements != null && method.getName().equals("prepareStatement")) {
+                    return entry.statements.prepare((Connection) proxy, entry.raw, method, args);
+                }
+                return invokeRaw(entry.raw, method, args);
+            }
+        }
+
+        private static Object invokeRaw(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * 单个物理连接的 PreparedStatement 缓存，按访问顺序淘汰最久未用且没有被打开的语句
+         * 缓存键是 SQL 加上 prepareStatement 的其它参数（结果集类型、自增主键等），不同重载不会混用
+         */
+        private final class StatementCache {
+            private final int capacity;
+            private final LinkedHashMap<String, CachedStatement> statements;
+            private final List<StatementHandler> open = new ArrayList<>();
+
+            StatementCache(int capacity) {
+                this.capacity = capacity;
+                this.statements = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+            }
+
+            PreparedStatement prepare(Connection owner, Connection raw, Method method, Object[] args)
+                    throws Throwable {
+                String sql = (String) args[0];
+                String key = args.length == 1 ? sql
+                    : sql + '#' + Arrays.deepToString(Arrays.copyOfRange(args, 1, args.length));
+                CachedStatement cached = statements.get(key);
+                if (cached != null && !cached.inUse) {
+                    recordStatement(sql, true);
+                    return open(owner, cached.statement, cached);
+                }
+                recordStatement(sql, false);
+                PreparedStatement statement = (PreparedStatement) invokeRaw(raw, method, args);
+                // 同一 SQL 已被打开，或缓存满了且全部在用：这一个不缓存，close 时真正关闭
+                if (cached != null || (statements.size() >= capacity && !evictOne())) {
+                    return open(owner, statement, null);
+                }
+                cached = new CachedStatement(statement);
+                statements.put(key, cached);
+                return open(owner, statement, cached);
+            }
+
+            private PreparedStatement open(Connection owner, PreparedStatement statement, CachedStatement cached)
+                    throws SQLException {
+                if (cached != null) {
+                    cached.inUse = true;
+                }
+                StatementHandler handler = new StatementHandler(this, owner, statement, cached);
+                open.add(handler);
+                try {
+                    return (PreparedStatement) STATEMENT_PROXY_CONSTRUCTOR.newInstance(handler);
+                } catch (ReflectiveOperationException e) {
+                    handler.close();
+                    throw new SQLException("创建代理语句失败", e);
+                }
+            }
+
+            private boolean evictOne() {
+                Iterator<CachedStatement> iterator = statements.values().iterator();
+                while (iterator.hasNext()) {
+                    CachedStatement candidate = iterator.next();
+                    if (!candidate.inUse) {
+                        iterator.remove();
+                        closeQuietly(candidate.statement);
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            /**
+             * 放回缓存前清空参数和批处理，下一个使用者拿到的是干净的语句；清不掉说明语句已坏，直接丢弃
+             */
+            void checkin(StatementHandler handler) {
+                open.remove(handler);
+                CachedStatement cached = handler.cached;
+                if (cached == null) {
+                    closeQuietly(handler.statement);
+                    return;
+                }
+                try {
+                    cached.statement.clearParameters();
+                    cached.statement.clearBatch();
+                    cached.inUse = false;
+                } catch (SQLException e) {
+                    statements.values().remove(cached);
+                    closeQuietly(cached.statement);
+                }
+            }
+
+            /**
+             * 连接归还时，使用者忘记关闭的语句也放回缓存（旧的代理随之失效）
+             */
+            void closeOpenStatements() {
+                for (StatementHandler handler : open.toArray(new StatementHandler[0])) {
+                    handler.close();
+                }
+            }
+
+            private void closeQuietly(PreparedStatement statement) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    // 语句已经不可用，忽略
+                }
+            }
+        }
+
+        private static final class CachedStatement {
+            final PreparedStatement statement;
+            boolean inUse;
+
+            CachedStatement(PreparedStatement statement) {
+                this.statement = statement;
+            }
+        }
+
+        /**
+         * 代理语句：close() 放回缓存；getConnection() 返回代理连接，避免调用方拿到物理连接
+         */
+        private static final class StatementHandler implements InvocationHandler {
+            private final StatementCache cache;
+            private final Connection owner;
+            private final PreparedStatement statement;
+            private final CachedStatement cached;
+            private boolean closed;
+
+            StatementHandler(StatementCache cache, Connection owner, PreparedStatement statement,
+                    CachedStatement cached) {
+                this.cache = cache;
+                this.owner = owner;
+                this.statement = statement;
+                this.cached = cached;
+            }
+
+            void close() {
+                if (!closed) {
+                    closed = true;
+                    cache.checkin(this);
+                }
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        close();
+                        return null;
+                    case "isClosed":
+                        return closed || statement.isClosed();
+                    case "getConnection":
+                        return owner;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "CachedStatement[" + statement + "]";
+                    default:
+                        break;
+                }
+                if (closed) {
+                    throw new SQLException("PreparedStatement 已关闭");
+                }
+                return invokeRaw(statement, method, args);
+            }
+        }
+    }
 }
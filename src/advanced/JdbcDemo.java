@@ -29,9 +29,18 @@ public class JdbcDemo {
      * - Spring Boot会自动管理数据库连接
      * - 测试时(@DataJpaTest)会自动配置H2内存数据库
      */
-    private static final String URL = "jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1";
-    private static final String USER = "sa";
-    private static final String PASSWORD = "";
+    static final String URL = "jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1";
+    static final String USER = "sa";
+    static final String PASSWORD = "";
+
+    // users 表结构，ConnectionPoolDemo 的压测也用这张表
+    static final String CREATE_USERS_SQL = "CREATE TABLE IF NOT EXISTS users (" +
+                    "id INT PRIMARY KEY AUTO_INCREMENT, " +
+                    "name VARCHAR(50) NOT NULL, " +
+                    "email VARCHAR(100) UNIQUE, " +
+                    "age INT, " +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")";
 
     public static void main(String[] args) {
         System.out.println("=== JDBC数据库操作学习 ===\n");
@@ -88,13 +97,7 @@ public class JdbcDemo {
     public static void demonstrateCreateTable() throws SQLException {
         System.out.println("2. 创建表\n");
 
-        String sql = "CREATE TABLE IF NOT EXISTS users (" +
-                    "id INT PRIMARY KEY AUTO_INCREMENT, " +
-                    "name VARCHAR(50) NOT NULL, " +
-                    "email VARCHAR(100) UNIQUE, " +
-                    "age INT, " +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")";
+        String sql = CREATE_USERS_SQL;
 
         try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
              Statement stmt = conn.createStatement()) {